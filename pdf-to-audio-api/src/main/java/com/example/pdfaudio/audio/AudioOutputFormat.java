@@ -0,0 +1,61 @@
+package com.example.pdfaudio.audio;
+
+import java.util.Locale;
+
+/**
+ * Container and codec of the audio files handed to clients.
+ */
+public enum AudioOutputFormat {
+
+    /** 16-bit PCM WAV, the format the speech engines produce. */
+    WAV("wav", "wav", "audio/wav"),
+    /** G.711 mu-law in a WAV container: 8 bits per sample, half the size of PCM. */
+    MULAW("mulaw", "wav", "audio/wav"),
+    /** IMA ADPCM in a WAV container: 4 bits per sample, a quarter of PCM, mono only. */
+    IMA_ADPCM("ima-adpcm", "wav", "audio/wav"),
+    /** Lossless FLAC, typically around half the size of PCM for speech. */
+    FLAC("flac", "flac", "audio/flac");
+
+    private final String propertyValue;
+    private final String extension;
+    private final String contentType;
+
+    AudioOutputFormat(String propertyValue, String extension, String contentType) {
+        this.propertyValue = propertyValue;
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Parses the value of {@code audio.output.format}.
+     */
+    public static AudioOutputFormat fromProperty(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (AudioOutputFormat format : values()) {
+            if (format.propertyValue.equals(normalized)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown audio output format: " + value);
+    }
+
+    /**
+     * Media type for a stored audio file, judged by its extension.
+     */
+    public static String contentTypeOf(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith("." + FLAC.extension)
+                ? FLAC.contentType : WAV.contentType;
+    }
+
+    public String getPropertyValue() {
+        return propertyValue;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
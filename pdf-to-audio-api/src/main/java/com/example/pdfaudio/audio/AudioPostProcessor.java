@@ -0,0 +1,136 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Turns the PCM WAV produced by the speech engine into the file handed to clients:
+ * optionally mono, trimmed of silence and downsampled, then encoded in the configured
+ * format. The input is read through a direct buffer one slice at a time and every step
+ * streams, so memory use does not depend on the length of the audio.
+ */
+public final class AudioPostProcessor {
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final AudioOutputFormat format;
+    private final boolean mono;
+    private final int maxSampleRate;
+    private final boolean trimSilence;
+    private final int silenceThreshold;
+    private final int maxPauseMillis;
+
+    /**
+     * @param maxSampleRate       sample rate to downsample to when the input is higher; 0 keeps it
+     * @param silenceThresholdDb  level in dBFS below which audio counts as silence
+     * @param maxPauseMillis      longest pause kept when trimming silence
+     */
+    public AudioPostProcessor(AudioOutputFormat format, boolean mono, int maxSampleRate,
+                              boolean trimSilence, double silenceThresholdDb, int maxPauseMillis) {
+        this.format = format;
+        // IMA ADPCM is only written as mono
+        this.mono = mono || format == AudioOutputFormat.IMA_ADPCM;
+        this.maxSampleRate = maxSampleRate;
+        this.trimSilence = trimSilence;
+        this.silenceThreshold = (int) Math.round(Short.MAX_VALUE * Math.pow(10, silenceThresholdDb / 20));
+        this.maxPauseMillis = maxPauseMillis;
+    }
+
+    public AudioOutputFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Whether {@link #process} would only copy a 16-bit PCM input, in which case the
+     * engine output can be used as is.
+     */
+    public boolean isPassThrough() {
+        return format == AudioOutputFormat.WAV && !mono && maxSampleRate <= 0 && !trimSilence;
+    }
+
+    /**
+     * Short description of the settings, for cache keys.
+     */
+    public String describe() {
+        return format.getPropertyValue() + "/" + (mono ? "mono" : "native") + "/" + maxSampleRate
+                + "/" + (trimSilence ? "trim" + silenceThreshold + "-" + maxPauseMillis : "notrim");
+    }
+
+    public void process(Path input, Path output) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            WavHeader header = WavHeader.read(in);
+            int bytesPerSample = header.getBitsPerSample() / 8;
+            if (header.getAudioFormat() != WavHeader.FORMAT_PCM || (bytesPerSample != 1 && bytesPerSample != 2)) {
+                throw new IOException("Cannot post-process audio with " + header);
+            }
+
+            SampleSink chain = buildChain(out, header.getChannels(), header.getSampleRate());
+            readSamples(in, header, bytesPerSample, chain);
+            chain.finish();
+        }
+    }
+
+    private SampleSink buildChain(FileChannel out, int inputChannels, int inputRate) throws IOException {
+        int channels = mono ? 1 : inputChannels;
+        int rate = maxSampleRate > 0 ? Math.min(inputRate, maxSampleRate) : inputRate;
+
+        SampleSink chain = switch (format) {
+            case WAV -> new WavEncoder.Pcm(out, channels, rate);
+            case MULAW -> new WavEncoder.MuLaw(out, channels, rate);
+            case IMA_ADPCM -> new WavEncoder.ImaAdpcm(out, rate);
+            case FLAC -> new FlacEncoder(out, channels, rate);
+        };
+        if (rate != inputRate) {
+            chain = new Resampler(chain, channels, inputRate, rate);
+        }
+        if (trimSilence) {
+            chain = new SilenceTrimmer(chain, channels, silenceThreshold,
+                    (int) ((long) inputRate * maxPauseMillis / 1000));
+        }
+        if (channels != inputChannels) {
+            chain = new Downmixer(chain, inputChannels);
+        }
+        return chain;
+    }
+
+    private static void readSamples(FileChannel in, WavHeader header, int bytesPerSample, SampleSink chain)
+            throws IOException {
+        int frameBytes = header.getBlockAlign();
+        long remaining = header.getDataLength() - header.getDataLength() % frameBytes;
+        long position = header.getDataOffset();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES - READ_BUFFER_BYTES % frameBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        short[] samples = new short[buffer.capacity() / bytesPerSample];
+
+        while (remaining > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            while (buffer.hasRemaining()) {
+                int read = in.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("Unexpected end of WAVE file");
+                }
+            }
+            buffer.flip();
+            position += buffer.remaining();
+            remaining -= buffer.remaining();
+
+            int count = buffer.remaining() / bytesPerSample;
+            if (bytesPerSample == 2) {
+                buffer.asShortBuffer().get(samples, 0, count);
+            } else {
+                // 8-bit WAV is unsigned
+                for (int i = 0; i < count; i++) {
+                    samples[i] = (short) (((buffer.get(i) & 0xFF) - 128) << 8);
+                }
+            }
+            chain.write(samples, 0, count);
+        }
+    }
+}
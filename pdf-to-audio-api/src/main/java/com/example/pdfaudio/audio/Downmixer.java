@@ -0,0 +1,39 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+
+/**
+ * Averages interleaved channels into mono; speech gains nothing from stereo.
+ */
+final class Downmixer implements SampleSink {
+
+    private final SampleSink next;
+    private final int channels;
+    private short[] mono = new short[0];
+
+    Downmixer(SampleSink next, int channels) {
+        this.next = next;
+        this.channels = channels;
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) throws IOException {
+        int frames = length / channels;
+        if (mono.length < frames) {
+            mono = new short[frames];
+        }
+        for (int frame = 0, i = offset; frame < frames; frame++) {
+            int sum = 0;
+            for (int channel = 0; channel < channels; channel++) {
+                sum += samples[i++];
+            }
+            mono[frame] = (short) (sum / channels);
+        }
+        next.write(mono, 0, frames);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        next.finish();
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Minimal lossless FLAC encoder for 16-bit audio: fixed 4096-sample blocks, each channel
+ * coded as a constant, the best of the fixed polynomial predictors of order 0 to 4 with
+ * partitioned Rice residuals, or verbatim when nothing beats raw samples. That captures
+ * most of what FLAC gains on speech without LPC analysis. STREAMINFO is rewritten with
+ * the final sample count and frame sizes when the stream ends; the MD5 is left unset,
+ * which the format allows.
+ */
+final class FlacEncoder implements SampleSink {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BITS_PER_SAMPLE = 16;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_PARTITION_ORDER = 6;
+    private static final int MAX_RICE_PARAMETER = 14;
+    private static final int STREAMINFO_LENGTH = 34;
+    private static final int HEADER_LENGTH = 4 + 4 + STREAMINFO_LENGTH;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private static final int[] CRC8_TABLE = new int[256];
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc8 = i;
+            int crc16 = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc8 = (crc8 & 0x80) != 0 ? (crc8 << 1) ^ 0x07 : crc8 << 1;
+                crc16 = (crc16 & 0x8000) != 0 ? (crc16 << 1) ^ 0x8005 : crc16 << 1;
+            }
+            CRC8_TABLE[i] = crc8 & 0xFF;
+            CRC16_TABLE[i] = crc16 & 0xFFFF;
+        }
+    }
+
+    private final FileChannel out;
+    private final int channels;
+    private final int sampleRate;
+    private final int[][] block;
+    private final int[] residual = new int[BLOCK_SIZE];
+    private final long[] partitionSums = new long[1 << MAX_PARTITION_ORDER];
+    private final BitWriter frame = new BitWriter();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private int blockLength;
+    private long frameNumber;
+    private long totalSamples;
+    private long position = HEADER_LENGTH;
+    private int minFrameSize = Integer.MAX_VALUE;
+    private int maxFrameSize;
+
+    FlacEncoder(FileChannel out, int channels, int sampleRate) throws IOException {
+        if (channels < 1 || channels > 8) {
+            throw new IOException("FLAC supports 1 to 8 channels, not " + channels);
+        }
+        this.out = out;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.block = new int[channels][BLOCK_SIZE];
+        writeFully(header(), 0);
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i += channels) {
+            for (int channel = 0; channel < channels; channel++) {
+                block[channel][blockLength] = samples[i + channel];
+            }
+            if (++blockLength == BLOCK_SIZE) {
+                encodeFrame();
+            }
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (blockLength > 0) {
+            encodeFrame();
+        }
+        drain();
+        writeFully(header(), 0);
+    }
+
+    private void encodeFrame() throws IOException {
+        frame.reset();
+        writeFrameHeader();
+        for (int channel = 0; channel < channels; channel++) {
+            writeSubframe(block[channel], blockLength);
+        }
+        frame.alignToByte();
+        frame.write(crc16(frame.data, frame.length), 16);
+
+        minFrameSize = Math.min(minFrameSize, frame.length);
+        maxFrameSize = Math.max(maxFrameSize, frame.length);
+        for (int offset = 0; offset < frame.length; ) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int count = Math.min(buffer.remaining(), frame.length - offset);
+            buffer.put(frame.data, offset, count);
+            offset += count;
+        }
+        totalSamples += blockLength;
+        frameNumber++;
+        blockLength = 0;
+    }
+
+    private void writeFrameHeader() {
+        frame.write(0x3FFE, 14);
+        frame.write(0, 1);
+        // Fixed block size: frames are numbered rather than addressed by sample
+        frame.write(0, 1);
+        int blockSizeCode = blockLength == BLOCK_SIZE ? 12 : blockLength <= 256 ? 6 : 7;
+        frame.write(blockSizeCode, 4);
+        int sampleRateCode = sampleRateCode();
+        frame.write(sampleRateCode, 4);
+        frame.write(channels - 1, 4);
+        // 0b100: 16 bits per sample
+        frame.write(4, 3);
+        frame.write(0, 1);
+        writeUtf8(frameNumber);
+        if (blockSizeCode == 6) {
+            frame.write(blockLength - 1, 8);
+        } else if (blockSizeCode == 7) {
+            frame.write(blockLength - 1, 16);
+        }
+        if (sampleRateCode == 13) {
+            frame.write(sampleRate, 16);
+        }
+        frame.write(crc8(frame.data, frame.length), 8);
+    }
+
+    private void writeSubframe(int[] samples, int length) {
+        boolean constant = true;
+        for (int i = 1; i < length && constant; i++) {
+            constant = samples[i] == samples[0];
+        }
+        if (constant) {
+            frame.write(0, 8);
+            frame.write(samples[0], BITS_PER_SAMPLE);
+            return;
+        }
+
+        int bestOrder = -1;
+        long bestBits = (long) length * BITS_PER_SAMPLE;
+        for (int order = 0; order <= Math.min(MAX_FIXED_ORDER, length - 1); order++) {
+            computeResidual(samples, length, order);
+            long bits = (long) order * BITS_PER_SAMPLE + residualBits(length, order, false);
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = order;
+            }
+        }
+
+        if (bestOrder < 0) {
+            frame.write(1 << 1, 8);
+            for (int i = 0; i < length; i++) {
+                frame.write(samples[i], BITS_PER_SAMPLE);
+            }
+            return;
+        }
+        frame.write((0x08 | bestOrder) << 1, 8);
+        for (int i = 0; i < bestOrder; i++) {
+            frame.write(samples[i], BITS_PER_SAMPLE);
+        }
+        computeResidual(samples, length, bestOrder);
+        residualBits(length, bestOrder, true);
+    }
+
+    private void computeResidual(int[] x, int length, int order) {
+        for (int i = order; i < length; i++) {
+            residual[i] = switch (order) {
+                case 0 -> x[i];
+                case 1 -> x[i] - x[i - 1];
+                case 2 -> x[i] - 2 * x[i - 1] + x[i - 2];
+                case 3 -> x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3];
+                default -> x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4];
+            };
+        }
+    }
+
+    /**
+     * Picks the partition order and per-partition Rice parameters that minimize the
+     * estimated size of the residual, and writes it when {@code emit} is set.
+     *
+     * @return the estimated size in bits
+     */
+    private long residualBits(int length, int order, boolean emit) {
+        int maxPartitionOrder = 0;
+        while (maxPartitionOrder < MAX_PARTITION_ORDER
+                && length % (1 << (maxPartitionOrder + 1)) == 0
+                && (length >> (maxPartitionOrder + 1)) > order) {
+            maxPartitionOrder++;
+        }
+
+        int partitions = 1 << maxPartitionOrder;
+        int partitionSize = length >> maxPartitionOrder;
+        for (int p = 0; p < partitions; p++) {
+            long sum = 0;
+            for (int i = Math.max(order, p * partitionSize); i < (p + 1) * partitionSize; i++) {
+                sum += zigzag(residual[i]);
+            }
+            partitionSums[p] = sum;
+        }
+
+        long bestBits = Long.MAX_VALUE;
+        int bestPartitionOrder = 0;
+        for (int partitionOrder = maxPartitionOrder; partitionOrder >= 0; partitionOrder--) {
+            int count = 1 << partitionOrder;
+            long bits = 6;
+            for (int p = 0; p < count; p++) {
+                int samples = (length >> partitionOrder) - (p == 0 ? order : 0);
+                bits += 4 + riceBits(partitionSums[p], samples, riceParameter(partitionSums[p], samples));
+            }
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestPartitionOrder = partitionOrder;
+            }
+            // Merge neighbours for the next, coarser partition order
+            for (int p = 0; p < count / 2; p++) {
+                partitionSums[p] = partitionSums[2 * p] + partitionSums[2 * p + 1];
+            }
+        }
+
+        if (emit) {
+            writeResidual(length, order, bestPartitionOrder);
+        }
+        return bestBits;
+    }
+
+    private void writeResidual(int length, int order, int partitionOrder) {
+        // Coding method 0: 4-bit Rice parameters
+        frame.write(0, 2);
+        frame.write(partitionOrder, 4);
+        int partitionSize = length >> partitionOrder;
+        for (int p = 0; p < (1 << partitionOrder); p++) {
+            int start = Math.max(order, p * partitionSize);
+            int end = (p + 1) * partitionSize;
+            long sum = 0;
+            for (int i = start; i < end; i++) {
+                sum += zigzag(residual[i]);
+            }
+            int parameter = riceParameter(sum, end - start);
+            frame.write(parameter, 4);
+            for (int i = start; i < end; i++) {
+                int value = zigzag(residual[i]);
+                frame.writeUnary(value >>> parameter);
+                if (parameter > 0) {
+                    frame.write(value, parameter);
+                }
+            }
+        }
+    }
+
+    private static int riceParameter(long sum, int samples) {
+        if (samples <= 0 || sum < samples) {
+            return 0;
+        }
+        int estimate = 63 - Long.numberOfLeadingZeros(sum / samples);
+        int best = estimate;
+        long bestBits = riceBits(sum, samples, estimate);
+        for (int k = Math.max(0, estimate - 1); k <= estimate + 1; k++) {
+            long bits = riceBits(sum, samples, k);
+            if (bits < bestBits) {
+                bestBits = bits;
+                best = k;
+            }
+        }
+        return Math.min(best, MAX_RICE_PARAMETER);
+    }
+
+    private static long riceBits(long sum, int samples, int parameter) {
+        return (long) samples * (parameter + 1) + (sum >> parameter);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private int sampleRateCode() {
+        return switch (sampleRate) {
+            case 8000 -> 4;
+            case 16000 -> 5;
+            case 22050 -> 6;
+            case 24000 -> 7;
+            case 32000 -> 8;
+            case 44100 -> 9;
+            case 48000 -> 10;
+            case 96000 -> 11;
+            default -> sampleRate < 65536 ? 13 : 0;
+        };
+    }
+
+    private void writeUtf8(long value) {
+        if (value < 0x80) {
+            frame.write((int) value, 8);
+            return;
+        }
+        int bytes = 2;
+        while (bytes < 7 && value >= 1L << (5 * bytes + 1)) {
+            bytes++;
+        }
+        int lead = (0xFF00 >> bytes) & 0xFF;
+        frame.write(lead | (int) (value >>> (6 * (bytes - 1))), 8);
+        for (int i = bytes - 2; i >= 0; i--) {
+            frame.write(0x80 | (int) ((value >>> (6 * i)) & 0x3F), 8);
+        }
+    }
+
+    private ByteBuffer header() {
+        BitWriter header = new BitWriter();
+        header.write('f', 8);
+        header.write('L', 8);
+        header.write('a', 8);
+        header.write('C', 8);
+        // Last metadata block, type STREAMINFO
+        header.write(0x80, 8);
+        header.write(STREAMINFO_LENGTH, 24);
+        header.write(BLOCK_SIZE, 16);
+        header.write(BLOCK_SIZE, 16);
+        header.write(maxFrameSize == 0 ? 0 : minFrameSize, 24);
+        header.write(maxFrameSize, 24);
+        header.write(sampleRate, 20);
+        header.write(channels - 1, 3);
+        header.write(BITS_PER_SAMPLE - 1, 5);
+        header.write((int) (totalSamples >>> 32), 4);
+        header.write((int) totalSamples, 32);
+        for (int i = 0; i < 4; i++) {
+            header.write(0, 32);
+        }
+        return ByteBuffer.wrap(header.data, 0, header.length);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        position += writeFully(buffer, position);
+        buffer.clear();
+    }
+
+    private long writeFully(ByteBuffer data, long at) throws IOException {
+        long written = 0;
+        while (data.hasRemaining()) {
+            written += out.write(data, at + written);
+        }
+        return written;
+    }
+
+    private static int crc8(byte[] data, int length) {
+        int crc = 0;
+        for (int i = 0; i < length; i++) {
+            crc = CRC8_TABLE[(crc ^ data[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    private static int crc16(byte[] data, int length) {
+        int crc = 0;
+        for (int i = 0; i < length; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    /**
+     * Big-endian bit packer for one frame.
+     */
+    private static final class BitWriter {
+
+        byte[] data = new byte[BLOCK_SIZE * 4];
+        int length;
+        private long pending;
+        private int pendingBits;
+
+        void write(int value, int bits) {
+            pending = (pending << bits) | (value & ((1L << bits) - 1));
+            pendingBits += bits;
+            while (pendingBits >= 8) {
+                pendingBits -= 8;
+                if (length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                data[length++] = (byte) (pending >>> pendingBits);
+            }
+            pending &= (1L << pendingBits) - 1;
+        }
+
+        void writeUnary(int zeros) {
+            while (zeros >= 32) {
+                write(0, 32);
+                zeros -= 32;
+            }
+            write(1, zeros + 1);
+        }
+
+        void alignToByte() {
+            if (pendingBits > 0) {
+                write(0, 8 - pendingBits);
+            }
+        }
+
+        void reset() {
+            length = 0;
+            pending = 0;
+            pendingBits = 0;
+        }
+    }
+}
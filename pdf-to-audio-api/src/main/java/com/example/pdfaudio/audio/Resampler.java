@@ -0,0 +1,131 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+
+/**
+ * Lowers the sample rate with a windowed-sinc interpolator whose cutoff sits just below
+ * the new Nyquist frequency, so downsampling does not fold high frequencies back into
+ * the speech band. Works on any rate ratio and keeps only the filter's span of input.
+ */
+final class Resampler implements SampleSink {
+
+    // Zero crossings of the sinc on each side; more is sharper and slower
+    private static final int ZERO_CROSSINGS = 12;
+    // Kernel table entries per input sample, linearly interpolated in between
+    private static final int TABLE_RESOLUTION = 512;
+    // Keeps the transition band below the new Nyquist frequency
+    private static final double CUTOFF_MARGIN = 0.94;
+
+    private final SampleSink next;
+    private final int channels;
+    private final double step;
+    private final int halfWidth;
+    private final float[] kernel;
+
+    private float[] history = new float[4096];
+    private int historyFrames;
+    private long historyStart;
+    private double position;
+    private short[] output = new short[4096];
+
+    Resampler(SampleSink next, int channels, int inputRate, int outputRate) {
+        this.next = next;
+        this.channels = channels;
+        this.step = (double) inputRate / outputRate;
+        double cutoff = Math.min(1.0, (double) outputRate / inputRate) * CUTOFF_MARGIN;
+        this.halfWidth = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+
+        kernel = new float[halfWidth * TABLE_RESOLUTION + 2];
+        for (int i = 0; i < kernel.length; i++) {
+            double x = (double) i / TABLE_RESOLUTION;
+            if (x >= halfWidth) {
+                continue;
+            }
+            double t = Math.PI * cutoff * x;
+            double sinc = x == 0 ? 1.0 : Math.sin(t) / t;
+            double window = 0.42 + 0.5 * Math.cos(Math.PI * x / halfWidth) + 0.08 * Math.cos(2 * Math.PI * x / halfWidth);
+            kernel[i] = (float) (cutoff * sinc * window);
+        }
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) throws IOException {
+        int frames = length / channels;
+        ensureHistoryCapacity(frames);
+        int base = historyFrames * channels;
+        for (int i = 0; i < frames * channels; i++) {
+            history[base + i] = samples[offset + i];
+        }
+        historyFrames += frames;
+        emit(historyStart + historyFrames - halfWidth);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        // Zeros past the end let the last output frames see a full filter span
+        short[] padding = new short[halfWidth * channels];
+        write(padding, 0, padding.length);
+        next.finish();
+    }
+
+    /**
+     * Produces every output frame whose position lies before {@code limit}, then drops
+     * input the filter will not reach again.
+     */
+    private void emit(long limit) throws IOException {
+        int produced = 0;
+        while (position < limit) {
+            if ((produced + 1) * channels > output.length) {
+                next.write(output, 0, produced * channels);
+                produced = 0;
+            }
+            long center = (long) Math.floor(position);
+            long first = Math.max(historyStart, center - halfWidth + 1);
+            long last = Math.min(historyStart + historyFrames - 1, center + halfWidth);
+            for (int channel = 0; channel < channels; channel++) {
+                double sum = 0;
+                for (long k = first; k <= last; k++) {
+                    sum += history[(int) (k - historyStart) * channels + channel] * weight(Math.abs(k - position));
+                }
+                output[produced * channels + channel] = clip(sum);
+            }
+            produced++;
+            position += step;
+        }
+        if (produced > 0) {
+            next.write(output, 0, produced * channels);
+        }
+
+        long keepFrom = (long) Math.floor(position) - halfWidth + 1;
+        int discard = (int) Math.max(0, Math.min(historyFrames, keepFrom - historyStart));
+        if (discard > 0) {
+            System.arraycopy(history, discard * channels, history, 0, (historyFrames - discard) * channels);
+            historyFrames -= discard;
+            historyStart += discard;
+        }
+    }
+
+    private float weight(double distance) {
+        double index = distance * TABLE_RESOLUTION;
+        int i = (int) index;
+        if (i + 1 >= kernel.length) {
+            return 0;
+        }
+        float fraction = (float) (index - i);
+        return kernel[i] + (kernel[i + 1] - kernel[i]) * fraction;
+    }
+
+    private void ensureHistoryCapacity(int extraFrames) {
+        int needed = (historyFrames + extraFrames) * channels;
+        if (needed > history.length) {
+            float[] grown = new float[Math.max(needed, history.length * 2)];
+            System.arraycopy(history, 0, grown, 0, historyFrames * channels);
+            history = grown;
+        }
+    }
+
+    private static short clip(double value) {
+        long rounded = Math.round(value);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, rounded));
+    }
+}
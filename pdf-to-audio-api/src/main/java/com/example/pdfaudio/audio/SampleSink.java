@@ -0,0 +1,17 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+
+/**
+ * One step of the post-processing chain. Samples are signed 16-bit and interleaved
+ * when there is more than one channel; {@code length} always covers whole frames.
+ */
+interface SampleSink {
+
+    void write(short[] samples, int offset, int length) throws IOException;
+
+    /**
+     * Flushes anything still buffered and finishes the rest of the chain.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,73 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+
+/**
+ * Drops leading and trailing silence and shortens pauses longer than a limit, such as
+ * the padding every engine call adds around a sentence chunk. A frame is silent when no
+ * channel exceeds the threshold. Only the allowed part of a pause is ever buffered, so
+ * memory stays bounded however long the silence is.
+ */
+final class SilenceTrimmer implements SampleSink {
+
+    private final SampleSink next;
+    private final int channels;
+    private final int threshold;
+    private final short[] pause;
+    private int pauseLength;
+    private boolean speechStarted;
+
+    /**
+     * @param threshold     largest absolute sample value still counted as silence
+     * @param maxPauseFrames longest pause kept inside the audio
+     */
+    SilenceTrimmer(SampleSink next, int channels, int threshold, int maxPauseFrames) {
+        this.next = next;
+        this.channels = channels;
+        this.threshold = threshold;
+        this.pause = new short[maxPauseFrames * channels];
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) throws IOException {
+        int end = offset + length;
+        int runStart = offset;
+        for (int frame = offset; frame < end; frame += channels) {
+            if (isSilent(samples, frame)) {
+                if (frame > runStart) {
+                    next.write(samples, runStart, frame - runStart);
+                }
+                runStart = frame + channels;
+                if (speechStarted && pauseLength < pause.length) {
+                    System.arraycopy(samples, frame, pause, pauseLength, channels);
+                    pauseLength += channels;
+                }
+            } else if (frame == runStart) {
+                // First sound after a pause: the kept part of the pause goes out first
+                if (pauseLength > 0) {
+                    next.write(pause, 0, pauseLength);
+                    pauseLength = 0;
+                }
+                speechStarted = true;
+            }
+        }
+        if (end > runStart) {
+            next.write(samples, runStart, end - runStart);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        // A pause still pending is trailing silence
+        next.finish();
+    }
+
+    private boolean isSilent(short[] samples, int frame) {
+        for (int i = frame; i < frame + channels; i++) {
+            if (Math.abs(samples[i]) > threshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joins WAV files of the same format into one file by copying their PCM data
+ * channel-to-channel, without decoding or buffering the audio on the heap.
+ */
+public final class WavConcatenator {
+
+    private WavConcatenator() {
+    }
+
+    /**
+     * Writes the data chunks of {@code inputs}, in order, to {@code output} under a single
+     * header whose RIFF and data lengths are rewritten once all audio has been copied.
+     *
+     * @return the header of the written file
+     */
+    public static WavHeader concatenate(List<Path> inputs, Path output) throws IOException {
+        if (inputs.isEmpty()) {
+            throw new IOException("No audio to concatenate");
+        }
+
+        List<WavHeader> headers = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            WavHeader header = WavHeader.read(input);
+            if (!headers.isEmpty() && !headers.get(0).hasSameFormat(header)) {
+                throw new IOException("Cannot concatenate " + input + " (" + header + ") with "
+                        + inputs.get(0) + " (" + headers.get(0) + ")");
+            }
+            headers.add(header);
+        }
+        WavHeader format = headers.get(0);
+
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // Placeholder until the real data length is known
+            out.write(format.toBytes(0));
+
+            long dataLength = 0;
+            int blockAlign = Math.max(1, format.getBlockAlign());
+            for (int i = 0; i < inputs.size(); i++) {
+                WavHeader header = headers.get(i);
+                // Drop a trailing partial frame so later inputs stay sample aligned
+                long length = header.getDataLength() - header.getDataLength() % blockAlign;
+                try (FileChannel in = FileChannel.open(inputs.get(i), StandardOpenOption.READ)) {
+                    dataLength += transferFully(in, header.getDataOffset(), length, out);
+                }
+            }
+            if (dataLength > WavHeader.MAX_DATA_LENGTH) {
+                throw new IOException("Concatenated audio exceeds the 4GB WAV limit");
+            }
+
+            out.write(format.toBytes(dataLength), 0);
+            return new WavHeader(format.getAudioFormat(), format.getChannels(), format.getSampleRate(),
+                    format.getBitsPerSample(), WavHeader.CANONICAL_HEADER_SIZE, dataLength);
+        }
+    }
+
+    private static long transferFully(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long n = in.transferTo(position + transferred, count - transferred, out);
+            if (n <= 0) {
+                break;
+            }
+            transferred += n;
+        }
+        return transferred;
+    }
+}
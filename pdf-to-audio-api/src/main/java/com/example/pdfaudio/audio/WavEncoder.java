@@ -0,0 +1,301 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a RIFF/WAVE file through a direct buffer, leaving the lengths in the header to
+ * be filled in once the last sample is known. Codecs other than PCM get the extended
+ * {@code fmt} chunk and the {@code fact} chunk the WAVE spec asks for.
+ */
+abstract class WavEncoder implements SampleSink {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    protected final int channels;
+
+    private final FileChannel out;
+    private final int formatTag;
+    private final int sampleRate;
+    private final int byteRate;
+    private final int blockAlign;
+    private final int bitsPerSample;
+    // null for PCM, which uses the canonical 44-byte header
+    private final byte[] fmtExtension;
+    private final int headerLength;
+    private long dataLength;
+    private long frames;
+
+    WavEncoder(FileChannel out, int formatTag, int channels, int sampleRate, int byteRate, int blockAlign,
+               int bitsPerSample, byte[] fmtExtension) throws IOException {
+        this.out = out;
+        this.formatTag = formatTag;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.byteRate = byteRate;
+        this.blockAlign = blockAlign;
+        this.bitsPerSample = bitsPerSample;
+        this.fmtExtension = fmtExtension;
+        this.headerLength = fmtExtension == null
+                ? WavHeader.CANONICAL_HEADER_SIZE
+                : WavHeader.CANONICAL_HEADER_SIZE + 2 + fmtExtension.length + 12;
+        writeFully(header(0, 0), 0);
+    }
+
+    @Override
+    public final void write(short[] samples, int offset, int length) throws IOException {
+        frames += length / channels;
+        encode(samples, offset, length);
+    }
+
+    @Override
+    public final void finish() throws IOException {
+        encodeRemaining();
+        drain();
+        long end = headerLength + dataLength;
+        if ((dataLength & 1) != 0) {
+            // Chunks are word aligned; the pad byte is not part of the data
+            writeFully(ByteBuffer.allocate(1), end);
+        }
+        writeFully(header(dataLength, frames), 0);
+    }
+
+    protected abstract void encode(short[] samples, int offset, int length) throws IOException;
+
+    /**
+     * Encodes samples held back for a partial block, if the codec works in blocks.
+     */
+    protected void encodeRemaining() throws IOException {
+    }
+
+    /**
+     * Makes room for {@code bytes} more bytes in the buffer.
+     */
+    protected void reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        dataLength += writeFully(buffer, headerLength + dataLength);
+        buffer.clear();
+    }
+
+    private ByteBuffer header(long dataLength, long frames) {
+        ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(ascii("RIFF"));
+        header.putInt((int) Math.min(0xFFFFFFFFL, headerLength - 8 + dataLength + (dataLength & 1)));
+        header.put(ascii("WAVE"));
+        header.put(ascii("fmt "));
+        header.putInt(fmtExtension == null ? 16 : 18 + fmtExtension.length);
+        header.putShort((short) formatTag);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(byteRate);
+        header.putShort((short) blockAlign);
+        header.putShort((short) bitsPerSample);
+        if (fmtExtension != null) {
+            header.putShort((short) fmtExtension.length);
+            header.put(fmtExtension);
+            header.put(ascii("fact"));
+            header.putInt(4);
+            header.putInt((int) Math.min(0xFFFFFFFFL, frames));
+        }
+        header.put(ascii("data"));
+        header.putInt((int) Math.min(0xFFFFFFFFL, dataLength));
+        header.flip();
+        return header;
+    }
+
+    private long writeFully(ByteBuffer data, long position) throws IOException {
+        long written = 0;
+        while (data.hasRemaining()) {
+            written += out.write(data, position + written);
+        }
+        return written;
+    }
+
+    private static byte[] ascii(String id) {
+        return id.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Plain 16-bit PCM.
+     */
+    static final class Pcm extends WavEncoder {
+
+        Pcm(FileChannel out, int channels, int sampleRate) throws IOException {
+            super(out, WavHeader.FORMAT_PCM, channels, sampleRate, sampleRate * channels * 2, channels * 2, 16, null);
+        }
+
+        @Override
+        protected void encode(short[] samples, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                reserve(2);
+                buffer.putShort(samples[i]);
+            }
+        }
+    }
+
+    /**
+     * G.711 mu-law: each sample is companded to 8 bits, keeping about 14 bits of dynamic
+     * range where speech needs it.
+     */
+    static final class MuLaw extends WavEncoder {
+
+        private static final int FORMAT_MULAW = 7;
+        private static final int BIAS = 0x84;
+        private static final int CLIP = 32635;
+
+        MuLaw(FileChannel out, int channels, int sampleRate) throws IOException {
+            super(out, FORMAT_MULAW, channels, sampleRate, sampleRate * channels, channels, 8, new byte[0]);
+        }
+
+        @Override
+        protected void encode(short[] samples, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                reserve(1);
+                buffer.put(encodeSample(samples[i]));
+            }
+        }
+
+        static byte encodeSample(short sample) {
+            int value = sample;
+            int sign = 0;
+            if (value < 0) {
+                sign = 0x80;
+                value = -value;
+            }
+            value = Math.min(value, CLIP) + BIAS;
+            int exponent = 7;
+            for (int mask = 0x4000; (value & mask) == 0 && exponent > 0; mask >>= 1) {
+                exponent--;
+            }
+            int mantissa = (value >> (exponent + 3)) & 0x0F;
+            return (byte) ~(sign | (exponent << 4) | mantissa);
+        }
+    }
+
+    /**
+     * IMA ADPCM, mono: 4 bits per sample in blocks that each restart from a stored sample,
+     * so a damaged block does not corrupt the rest of the file.
+     */
+    static final class ImaAdpcm extends WavEncoder {
+
+        private static final int FORMAT_IMA_ADPCM = 0x11;
+
+        private static final int[] INDEX_TABLE = {-1, -1, -1, -1, 2, 4, 6, 8, -1, -1, -1, -1, 2, 4, 6, 8};
+
+        private static final int[] STEP_TABLE = {
+                7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+                50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+                337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707,
+                1878, 2066, 2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845,
+                8630, 9493, 10442, 11487, 12635, 13899, 15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794,
+                32767};
+
+        private final int blockAlign;
+        private final short[] block;
+        private int blockLength;
+        private int predictor;
+        private int stepIndex;
+
+        ImaAdpcm(FileChannel out, int sampleRate) throws IOException {
+            this(out, sampleRate, blockAlignFor(sampleRate));
+        }
+
+        private ImaAdpcm(FileChannel out, int sampleRate, int blockAlign) throws IOException {
+            super(out, FORMAT_IMA_ADPCM, 1, sampleRate,
+                    (int) ((long) sampleRate * blockAlign / samplesPerBlock(blockAlign)),
+                    blockAlign, 4, samplesPerBlockExtension(blockAlign));
+            this.blockAlign = blockAlign;
+            this.block = new short[samplesPerBlock(blockAlign)];
+        }
+
+        @Override
+        protected void encode(short[] samples, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                block[blockLength++] = samples[i];
+                if (blockLength == block.length) {
+                    encodeBlock();
+                }
+            }
+        }
+
+        @Override
+        protected void encodeRemaining() throws IOException {
+            if (blockLength > 0) {
+                // The fact chunk holds the real length; repeat the last sample to fill the block
+                short last = block[blockLength - 1];
+                while (blockLength < block.length) {
+                    block[blockLength++] = last;
+                }
+                encodeBlock();
+            }
+        }
+
+        private void encodeBlock() throws IOException {
+            reserve(blockAlign);
+            predictor = block[0];
+            buffer.putShort(block[0]);
+            buffer.put((byte) stepIndex);
+            buffer.put((byte) 0);
+            for (int i = 1; i < block.length; i += 2) {
+                int low = encodeSample(block[i]);
+                int high = encodeSample(block[i + 1]);
+                buffer.put((byte) (low | (high << 4)));
+            }
+            blockLength = 0;
+        }
+
+        private int encodeSample(short sample) {
+            int step = STEP_TABLE[stepIndex];
+            int diff = sample - predictor;
+            int nibble = 0;
+            if (diff < 0) {
+                nibble = 8;
+                diff = -diff;
+            }
+            int delta = step >> 3;
+            if (diff >= step) {
+                nibble |= 4;
+                diff -= step;
+                delta += step;
+            }
+            step >>= 1;
+            if (diff >= step) {
+                nibble |= 2;
+                diff -= step;
+                delta += step;
+            }
+            step >>= 1;
+            if (diff >= step) {
+                nibble |= 1;
+                delta += step;
+            }
+            predictor += (nibble & 8) != 0 ? -delta : delta;
+            predictor = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predictor));
+            stepIndex = Math.max(0, Math.min(STEP_TABLE.length - 1, stepIndex + INDEX_TABLE[nibble]));
+            return nibble;
+        }
+
+        private static int blockAlignFor(int sampleRate) {
+            return sampleRate <= 11025 ? 256 : sampleRate <= 22050 ? 512 : 1024;
+        }
+
+        private static int samplesPerBlock(int blockAlign) {
+            return (blockAlign - 4) * 2 + 1;
+        }
+
+        private static byte[] samplesPerBlockExtension(int blockAlign) {
+            int samplesPerBlock = samplesPerBlock(blockAlign);
+            return new byte[]{(byte) samplesPerBlock, (byte) (samplesPerBlock >> 8)};
+        }
+    }
+}
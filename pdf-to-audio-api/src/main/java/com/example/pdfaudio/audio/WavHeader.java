@@ -0,0 +1,172 @@
+package com.example.pdfaudio.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Format and data location of a RIFF/WAVE file, and the canonical 44-byte header
+ * used when writing one.
+ */
+public final class WavHeader {
+
+    public static final int CANONICAL_HEADER_SIZE = 44;
+    public static final int FORMAT_PCM = 1;
+
+    /** Largest data chunk a RIFF file can describe. */
+    public static final long MAX_DATA_LENGTH = 0xFFFFFFFFL - (CANONICAL_HEADER_SIZE - 8);
+
+    private final int audioFormat;
+    private final int channels;
+    private final int sampleRate;
+    private final int bitsPerSample;
+    private final long dataOffset;
+    private final long dataLength;
+
+    public WavHeader(int audioFormat, int channels, int sampleRate, int bitsPerSample, long dataOffset, long dataLength) {
+        this.audioFormat = audioFormat;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.bitsPerSample = bitsPerSample;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    public static WavHeader read(Path wavFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(wavFile, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Walks the RIFF chunks until the data chunk. A data length that runs past the end
+     * of the file (some engines write a placeholder when streaming) is clamped to what
+     * is actually there. Formats without channels, sample size or sample rate are rejected.
+     */
+    public static WavHeader read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, 0);
+        if (buffer.getInt(0) != fourCC("RIFF") || buffer.getInt(8) != fourCC("WAVE")) {
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+
+        int audioFormat = -1, channels = 0, sampleRate = 0, bitsPerSample = 0;
+        long position = 12;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        while (position + 8 <= channel.size()) {
+            chunkHeader.clear();
+            readFully(channel, chunkHeader, position);
+            int chunkId = chunkHeader.getInt(0);
+            long chunkSize = Integer.toUnsignedLong(chunkHeader.getInt(4));
+            long chunkData = position + 8;
+
+            if (chunkId == fourCC("fmt ")) {
+                ByteBuffer fmt = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, fmt, chunkData);
+                audioFormat = Short.toUnsignedInt(fmt.getShort(0));
+                channels = Short.toUnsignedInt(fmt.getShort(2));
+                sampleRate = fmt.getInt(4);
+                bitsPerSample = Short.toUnsignedInt(fmt.getShort(14));
+            } else if (chunkId == fourCC("data")) {
+                if (audioFormat < 0) {
+                    throw new IOException("WAVE data chunk before fmt chunk");
+                }
+                // Callers divide by the frame size and sample rate
+                if (channels == 0 || bitsPerSample == 0 || sampleRate <= 0) {
+                    throw new IOException("Invalid WAVE format: " + channels + " channels, " + sampleRate + " Hz, "
+                            + bitsPerSample + " bits");
+                }
+                long available = channel.size() - chunkData;
+                return new WavHeader(audioFormat, channels, sampleRate, bitsPerSample, chunkData,
+                        Math.min(chunkSize, available));
+            }
+            // Chunks are word aligned
+            position = chunkData + chunkSize + (chunkSize & 1);
+        }
+        throw new IOException("WAVE file has no data chunk");
+    }
+
+    /**
+     * Canonical header describing {@code dataLength} bytes of audio in this header's format.
+     */
+    public ByteBuffer toBytes(long dataLength) {
+        long riffLength = Math.min(0xFFFFFFFFL, dataLength + CANONICAL_HEADER_SIZE - 8);
+        ByteBuffer header = ByteBuffer.allocate(CANONICAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(fourCC("RIFF"));
+        header.putInt((int) riffLength);
+        header.putInt(fourCC("WAVE"));
+        header.putInt(fourCC("fmt "));
+        header.putInt(16);
+        header.putShort((short) audioFormat);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(getByteRate());
+        header.putShort((short) getBlockAlign());
+        header.putShort((short) bitsPerSample);
+        header.putInt(fourCC("data"));
+        header.putInt((int) Math.min(0xFFFFFFFFL, dataLength));
+        header.flip();
+        return header;
+    }
+
+    public boolean hasSameFormat(WavHeader other) {
+        return audioFormat == other.audioFormat
+                && channels == other.channels
+                && sampleRate == other.sampleRate
+                && bitsPerSample == other.bitsPerSample;
+    }
+
+    public int getAudioFormat() {
+        return audioFormat;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    public int getBlockAlign() {
+        return channels * ((bitsPerSample + 7) / 8);
+    }
+
+    public int getByteRate() {
+        return sampleRate * getBlockAlign();
+    }
+
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    @Override
+    public String toString() {
+        return "format=" + audioFormat + ", channels=" + channels + ", sampleRate=" + sampleRate
+                + ", bitsPerSample=" + bitsPerSample;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of WAVE file");
+            }
+        }
+    }
+
+    private static int fourCC(String id) {
+        return (id.charAt(0)) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+    }
+}
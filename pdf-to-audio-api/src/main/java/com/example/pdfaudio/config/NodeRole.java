@@ -0,0 +1,42 @@
+package com.example.pdfaudio.config;
+
+import java.util.Locale;
+
+/**
+ * What a node of the application does, selected with {@code app.role}. API nodes take
+ * uploads and answer status and download requests, worker nodes claim queued conversions
+ * and run the pipeline; a node in the {@code all} role does both, as a single instance does.
+ */
+public enum NodeRole {
+
+    ALL("all"),
+    API("api"),
+    WORKER("worker");
+
+    private final String propertyValue;
+
+    NodeRole(String propertyValue) {
+        this.propertyValue = propertyValue;
+    }
+
+    /**
+     * Parses the value of {@code app.role}.
+     */
+    public static NodeRole fromProperty(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (NodeRole role : values()) {
+            if (role.propertyValue.equals(normalized)) {
+                return role;
+            }
+        }
+        throw new IllegalArgumentException("Unknown node role: " + value);
+    }
+
+    public boolean servesApi() {
+        return this != WORKER;
+    }
+
+    public boolean runsWorkers() {
+        return this != API;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.pdfaudio.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Worker pools for the conversion pipeline. Extraction and summarization are
+ * CPU-bound and share one pool sized to the cores; TTS blocks on a subprocess
+ * and gets its own pool so slow synthesis never starves text processing.
+ */
+@Configuration
+public class PipelineExecutorConfig {
+
+    @Value("${pipeline.cpu.threads:0}")
+    private int cpuThreads;
+
+    @Value("${pipeline.cpu.queue.capacity:100}")
+    private int cpuQueueCapacity;
+
+    @Value("${pipeline.tts.threads:4}")
+    private int ttsThreads;
+
+    @Value("${pipeline.tts.queue.capacity:100}")
+    private int ttsQueueCapacity;
+
+    @Value("${pipeline.tts.chunk.threads:4}")
+    private int ttsChunkThreads;
+
+    @Value("${pipeline.stream.threads:16}")
+    private int streamThreads;
+
+    @Value("${pipeline.batch.threads:2}")
+    private int batchThreads;
+
+    @Value("${pipeline.batch.queue.capacity:10}")
+    private int batchQueueCapacity;
+
+    @Value("${pipeline.narration.threads:2}")
+    private int narrationThreads;
+
+    @Value("${pipeline.narration.queue.capacity:10}")
+    private int narrationQueueCapacity;
+
+    @Bean(name = "cpuStageExecutor")
+    public ThreadPoolTaskExecutor cpuStageExecutor() {
+        int threads = cpuThreads > 0 ? cpuThreads : Runtime.getRuntime().availableProcessors();
+        return createExecutor("pipeline-cpu-", threads, cpuQueueCapacity);
+    }
+
+    @Bean(name = "ttsStageExecutor")
+    public ThreadPoolTaskExecutor ttsStageExecutor() {
+        return createExecutor("pipeline-tts-", ttsThreads, ttsQueueCapacity);
+    }
+
+    /**
+     * Runs the engine processes for individual sentence chunks. When every worker is
+     * busy and the queue is full, the submitting TTS stage thread synthesizes the chunk
+     * itself, which throttles new chunk submissions instead of failing the job.
+     */
+    @Bean(name = "ttsChunkExecutor")
+    public ThreadPoolTaskExecutor ttsChunkExecutor() {
+        ThreadPoolTaskExecutor executor = createExecutor("tts-chunk-", ttsChunkThreads, ttsChunkThreads * 4);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Writes streaming audio responses; each thread mostly waits for the next chunk.
+     */
+    @Bean(name = "audioStreamExecutor")
+    public ThreadPoolTaskExecutor audioStreamExecutor() {
+        return createExecutor("audio-stream-", streamThreads, streamThreads);
+    }
+
+    /**
+     * Feeds the documents of batch uploads into the pipeline a few at a time; each thread
+     * mostly waits for documents to finish.
+     */
+    @Bean(name = "batchExecutor")
+    public ThreadPoolTaskExecutor batchExecutor() {
+        return createExecutor("pipeline-batch-", batchThreads, batchQueueCapacity);
+    }
+
+    /**
+     * Plans full-document narrations and feeds their chapters into the stage pools; each
+     * thread mostly waits for chapters to finish.
+     */
+    @Bean(name = "narrationExecutor")
+    public ThreadPoolTaskExecutor narrationExecutor() {
+        return createExecutor("pipeline-narration-", narrationThreads, narrationQueueCapacity);
+    }
+
+    private ThreadPoolTaskExecutor createExecutor(String threadNamePrefix, int threads, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.pdfaudio.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs streaming response bodies on a bounded pool instead of a new thread per request,
+ * and keeps nodes in the {@code worker} role from serving the conversion API: they only
+ * answer {@code /health} and the actuator endpoints.
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Autowired
+    @Qualifier("audioStreamExecutor")
+    private AsyncTaskExecutor audioStreamExecutor;
+
+    @Value("${pipeline.stream.timeout.seconds:600}")
+    private long streamTimeoutSeconds;
+
+    @Value("${app.role:all}")
+    private String role;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(audioStreamExecutor);
+        configurer.setDefaultTimeout(streamTimeoutSeconds * 1000);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (NodeRole.fromProperty(role).servesApi()) {
+            return;
+        }
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                    throws Exception {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "This node only runs conversion workers");
+                return false;
+            }
+        }).addPathPatterns("/api/pdf-to-audio/**").excludePathPatterns("/api/pdf-to-audio/health");
+    }
+}
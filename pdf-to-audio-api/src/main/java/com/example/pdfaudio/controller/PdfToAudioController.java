@@ -1,23 +1,51 @@
 package com.example.pdfaudio.controller;
 
 
+import com.example.pdfaudio.audio.AudioOutputFormat;
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import com.example.pdfaudio.service.AdmissionControlService;
+import com.example.pdfaudio.service.AdmissionRejectedException;
+import com.example.pdfaudio.service.BatchConversionService;
+import com.example.pdfaudio.service.ConversionBatch;
+import com.example.pdfaudio.service.ConversionJob;
+import com.example.pdfaudio.service.ConversionJobService;
+import com.example.pdfaudio.service.DocumentStoreService;
+import com.example.pdfaudio.service.FileDownloadService;
 import com.example.pdfaudio.service.FileStorageService;
-import com.example.pdfaudio.service.PdfTextExtractionService;
+import com.example.pdfaudio.service.Narration;
+import com.example.pdfaudio.service.NarrationService;
+import com.example.pdfaudio.service.PdfRejectedException;
+import com.example.pdfaudio.service.QueuedConversionService;
+import com.example.pdfaudio.service.QueuedJob;
+import com.example.pdfaudio.service.SynthesisProgress;
 import com.example.pdfaudio.service.TextSummarizationService;
 import com.example.pdfaudio.service.TextToSpeechService;
+import com.example.pdfaudio.service.VoiceSettings;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/pdf-to-audio")
@@ -25,100 +53,481 @@ import java.util.Map;
 public class PdfToAudioController {
 
     @Autowired
-    private PdfTextExtractionService pdfTextExtractionService;
+    private ConversionJobService conversionJobService;
 
     @Autowired
-    private TextSummarizationService textSummarizationService;
+    private TextToSpeechService textToSpeechService;
 
     @Autowired
-    private TextToSpeechService textToSpeechService;
+    private TextSummarizationService textSummarizationService;
 
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private FileDownloadService fileDownloadService;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private BatchConversionService batchConversionService;
+
+    @Autowired
+    private NarrationService narrationService;
+
+    @Autowired
+    private DocumentStoreService documentStoreService;
+
+    @Autowired
+    private QueuedConversionService queuedConversionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Value("${admission.client.header:X-Client-Id}")
+    private String clientIdHeader;
+
+    @Value("${admission.client.trusted.proxies:}")
+    private Set<String> trustedProxies;
+
+    @Value("${pipeline.stream.timeout.seconds:600}")
+    private long streamTimeoutSeconds;
+
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadPdfAndConvertToAudio(
             @RequestParam("file") MultipartFile file,
-            @RequestParam(value = "voiceType", defaultValue = "default") String voiceType) {
-        
-        Map<String, Object> response = new HashMap<>();
+            @RequestParam(value = "voiceType", defaultValue = "default") String voiceType,
+            @RequestParam(value = "summarizer", required = false) String summarizer,
+            HttpServletRequest request) {
         
         try {
-            // Validate input
-            if (file.isEmpty()) {
-                return createErrorResponse("File is empty", HttpStatus.BAD_REQUEST);
+            ResponseEntity<Map<String, Object>> validationError = validatePdfUpload(file);
+            if (validationError != null) {
+                return validationError;
             }
+            admissionControlService.checkClientRate(clientId(request));
 
-            if (!file.getContentType().equals("application/pdf")) {
-                return createErrorResponse("File must be a PDF", HttpStatus.BAD_REQUEST);
+            // Run the pipeline, here or on a worker, and wait for it on this request thread
+            TextSummarizationService.Engine engine = textSummarizationService.engine(summarizer);
+            Map<String, Object> response;
+            if (queuedConversionService.isEnabled()) {
+                QueuedJob job = queuedConversionService.submit(file, voiceType, engine);
+                response = queuedConversionService.awaitResult(job);
+            } else {
+                ConversionJob job = conversionJobService.submit(file, voiceType, engine);
+                response = conversionJobService.awaitResult(job);
             }
 
-            // Ensure both directories exist
-            fileStorageService.ensureAudioDirectoryExists();
-            fileStorageService.ensurePdfDirectoryExists();
+            return ResponseEntity.ok(response);
 
-            // Generate unique filename
-            String uniqueFileName = fileStorageService.generateUniqueFileName(file.getOriginalFilename());
+        } catch (AdmissionRejectedException e) {
+            return createRejectedResponse(e);
+        } catch (PdfRejectedException e) {
+            return createPreflightResponse(e);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (TaskRejectedException e) {
+            return createErrorResponse("Server is busy, please retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (IOException e) {
+            return createErrorResponse("Error processing PDF: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return createErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            // Step 1: Save uploaded PDF file
-            String savedPdfPath = fileStorageService.savePdfFile(file, uniqueFileName);
+    @PostMapping("/upload-async")
+    public ResponseEntity<Map<String, Object>> uploadPdfAndConvertToAudioAsync(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "voiceType", defaultValue = "default") String voiceType,
+            @RequestParam(value = "summarizer", required = false) String summarizer,
+            HttpServletRequest request) {
 
-            // Step 2: Extract text from PDF
-            String extractedText = pdfTextExtractionService.extractTextFromPdf(file);
-            
-            if (extractedText.trim().isEmpty()) {
-                return createErrorResponse("No text found in PDF", HttpStatus.BAD_REQUEST);
+        try {
+            ResponseEntity<Map<String, Object>> validationError = validatePdfUpload(file);
+            if (validationError != null) {
+                return validationError;
             }
+            admissionControlService.checkClientRate(clientId(request));
+
+            TextSummarizationService.Engine engine = textSummarizationService.engine(summarizer);
+            Map<String, Object> response;
+            String jobId;
+            if (queuedConversionService.isEnabled()) {
+                QueuedJob job = queuedConversionService.submit(file, voiceType, engine);
+                response = job.toStatusMap();
+                jobId = job.jobId;
+            } else {
+                ConversionJob job = conversionJobService.submit(file, voiceType, engine);
+                response = job.toStatusMap();
+                jobId = job.getJobId();
+            }
+
+            response.put("success", true);
+            response.put("statusUrl", "/api/pdf-to-audio/jobs/" + jobId);
+            response.put("resultUrl", "/api/pdf-to-audio/jobs/" + jobId + "/result");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (AdmissionRejectedException e) {
+            return createRejectedResponse(e);
+        } catch (PdfRejectedException e) {
+            return createPreflightResponse(e);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (TaskRejectedException e) {
+            return createErrorResponse("Server is busy, please retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (IOException e) {
+            return createErrorResponse("Error saving PDF: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return createErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Converts several PDFs, or the PDFs inside ZIP archives, in one request and returns
+     * {@code 202} with a manifest to poll.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> uploadBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "voiceType", defaultValue = "default") String voiceType,
+            HttpServletRequest request) {
 
-            // Step 3: Generate summary
-            String summary = textSummarizationService.generateSummary(extractedText);
+        try {
+            admissionControlService.checkClientRate(clientId(request));
+            ConversionBatch batch = batchConversionService.submit(files, voiceType);
+
+            Map<String, Object> response = batch.toManifest();
+            response.put("success", true);
+            response.put("statusUrl", "/api/pdf-to-audio/batches/" + batch.getBatchId());
+            response.put("archiveUrl", "/api/pdf-to-audio/batches/" + batch.getBatchId() + "/archive");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (AdmissionRejectedException e) {
+            return createRejectedResponse(e);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (TaskRejectedException e) {
+            return createErrorResponse("Server is busy, please retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (IOException e) {
+            return createErrorResponse("Error saving PDFs: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return createErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Same as {@code /batch}, but answers with a ZIP of the audio files streamed as the
+     * documents finish, followed by the final manifest. Errors before the batch is queued
+     * are reported as JSON with the usual status codes.
+     */
+    @PostMapping("/batch/archive")
+    public ResponseEntity<StreamingResponseBody> uploadBatchForArchive(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "voiceType", defaultValue = "default") String voiceType,
+            HttpServletRequest request) {
+
+        ConversionBatch batch;
+        try {
+            admissionControlService.checkClientRate(clientId(request));
+            batch = batchConversionService.submit(files, voiceType);
+        } catch (AdmissionRejectedException e) {
+            return streamError(createRejectedResponse(e));
+        } catch (IllegalArgumentException e) {
+            return streamError(createErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST));
+        } catch (TaskRejectedException e) {
+            return streamError(createErrorResponse("Server is busy, please retry later", HttpStatus.SERVICE_UNAVAILABLE));
+        } catch (Exception e) {
+            return streamError(createErrorResponse("Error saving PDFs: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR));
+        }
+        return streamArchive(batch);
+    }
+
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<Map<String, Object>> getBatchStatus(@PathVariable String batchId) {
+        ConversionBatch batch = batchConversionService.getBatch(batchId);
+        if (batch == null) {
+            return createErrorResponse("Batch not found: " + batchId, HttpStatus.NOT_FOUND);
+        }
+        Map<String, Object> response = batch.toManifest();
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/batches/{batchId}/archive")
+    public ResponseEntity<StreamingResponseBody> getBatchArchive(@PathVariable String batchId) {
+        ConversionBatch batch = batchConversionService.getBatch(batchId);
+        if (batch == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return streamArchive(batch);
+    }
+
+    /**
+     * Narrates the full text of a PDF chapter by chapter and returns {@code 202} with a
+     * manifest to poll; chapters come from the PDF outline, or page ranges without one.
+     */
+    @PostMapping("/narrate")
+    public ResponseEntity<Map<String, Object>> narratePdf(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "voiceType", defaultValue = "default") String voiceType,
+            HttpServletRequest request) {
 
-            // Step 4: Convert summary to audio with selected voice
-            String audioFilePath = textToSpeechService.convertTextToWav(summary, uniqueFileName, voiceType);
-            
-            response.put("voiceType", voiceType);
+        try {
+            ResponseEntity<Map<String, Object>> validationError = validatePdfUpload(file);
+            if (validationError != null) {
+                return validationError;
+            }
+            admissionControlService.checkClientRate(clientId(request));
 
-            // Step 5: Cleanup old files (keep only 10 most recent)
-            fileStorageService.cleanupOldFiles(10);
-            fileStorageService.cleanupOldPdfFiles(10);
+            Narration narration = narrationService.submit(file, voiceType);
 
-            // Prepare successful response
+            Map<String, Object> response = narration.toManifest();
             response.put("success", true);
-            response.put("message", "PDF successfully converted to audio");
-            response.put("originalFileName", file.getOriginalFilename());
-            response.put("savedPdfPath", savedPdfPath);
-            response.put("audioFileName", uniqueFileName + ".wav");
-            response.put("audioFilePath", audioFilePath);
-            response.put("summary", summary);
-            response.put("extractedTextLength", extractedText.length());
-            response.put("summaryLength", summary.length());
-            response.put("audioFileSize", fileStorageService.getFileSize(audioFilePath));
-            response.put("pdfFileSize", fileStorageService.getFileSize(savedPdfPath));
+            response.put("statusUrl", "/api/pdf-to-audio/narrations/" + narration.getNarrationId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (AdmissionRejectedException e) {
+            return createRejectedResponse(e);
+        } catch (PdfRejectedException e) {
+            return createPreflightResponse(e);
+        } catch (TaskRejectedException e) {
+            return createErrorResponse("Server is busy, please retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (IOException e) {
+            return createErrorResponse("Error saving PDF: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return createErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
+    @GetMapping("/narrations/{narrationId}")
+    public ResponseEntity<Map<String, Object>> getNarrationStatus(@PathVariable String narrationId) {
+        Narration narration = narrationService.getNarration(narrationId);
+        if (narration == null) {
+            return createErrorResponse("Narration not found: " + narrationId, HttpStatus.NOT_FOUND);
+        }
+        Map<String, Object> response = narration.toManifest();
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * M3U playlist of the chapters ready so far; players reload it while the narration runs.
+     */
+    @GetMapping("/narrations/{narrationId}/playlist.m3u")
+    public ResponseEntity<String> getNarrationPlaylist(@PathVariable String narrationId) {
+        Narration narration = narrationService.getNarration(narrationId);
+        if (narration == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("audio/x-mpegurl"))
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .body(narration.toPlaylist());
+    }
+
+    /**
+     * One chapter's audio: streamed while it is synthesized, like {@code /jobs/{jobId}/stream},
+     * and redirected to the stored file once it is finished.
+     */
+    @GetMapping("/narrations/{narrationId}/chapters/{index}")
+    public ResponseEntity<StreamingResponseBody> getNarrationChapter(@PathVariable String narrationId,
+                                                                     @PathVariable int index) {
+        Narration narration = narrationService.getNarration(narrationId);
+        Narration.Chapter chapter = narration != null ? narration.getChapter(index) : null;
+        if (chapter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        switch (chapter.getStatus()) {
+            case COMPLETED:
+                return ResponseEntity.status(HttpStatus.SEE_OTHER)
+                        .location(URI.create("/api/pdf-to-audio/download/" + chapter.getAudioFileName()))
+                        .build();
+            case EMPTY:
+                return ResponseEntity.noContent().build();
+            case FAILED:
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            default:
+                return streamSynthesis(chapter.getSynthesis());
+        }
+    }
+
+    /**
+     * The stored text and summary of a converted document, by the {@code documentId} every
+     * conversion returns.
+     */
+    @GetMapping("/documents/{documentId}")
+    public ResponseEntity<Map<String, Object>> getDocument(
+            @PathVariable String documentId,
+            @RequestParam(value = "summarizer", required = false) String summarizer) {
+        try {
+            TextSummarizationService.Engine engine = textSummarizationService.engine(summarizer);
+            DocumentStoreService.StoredDocument document = documentStoreService.load(documentId, engine);
+            if (document == null) {
+                return createErrorResponse("Document not found: " + documentId, HttpStatus.NOT_FOUND);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("documentId", document.documentId);
+            response.put("originalFileName", document.originalFileName);
+            response.put("createdAt", document.createdAt);
+            response.put("extractedTextLength", document.extractedTextLength);
+            response.put("summarizer", document.summarizer);
+            response.put("summary", document.summary);
+            response.put("summaryLength", document.summary != null ? document.summary.length() : 0);
+            response.put("textStored", document.textStored);
+            response.put("pdfStored", document.pdfStored);
+            response.put("revoiceUrl", "/api/pdf-to-audio/documents/" + documentId + "/revoice");
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (IOException e) {
+            return createErrorResponse("Error reading document: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Speaks a stored document again with another voice, rate or volume. Only the TTS stage
+     * runs, after summarizing the stored text if the {@code summarizer} asked for has no
+     * stored summary yet; returns {@code 202} with a job to poll like {@code /upload-async}.
+     */
+    @PostMapping("/documents/{documentId}/revoice")
+    public ResponseEntity<Map<String, Object>> revoiceDocument(
+            @PathVariable String documentId,
+            @RequestParam(value = "voiceType", defaultValue = "default") String voiceType,
+            @RequestParam(value = "rate", required = false) Integer rate,
+            @RequestParam(value = "volume", required = false) Integer volume,
+            @RequestParam(value = "summarizer", required = false) String summarizer,
+            HttpServletRequest request) {
+
+        try {
+            VoiceSettings defaults = textToSpeechService.voiceSettings(voiceType);
+            VoiceSettings voice = new VoiceSettings(voiceType,
+                    rate != null ? rate : defaults.getRate(),
+                    volume != null ? volume : defaults.getVolume());
+            admissionControlService.checkClientRate(clientId(request));
+
+            ConversionJob job = conversionJobService.revoice(documentId, voice,
+                    textSummarizationService.engine(summarizer));
+            if (job == null) {
+                return createErrorResponse("Document not found: " + documentId, HttpStatus.NOT_FOUND);
+            }
 
+            Map<String, Object> response = job.toStatusMap();
+            response.put("success", true);
+            response.put("statusUrl", "/api/pdf-to-audio/jobs/" + job.getJobId());
+            response.put("resultUrl", "/api/pdf-to-audio/jobs/" + job.getJobId() + "/result");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (AdmissionRejectedException e) {
+            return createRejectedResponse(e);
+        } catch (TaskRejectedException e) {
+            return createErrorResponse("Server is busy, please retry later", HttpStatus.SERVICE_UNAVAILABLE);
         } catch (IOException e) {
-            return createErrorResponse("Error processing PDF: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            return createErrorResponse("Error reading document: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return createErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJobStatus(@PathVariable String jobId) {
+        ConversionJob job = conversionJobService.getJob(jobId);
+        if (job == null) {
+            return getQueuedJobStatus(jobId);
+        }
+        Map<String, Object> response = job.toStatusMap();
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/jobs/{jobId}/result")
+    public ResponseEntity<Map<String, Object>> getJobResult(@PathVariable String jobId) {
+        ConversionJob job = conversionJobService.getJob(jobId);
+        if (job == null) {
+            return getQueuedJobResult(jobId);
+        }
+        if (job.getStatus() == ConversionJob.Status.FAILED) {
+            return createErrorResponse("Job failed: " + job.getError(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        if (job.getStatus() != ConversionJob.Status.COMPLETED) {
+            Map<String, Object> response = job.toStatusMap();
+            response.put("success", false);
+            response.put("error", "Job is not finished yet");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        return ResponseEntity.ok(job.getCompletion().join());
+    }
+
+    /**
+     * Runs a failed job again under the same id, skipping the stages its journal already holds.
+     */
+    @PostMapping("/jobs/{jobId}/retry")
+    public ResponseEntity<Map<String, Object>> retryJob(@PathVariable String jobId) {
+        try {
+            if (conversionJobService.getJob(jobId) == null) {
+                return createErrorResponse("Job not found: " + jobId, HttpStatus.NOT_FOUND);
+            }
+            ConversionJob job = conversionJobService.retry(jobId);
+            if (job == null) {
+                return createErrorResponse("Job cannot be retried: " + jobId, HttpStatus.CONFLICT);
+            }
+
+            Map<String, Object> response = job.toStatusMap();
+            response.put("success", true);
+            response.put("statusUrl", "/api/pdf-to-audio/jobs/" + job.getJobId());
+            response.put("resultUrl", "/api/pdf-to-audio/jobs/" + job.getJobId() + "/result");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (AdmissionRejectedException e) {
+            return createRejectedResponse(e);
+        } catch (TaskRejectedException e) {
+            return createErrorResponse("Server is busy, please retry later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (IOException e) {
+            return createErrorResponse("Error resuming job: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
             return createErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Streams a job's audio while it is being synthesized: a WAV header followed by each
+     * sentence chunk's PCM data as soon as it is ready, over chunked transfer encoding.
+     */
+    @GetMapping("/jobs/{jobId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamJobAudio(@PathVariable String jobId) {
+        ConversionJob job = conversionJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() == ConversionJob.Status.FAILED) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+
+        return streamSynthesis(job.getSynthesis());
+    }
+
     @GetMapping("/download/{fileName}")
-    public ResponseEntity<Resource> downloadAudioFile(@PathVariable String fileName) {
+    public ResponseEntity<Object> downloadAudioFile(@PathVariable String fileName, HttpServletRequest request) {
         try {
-            String filePath = fileStorageService.getAudioFilesDirectory() + "/" + fileName;
-            
-            if (!fileStorageService.fileExists(filePath)) {
+            Path file = fileStorageService.resolveAudioFile(fileName);
+            if (file == null) {
+                // Converted by a worker and not downloaded through this node yet
+                file = queuedConversionService.fetchAudio(fileName);
+            }
+            if (file == null) {
                 return ResponseEntity.notFound().build();
             }
-
-            Resource resource = new FileSystemResource(filePath);
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("audio/wav"))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .body(resource);
+            return fileDownloadService.serve(file,
+                    MediaType.parseMediaType(AudioOutputFormat.contentTypeOf(fileName)), request);
 
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
@@ -126,20 +535,13 @@ public class PdfToAudioController {
     }
 
     @GetMapping("/download-pdf/{fileName}")
-    public ResponseEntity<Resource> downloadPdfFile(@PathVariable String fileName) {
+    public ResponseEntity<Object> downloadPdfFile(@PathVariable String fileName, HttpServletRequest request) {
         try {
-            String filePath = fileStorageService.getPdfFilesDirectory() + "/" + fileName;
-            
-            if (!fileStorageService.fileExists(filePath)) {
+            Path file = fileStorageService.resolvePdfFile(fileName);
+            if (file == null) {
                 return ResponseEntity.notFound().build();
             }
-
-            Resource resource = new FileSystemResource(filePath);
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("application/pdf"))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .body(resource);
+            return fileDownloadService.serve(file, MediaType.APPLICATION_PDF, request);
 
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
@@ -160,13 +562,190 @@ public class PdfToAudioController {
         }
     }
 
+    /**
+     * Reports {@code UP} once the application accepts traffic, i.e. after the warm-up;
+     * until then {@code WARMING_UP} with 503, so load balancers hold off.
+     */
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> healthCheck() {
+        boolean ready = applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC;
         Map<String, String> response = new HashMap<>();
-        response.put("status", "UP");
+        response.put("status", ready ? "UP" : "WARMING_UP");
         response.put("service", "PDF to Audio API");
         response.put("version", "1.0.0");
-        return ResponseEntity.ok(response);
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+
+    /**
+     * A job that went through the job queue, for the nodes other than the worker running it.
+     */
+    private ResponseEntity<Map<String, Object>> getQueuedJobStatus(String jobId) {
+        try {
+            QueuedJob job = queuedConversionService.getJob(jobId);
+            if (job == null) {
+                return createErrorResponse("Job not found: " + jobId, HttpStatus.NOT_FOUND);
+            }
+            Map<String, Object> response = job.toStatusMap();
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (IOException e) {
+            return createErrorResponse("Error reading job queue: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> getQueuedJobResult(String jobId) {
+        try {
+            QueuedJob job = queuedConversionService.getJob(jobId);
+            if (job == null) {
+                return createErrorResponse("Job not found: " + jobId, HttpStatus.NOT_FOUND);
+            }
+            if (job.state == QueuedJob.State.FAILED) {
+                return createErrorResponse("Job failed: " + job.error, HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            if (job.state != QueuedJob.State.COMPLETED) {
+                Map<String, Object> response = job.toStatusMap();
+                response.put("success", false);
+                response.put("error", "Job is not finished yet");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+            return ResponseEntity.ok(job.result);
+        } catch (IOException e) {
+            return createErrorResponse("Error reading job queue: " + e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> validatePdfUpload(MultipartFile file) {
+        if (file.isEmpty()) {
+            return createErrorResponse("File is empty", HttpStatus.BAD_REQUEST);
+        }
+
+        if (!"application/pdf".equals(file.getContentType())) {
+            return createErrorResponse("File must be a PDF", HttpStatus.BAD_REQUEST);
+        }
+        return null;
+    }
+
+    /**
+     * Streams audio as it is synthesized, or redirects to the stored file once the PCM
+     * master is gone.
+     */
+    private ResponseEntity<StreamingResponseBody> streamSynthesis(SynthesisProgress synthesis) {
+        if (!synthesis.retain()) {
+            // Only the encoded result is left, e.g. for a cache hit; serve that instead
+            return ResponseEntity.status(HttpStatus.SEE_OTHER)
+                    .location(URI.create("/api/pdf-to-audio/download/" + synthesis.getPublishedFile().getFileName()))
+                    .build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            CountingOutputStream counted = new CountingOutputStream(outputStream);
+            try {
+                synthesis.streamTo(counted, streamTimeoutSeconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Audio stream interrupted", e);
+            } catch (TimeoutException e) {
+                throw new IOException("Timed out waiting for audio", e);
+            } finally {
+                synthesis.release();
+                pipelineMetrics.bytesSent(counted.getByteCount());
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("audio/wav"))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamArchive(ConversionBatch batch) {
+        StreamingResponseBody body = outputStream -> {
+            CountingOutputStream counted = new CountingOutputStream(outputStream);
+            try {
+                batchConversionService.writeArchive(batch, counted, streamTimeoutSeconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Archive stream interrupted", e);
+            } catch (TimeoutException e) {
+                throw new IOException("Timed out waiting for batch audio", e);
+            } finally {
+                pipelineMetrics.bytesSent(counted.getByteCount());
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"batch-" + batch.getBatchId() + ".zip\"")
+                .header("X-Batch-Id", batch.getBatchId())
+                .body(body);
+    }
+
+    /**
+     * Writes a JSON error from an endpoint whose successful response is a stream.
+     */
+    private ResponseEntity<StreamingResponseBody> streamError(ResponseEntity<Map<String, Object>> error) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(error.getBody());
+        } catch (JsonProcessingException e) {
+            json = new byte[0];
+        }
+        byte[] body = json;
+        return ResponseEntity.status(error.getStatusCode())
+                .headers(error.getHeaders())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> outputStream.write(body));
+    }
+
+    /**
+     * Identifies the caller for rate limiting by its remote address. Only requests from one of
+     * {@code admission.client.trusted.proxies} may name the client themselves, with the
+     * configured client header or else {@code X-Forwarded-For}; anyone else could send a new
+     * id with every request and get a fresh bucket each time.
+     */
+    private String clientId(HttpServletRequest request) {
+        String remoteAddress = request.getRemoteAddr();
+        if (!trustedProxies.contains(remoteAddress)) {
+            return remoteAddress;
+        }
+        String header = request.getHeader(clientIdHeader);
+        if (header != null && !header.isBlank()) {
+            return header.trim();
+        }
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (forwardedFor != null) {
+            // The nearest hop that is not one of our proxies; the ones before it are client-supplied
+            String[] hops = forwardedFor.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                    return hop;
+                }
+            }
+        }
+        return remoteAddress;
+    }
+
+    private ResponseEntity<Map<String, Object>> createRejectedResponse(AdmissionRejectedException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", e.getMessage());
+        errorResponse.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        errorResponse.put("retryAfterSeconds", e.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
+    private ResponseEntity<Map<String, Object>> createPreflightResponse(PdfRejectedException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", e.getMessage());
+        errorResponse.put("status", HttpStatus.UNPROCESSABLE_ENTITY.value());
+        errorResponse.put("reason", e.getInspection().getVerdict().name());
+        errorResponse.put("inspection", e.getInspection().toMap());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(errorResponse);
     }
 
     private ResponseEntity<Map<String, Object>> createErrorResponse(String message, HttpStatus status) {
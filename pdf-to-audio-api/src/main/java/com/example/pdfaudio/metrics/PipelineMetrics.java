@@ -0,0 +1,170 @@
+package com.example.pdfaudio.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the conversion pipeline, scraped from {@code /actuator/prometheus}.
+ * <ul>
+ *   <li>{@code pdfaudio.stage.duration}: one histogram per {@code stage} tag, so the
+ *       stage that moves the p99 can be read straight off the buckets;</li>
+ *   <li>{@code pdfaudio.bytes.received} and {@code pdfaudio.bytes.sent}: uploaded PDF
+ *       bytes and file bytes written to clients;</li>
+ *   <li>{@code pdfaudio.cache.lookups}: result cache lookups by {@code result};</li>
+ *   <li>{@code pdfaudio.tts.fragment.lookups}: sentences looked up in the speech fragment
+ *       cache, by {@code result};</li>
+ *   <li>{@code pdfaudio.tts.timeouts} and {@code pdfaudio.tts.fallbacks}: synthesizer
+ *       processes that were killed, and requests espeak could not serve;</li>
+ *   <li>{@code pdfaudio.admission.rejections}: uploads refused with 429, by {@code reason};</li>
+ *   <li>{@code pdfaudio.preflight.rejections}: uploads refused by the pre-flight check, by {@code reason};</li>
+ *   <li>gauges for active jobs and the TTS worker pool; executor queue depth comes from
+ *       Spring Boot's {@code executor.queued} meters.</li>
+ * </ul>
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String STAGE_SAVE = "save";
+    public static final String STAGE_PREFLIGHT = "preflight";
+    public static final String STAGE_LOAD = "load";
+    public static final String STAGE_STRIP = "strip";
+    public static final String STAGE_SUMMARIZE = "summarize";
+    public static final String STAGE_TTS_SPAWN = "tts_spawn";
+    public static final String STAGE_TTS_SYNTHESIS = "tts_synthesis";
+    public static final String STAGE_ASSEMBLE = "assemble";
+    public static final String STAGE_ENCODE = "encode";
+    public static final String STAGE_CLEANUP = "cleanup";
+
+    private static final List<String> STAGES = List.of(STAGE_SAVE, STAGE_PREFLIGHT, STAGE_LOAD, STAGE_STRIP, STAGE_SUMMARIZE,
+            STAGE_TTS_SPAWN, STAGE_TTS_SYNTHESIS, STAGE_ASSEMBLE, STAGE_ENCODE, STAGE_CLEANUP);
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private Counter bytesReceived;
+    private Counter bytesSent;
+    private Counter cacheHits;
+    private Counter cacheMisses;
+    private Counter fragmentHits;
+    private Counter fragmentMisses;
+    private Counter ttsTimeouts;
+    private Counter ttsFallbacks;
+
+    @PostConstruct
+    public void init() {
+        // Register every stage up front so dashboards see zeros instead of missing series
+        STAGES.forEach(this::stageTimer);
+        bytesReceived = Counter.builder("pdfaudio.bytes.received")
+                .description("Bytes of uploaded PDF files")
+                .baseUnit("bytes")
+                .register(registry);
+        bytesSent = Counter.builder("pdfaudio.bytes.sent")
+                .description("Bytes of audio and PDF files written to clients")
+                .baseUnit("bytes")
+                .register(registry);
+        cacheHits = cacheLookups("hit");
+        cacheMisses = cacheLookups("miss");
+        fragmentHits = fragmentLookups("hit");
+        fragmentMisses = fragmentLookups("miss");
+        ttsTimeouts = Counter.builder("pdfaudio.tts.timeouts")
+                .description("Synthesizer processes killed for exceeding the timeout")
+                .register(registry);
+        ttsFallbacks = Counter.builder("pdfaudio.tts.fallbacks")
+                .description("Synthesis requests served by festival because espeak failed")
+                .tag("from", "espeak")
+                .tag("to", "festival")
+                .register(registry);
+    }
+
+    public void recordStage(String stage, long elapsedNanos) {
+        stageTimer(stage).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void bytesReceived(long bytes) {
+        bytesReceived.increment(bytes);
+    }
+
+    public void bytesSent(long bytes) {
+        bytesSent.increment(bytes);
+    }
+
+    public void cacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    public void fragmentLookup(boolean hit) {
+        (hit ? fragmentHits : fragmentMisses).increment();
+    }
+
+    public void ttsTimeout() {
+        ttsTimeouts.increment();
+    }
+
+    public void ttsFallback() {
+        ttsFallbacks.increment();
+    }
+
+    public void admissionRejected(String reason) {
+        Counter.builder("pdfaudio.admission.rejections")
+                .description("Uploads refused by admission control")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void preflightRejected(String reason) {
+        Counter.builder("pdfaudio.preflight.rejections")
+                .description("Uploads refused by the PDF pre-flight check")
+                .tag("reason", reason.toLowerCase())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Counts a job run again from its journal, tagged with the last stage it had finished.
+     */
+    public void jobResumed(String stage) {
+        Counter.builder("pdfaudio.journal.resumed")
+                .description("Jobs resumed from the job journal")
+                .tag("stage", stage.toLowerCase())
+                .register(registry)
+                .increment();
+    }
+
+    public void gauge(String name, String description, Supplier<Number> value) {
+        Gauge.builder(name, value)
+                .description(description)
+                .register(registry);
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("pdfaudio.stage.duration")
+                .description("Time spent in one stage of the conversion pipeline")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter cacheLookups(String result) {
+        return Counter.builder("pdfaudio.cache.lookups")
+                .description("Result cache lookups")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private Counter fragmentLookups(String result) {
+        return Counter.builder("pdfaudio.tts.fragment.lookups")
+                .description("Sentences looked up in the speech fragment cache")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether a new conversion may start, so overload turns into fast 429s instead
+ * of a growing backlog in which every request times out.
+ * <p>
+ * Two checks apply: each client draws from its own token bucket, so one heavy tenant
+ * cannot use up the capacity of the others, and the number of admitted conversions
+ * (running or waiting for a synthesizer) is capped at {@code admission.max.active.jobs}.
+ * Rejections carry a Retry-After estimate: the time until the client's next token, or
+ * the recent average job duration when the server is full.
+ */
+@Service
+public class AdmissionControlService {
+
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 5;
+    private static final long MAX_RETRY_AFTER_SECONDS = 120;
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+    // Weight of the newest job in the average job duration
+    private static final double DURATION_SMOOTHING = 0.2;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.max.active.jobs:32}")
+    private int maxActiveJobs;
+
+    @Value("${admission.client.rate.per.minute:30}")
+    private double clientRatePerMinute;
+
+    @Value("${admission.client.burst:10}")
+    private int clientBurst;
+
+    private final AtomicInteger activeJobs = new AtomicInteger();
+    private final Map<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+    private volatile double averageJobSeconds;
+
+    @PostConstruct
+    public void registerMetrics() {
+        pipelineMetrics.gauge("pdfaudio.admission.active", "Conversions admitted and not yet finished",
+                activeJobs::get);
+    }
+
+    /**
+     * Takes one token from the client's bucket.
+     *
+     * @throws AdmissionRejectedException if the bucket is empty
+     */
+    public void checkClientRate(String clientId) {
+        if (!enabled || clientRatePerMinute <= 0) {
+            return;
+        }
+        if (clientBuckets.size() > MAX_TRACKED_CLIENTS) {
+            // A full bucket is indistinguishable from a new one
+            clientBuckets.values().removeIf(TokenBucket::isFull);
+        }
+        TokenBucket bucket = clientBuckets.computeIfAbsent(clientId,
+                id -> new TokenBucket(clientBurst, clientRatePerMinute));
+        long waitNanos = bucket.tryAcquire();
+        if (waitNanos > 0) {
+            pipelineMetrics.admissionRejected("rate");
+            throw new AdmissionRejectedException("Rate limit exceeded, please retry later",
+                    clampRetryAfter((long) Math.ceil(waitNanos / (double) TimeUnit.SECONDS.toNanos(1))));
+        }
+    }
+
+    /**
+     * Reserves a slot for one conversion; the caller must hand it back with
+     * {@link #release()} or {@link #completed(long)}.
+     *
+     * @throws AdmissionRejectedException if every slot is taken
+     */
+    public void admit() {
+        if (!enabled) {
+            activeJobs.incrementAndGet();
+            return;
+        }
+        while (true) {
+            int active = activeJobs.get();
+            if (active >= maxActiveJobs) {
+                pipelineMetrics.admissionRejected("capacity");
+                throw new AdmissionRejectedException("Server is busy, please retry later", estimateRetryAfter());
+            }
+            if (activeJobs.compareAndSet(active, active + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Frees a slot that never ran a pipeline, e.g. for a cache hit.
+     */
+    public void release() {
+        activeJobs.decrementAndGet();
+    }
+
+    /**
+     * Frees the slot of a conversion that ran for {@code elapsedNanos}.
+     */
+    public void completed(long elapsedNanos) {
+        double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        double average = averageJobSeconds;
+        averageJobSeconds = average == 0 ? seconds : average + DURATION_SMOOTHING * (seconds - average);
+        activeJobs.decrementAndGet();
+    }
+
+    private long estimateRetryAfter() {
+        double average = averageJobSeconds;
+        return average == 0 ? DEFAULT_RETRY_AFTER_SECONDS : clampRetryAfter((long) Math.ceil(average));
+    }
+
+    private static long clampRetryAfter(long seconds) {
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, seconds));
+    }
+}
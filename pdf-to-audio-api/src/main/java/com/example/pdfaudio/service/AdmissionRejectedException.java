@@ -0,0 +1,22 @@
+package com.example.pdfaudio.service;
+
+/**
+ * Thrown when a conversion is refused up front, either because the server is at
+ * capacity or because the client exceeded its rate limit. Carries how long the client
+ * should wait before retrying.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.pdfaudio.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Files exchanged between the nodes of a queued deployment: the uploaded PDF goes from the
+ * API node to the worker under {@code pdf/<name>}, the audio comes back under
+ * {@code audio/<name>}. Keys are slash-separated names; an artifact is written once under
+ * its key and never changed.
+ */
+public interface ArtifactStore {
+
+    /**
+     * Stores a copy of {@code source} under {@code key}; readers never see a partial artifact.
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * @return the artifact's content, or {@code null} if there is no artifact under {@code key}
+     */
+    InputStream open(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,420 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Converts many PDFs from one request. The upload is staged to disk on the request
+ * thread, either as individual parts or by unpacking a ZIP archive entry by entry, and
+ * a batch thread then feeds the documents into the regular pipeline a few at a time,
+ * so a backfill of thousands of documents shares the CPU and TTS pools with everyone
+ * else instead of flooding them.
+ * <p>
+ * Documents go through admission control one by one; when the server is full the
+ * batch waits for the suggested Retry-After instead of failing the document. The
+ * batch's PDFs and audio are pinned in storage until the batch itself is purged, so
+ * eviction never removes files a pending archive download still needs.
+ */
+@Service
+public class BatchConversionService {
+
+    private static final Logger logger = Logger.getLogger(BatchConversionService.class.getName());
+
+    private static final String MANIFEST_ENTRY = "manifest.json";
+
+    @Autowired
+    private ConversionJobService conversionJobService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private PdfPreflightService pdfPreflightService;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    @Qualifier("batchExecutor")
+    private TaskExecutor batchExecutor;
+
+    @Value("${batch.max.documents:1000}")
+    private int maxDocuments;
+
+    @Value("${batch.max.parallel.documents:8}")
+    private int maxParallelDocuments;
+
+    @Value("${batch.admission.wait.seconds:600}")
+    private long admissionWaitSeconds;
+
+    @Value("${spring.servlet.multipart.max-file-size:250MB}")
+    private DataSize maxPdfSize;
+
+    @Value("${batch.max.total.size:2GB}")
+    private DataSize maxTotalSize;
+
+    @Value("${batch.max.compression.ratio:100}")
+    private long maxCompressionRatio;
+
+    @Value("${pipeline.job.retention.minutes:60}")
+    private long batchRetentionMinutes;
+
+    private final ObjectMapper manifestMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final Map<String, ConversionBatch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * Saves every PDF of the upload, expanding ZIP archives, and queues the batch.
+     *
+     * @throws IllegalArgumentException if the upload holds no PDF, too many of them, or more
+     *                                  than {@code batch.max.total.size} once unpacked
+     * @throws TaskRejectedException    if too many batches are already queued
+     */
+    public ConversionBatch submit(List<MultipartFile> files, String voiceType) throws IOException {
+        purgeExpiredBatches();
+
+        ConversionBatch batch = new ConversionBatch(UUID.randomUUID().toString(), voiceType);
+        try {
+            long saveStart = System.nanoTime();
+            long stagedBytes = 0;
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    continue;
+                }
+                if (isZip(file)) {
+                    stagedBytes = stageZip(batch, file, stagedBytes);
+                } else if (isPdf(file.getContentType(), file.getOriginalFilename())) {
+                    checkDocumentCount(batch);
+                    String baseName = baseName(file.getOriginalFilename());
+                    String uniqueFileName = fileStorageService.generateUniqueFileName(baseName);
+                    String savedPdfPath = fileStorageService.savePdfFile(file, uniqueFileName);
+                    fileStorageService.pin(savedPdfPath);
+                    preflight(batch.addDocument(baseName, uniqueFileName, savedPdfPath));
+                    pipelineMetrics.bytesReceived(file.getSize());
+                    stagedBytes += file.getSize();
+                } else {
+                    throw new IllegalArgumentException("Not a PDF or ZIP file: " + file.getOriginalFilename());
+                }
+            }
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_SAVE, System.nanoTime() - saveStart);
+            if (batch.getDocuments().isEmpty()) {
+                throw new IllegalArgumentException("No PDF files found in the upload");
+            }
+
+            batches.put(batch.getBatchId(), batch);
+            try {
+                batchExecutor.execute(() -> run(batch));
+            } catch (TaskRejectedException e) {
+                batches.remove(batch.getBatchId());
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!batches.containsKey(batch.getBatchId())) {
+                deleteStagedFiles(batch);
+            }
+            throw e;
+        }
+        logger.info("Queued batch " + batch.getBatchId() + " with " + batch.getDocuments().size() + " documents");
+        return batch;
+    }
+
+    public ConversionBatch getBatch(String batchId) {
+        return batches.get(batchId);
+    }
+
+    /**
+     * Writes a ZIP holding the audio of every document as it finishes, in completion
+     * order, followed by {@code manifest.json}. Audio is stored uncompressed (PCM barely
+     * deflates) and copied from disk entry by entry, so the archive is never held in memory.
+     */
+    public void writeArchive(ConversionBatch batch, OutputStream outputStream, long timeoutSeconds)
+            throws IOException, InterruptedException, TimeoutException {
+        List<ConversionBatch.Document> documents = batch.getDocuments();
+        BlockingQueue<ConversionBatch.Document> finished = new LinkedBlockingQueue<>();
+        for (ConversionBatch.Document document : documents) {
+            document.getOutcome().whenComplete((result, throwable) -> finished.add(document));
+        }
+
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+        for (int i = 0; i < documents.size(); i++) {
+            ConversionBatch.Document document = finished.poll(timeoutSeconds, TimeUnit.SECONDS);
+            if (document == null) {
+                throw new TimeoutException("Timed out waiting for batch " + batch.getBatchId());
+            }
+            if (document.getOutcome().isCompletedExceptionally()) {
+                continue;
+            }
+            String audioFilePath = (String) document.getOutcome().join().get("audioFilePath");
+            writeStoredEntry(zip, document.getArchiveEntryName(), Paths.get(audioFilePath));
+            zip.flush();
+        }
+
+        try {
+            batch.getCompletion().get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Batch failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+        zip.write(manifestMapper.writeValueAsBytes(batch.toManifest()));
+        zip.closeEntry();
+        zip.finish();
+        zip.flush();
+    }
+
+    private void run(ConversionBatch batch) {
+        batch.setStatus(ConversionBatch.Status.RUNNING);
+        int parallel = Math.max(1, maxParallelDocuments);
+        Semaphore slots = new Semaphore(parallel);
+        try {
+            for (ConversionBatch.Document document : batch.getDocuments()) {
+                if (document.getOutcome().isDone()) {
+                    // Rejected by the pre-flight check while it was staged
+                    continue;
+                }
+                slots.acquire();
+                ConversionJob job = submitDocument(batch, document);
+                if (job == null) {
+                    slots.release();
+                    continue;
+                }
+                document.started(job);
+                document.getOutcome().whenComplete((result, throwable) -> {
+                    if (result != null) {
+                        fileStorageService.pin((String) result.get("audioFilePath"));
+                    }
+                    slots.release();
+                });
+            }
+            slots.acquire(parallel);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (ConversionBatch.Document document : batch.getDocuments()) {
+                if (document.getJob() == null && !document.getOutcome().isDone()) {
+                    document.fail("Batch was interrupted");
+                }
+            }
+        }
+
+        batch.complete();
+        logger.info("Finished batch " + batch.getBatchId());
+    }
+
+    /**
+     * Runs the pre-flight check on a staged document, so a scanned or protected PDF is
+     * failed in the manifest the client gets back instead of waiting for a slot. The rest
+     * of the batch still runs.
+     */
+    private void preflight(ConversionBatch.Document document) {
+        try {
+            pdfPreflightService.check(document.getSavedPdfPath());
+        } catch (PdfRejectedException e) {
+            document.reject(e);
+        }
+    }
+
+    /**
+     * Queues one document, waiting while the server is at capacity.
+     *
+     * @return the document's job, or {@code null} if it could not be queued
+     */
+    private ConversionJob submitDocument(ConversionBatch batch, ConversionBatch.Document document)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(admissionWaitSeconds);
+        while (true) {
+            long waitSeconds;
+            String reason;
+            try {
+                return conversionJobService.submitSaved(batch.getBatchId(), document.getOriginalFileName(),
+                        document.getUniqueFileName(), document.getSavedPdfPath(), batch.getVoiceType());
+            } catch (AdmissionRejectedException e) {
+                waitSeconds = e.getRetryAfterSeconds();
+                reason = e.getMessage();
+            } catch (TaskRejectedException e) {
+                waitSeconds = 1;
+                reason = "Server is busy";
+            } catch (IOException | RuntimeException e) {
+                document.fail(e.getMessage());
+                return null;
+            }
+            if (System.nanoTime() + TimeUnit.SECONDS.toNanos(waitSeconds) > deadline) {
+                document.fail(reason);
+                return null;
+            }
+            TimeUnit.SECONDS.sleep(waitSeconds);
+        }
+    }
+
+    /**
+     * Unpacks the PDF entries of an archive one at a time. Only the entry's base name is
+     * used, so entry paths can never point outside the PDF directory.
+     * <p>
+     * Besides the per-entry limit, everything the batch unpacks counts against
+     * {@code batch.max.total.size}, and the archive may not expand by more than
+     * {@code batch.max.compression.ratio}, so a small ZIP bomb is rejected early instead of
+     * filling the disk from the request thread.
+     *
+     * @param stagedBytes bytes the batch has already staged
+     * @return bytes staged including this archive
+     */
+    private long stageZip(ConversionBatch batch, MultipartFile file, long stagedBytes) throws IOException {
+        long maxEntryBytes = maxPdfSize.toBytes();
+        long maxTotalBytes = maxTotalSize.toBytes();
+        long unpackedBytes = 0;
+        CountingInputStream compressed = new CountingInputStream(file.getInputStream());
+        try (ZipInputStream zip = new ZipInputStream(compressed)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String baseName = baseName(entry.getName());
+                if (baseName.startsWith(".") || entry.getName().startsWith("__MACOSX/") || !isPdf(null, baseName)) {
+                    batch.addSkippedEntry(entry.getName());
+                    continue;
+                }
+                checkDocumentCount(batch);
+
+                String uniqueFileName = fileStorageService.generateUniqueFileName(baseName);
+                long limit = Math.max(0, Math.min(maxEntryBytes, maxTotalBytes - stagedBytes));
+                // Read one byte past the limit so an oversized entry can be told apart
+                String savedPdfPath = fileStorageService.savePdfFile(
+                        new BoundedInputStream(zip, limit + 1), uniqueFileName);
+                fileStorageService.pin(savedPdfPath);
+                ConversionBatch.Document document = batch.addDocument(baseName, uniqueFileName, savedPdfPath);
+                long size = fileStorageService.getFileSize(savedPdfPath);
+                if (size > maxEntryBytes) {
+                    throw new IllegalArgumentException("Archive entry is larger than " + maxPdfSize + ": " + entry.getName());
+                }
+                if (size > limit) {
+                    throw new IllegalArgumentException("Batch is larger than " + maxTotalSize + " once unpacked");
+                }
+                stagedBytes += size;
+                unpackedBytes += size;
+                if (unpackedBytes > compressed.getByteCount() * maxCompressionRatio) {
+                    throw new IllegalArgumentException("Archive expands by more than " + maxCompressionRatio
+                            + " times: " + file.getOriginalFilename());
+                }
+                pipelineMetrics.bytesReceived(size);
+                preflight(document);
+            }
+        }
+        return stagedBytes;
+    }
+
+    private void checkDocumentCount(ConversionBatch batch) {
+        if (batch.getDocuments().size() >= maxDocuments) {
+            throw new IllegalArgumentException("A batch may contain at most " + maxDocuments + " PDF files");
+        }
+    }
+
+    private static boolean isZip(MultipartFile file) {
+        String contentType = file.getContentType();
+        String name = file.getOriginalFilename();
+        return "application/zip".equals(contentType) || "application/x-zip-compressed".equals(contentType)
+                || (name != null && name.toLowerCase(Locale.ROOT).endsWith(".zip"));
+    }
+
+    /**
+     * The last path element of a client-supplied file name, without control characters, so
+     * it cannot steer an archive entry out of the directory it is unpacked into.
+     */
+    private static String baseName(String name) {
+        String cleaned = name == null ? "" : name.replaceAll("\\p{Cntrl}", "").replace('\\', '/');
+        Path fileName = cleaned.isBlank() ? null : Paths.get(cleaned).getFileName();
+        return fileName != null ? fileName.toString() : "document.pdf";
+    }
+
+    private static boolean isPdf(String contentType, String name) {
+        return "application/pdf".equals(contentType)
+                || (name != null && name.toLowerCase(Locale.ROOT).endsWith(".pdf"));
+    }
+
+    private static void writeStoredEntry(ZipOutputStream zip, String name, Path file) throws IOException {
+        // Stored entries need their size and CRC up front; the second read comes from the page cache
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(Files.size(file));
+        entry.setCompressedSize(entry.getSize());
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        Files.copy(file, zip);
+        zip.closeEntry();
+    }
+
+    private void deleteStagedFiles(ConversionBatch batch) {
+        for (ConversionBatch.Document document : batch.getDocuments()) {
+            fileStorageService.unpin(document.getSavedPdfPath());
+            try {
+                fileStorageService.deleteFile(document.getSavedPdfPath());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to delete staged " + document.getSavedPdfPath() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void unpinFiles(ConversionBatch batch) {
+        for (ConversionBatch.Document document : batch.getDocuments()) {
+            fileStorageService.unpin(document.getSavedPdfPath());
+            CompletableFuture<Map<String, Object>> outcome = document.getOutcome();
+            if (outcome.isDone() && !outcome.isCompletedExceptionally()) {
+                fileStorageService.unpin((String) outcome.join().get("audioFilePath"));
+            }
+        }
+    }
+
+    private void purgeExpiredBatches() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(batchRetentionMinutes));
+        batches.values().removeIf(batch -> {
+            if (batch.isFinished() && batch.getFinishedAt().isBefore(cutoff)) {
+                unpinFiles(batch);
+                return true;
+            }
+            return false;
+        });
+    }
+}
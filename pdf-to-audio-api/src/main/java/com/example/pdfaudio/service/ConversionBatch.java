@@ -0,0 +1,254 @@
+package com.example.pdfaudio.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A set of PDFs uploaded together. Every document becomes an ordinary conversion job;
+ * the batch only tracks which job belongs to which document and when all of them are done.
+ */
+public class ConversionBatch {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED
+    }
+
+    private final String batchId;
+    private final String voiceType;
+    private final Instant createdAt = Instant.now();
+    private final List<Document> documents = new ArrayList<>();
+    private final List<String> skippedEntries = new ArrayList<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant finishedAt;
+
+    public ConversionBatch(String batchId, String voiceType) {
+        this.batchId = batchId;
+        this.voiceType = voiceType;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public String getVoiceType() {
+        return voiceType;
+    }
+
+    public List<Document> getDocuments() {
+        return Collections.unmodifiableList(documents);
+    }
+
+    /**
+     * Archive entries that were not PDFs and were left out of the batch.
+     */
+    public List<String> getSkippedEntries() {
+        return Collections.unmodifiableList(skippedEntries);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED;
+    }
+
+    /**
+     * Completes once every document has either finished or failed.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    Document addDocument(String originalFileName, String uniqueFileName, String savedPdfPath) {
+        Document document = new Document(documents.size() + 1, originalFileName, uniqueFileName, savedPdfPath);
+        documents.add(document);
+        return document;
+    }
+
+    void addSkippedEntry(String entryName) {
+        skippedEntries.add(entryName);
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    void complete() {
+        this.status = Status.COMPLETED;
+        this.finishedAt = Instant.now();
+        completion.complete(null);
+    }
+
+    public Map<String, Object> toManifest() {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("batchId", batchId);
+        manifest.put("status", status.name());
+        manifest.put("voiceType", voiceType);
+        manifest.put("createdAt", createdAt.toString());
+        if (finishedAt != null) {
+            manifest.put("finishedAt", finishedAt.toString());
+        }
+
+        int completed = 0;
+        int failed = 0;
+        List<Map<String, Object>> entries = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            ConversionJob.Status documentStatus = document.getStatus();
+            if (documentStatus == ConversionJob.Status.COMPLETED) {
+                completed++;
+            } else if (documentStatus == ConversionJob.Status.FAILED) {
+                failed++;
+            }
+            entries.add(document.toManifestEntry());
+        }
+        manifest.put("documentCount", documents.size());
+        manifest.put("completed", completed);
+        manifest.put("failed", failed);
+        manifest.put("documents", entries);
+        if (!skippedEntries.isEmpty()) {
+            manifest.put("skippedEntries", skippedEntries);
+        }
+        return manifest;
+    }
+
+    /**
+     * One PDF of the batch, saved to disk when the batch was accepted and converted later.
+     */
+    public static class Document {
+
+        private final int index;
+        private final String originalFileName;
+        private final String uniqueFileName;
+        private final String savedPdfPath;
+        private final CompletableFuture<Map<String, Object>> outcome = new CompletableFuture<>();
+
+        private volatile ConversionJob job;
+        private volatile String error;
+        private volatile PdfInspection rejection;
+
+        Document(int index, String originalFileName, String uniqueFileName, String savedPdfPath) {
+            this.index = index;
+            this.originalFileName = originalFileName;
+            this.uniqueFileName = uniqueFileName;
+            this.savedPdfPath = savedPdfPath;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getOriginalFileName() {
+            return originalFileName;
+        }
+
+        String getUniqueFileName() {
+            return uniqueFileName;
+        }
+
+        String getSavedPdfPath() {
+            return savedPdfPath;
+        }
+
+        public ConversionJob getJob() {
+            return job;
+        }
+
+        /**
+         * Completes with the job's result, or exceptionally if the document could not be
+         * converted or not even queued.
+         */
+        public CompletableFuture<Map<String, Object>> getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * Name of the document's audio inside a batch archive; the index keeps names unique
+         * and in upload order. Only known once the document has been converted.
+         */
+        public String getArchiveEntryName() {
+            String audioFileName = (String) outcome.join().get("audioFileName");
+            String extension = audioFileName.substring(audioFileName.lastIndexOf('.'));
+            String baseName = originalFileName.replaceAll("\\.[^.]+$", "");
+            return String.format("%04d_%s%s", index, baseName, extension);
+        }
+
+        public ConversionJob.Status getStatus() {
+            if (error != null) {
+                return ConversionJob.Status.FAILED;
+            }
+            ConversionJob current = job;
+            return current != null ? current.getStatus() : ConversionJob.Status.QUEUED;
+        }
+
+        void started(ConversionJob job) {
+            this.job = job;
+            job.getCompletion().whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    outcome.completeExceptionally(throwable);
+                } else {
+                    outcome.complete(result);
+                }
+            });
+        }
+
+        void fail(String error) {
+            this.error = error;
+            outcome.completeExceptionally(new IllegalStateException(error));
+        }
+
+        /**
+         * Fails the document because the pre-flight check refused it; the manifest entry
+         * then carries the reason and the inspection, like the response to a single upload.
+         */
+        void reject(PdfRejectedException e) {
+            this.rejection = e.getInspection();
+            fail(e.getMessage());
+        }
+
+        Map<String, Object> toManifestEntry() {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("index", index);
+            entry.put("originalFileName", originalFileName);
+            entry.put("status", getStatus().name());
+            ConversionJob current = job;
+            if (current != null) {
+                entry.put("jobId", current.getJobId());
+                entry.put("statusUrl", "/api/pdf-to-audio/jobs/" + current.getJobId());
+            }
+            Map<String, Object> result = outcome.isDone() && !outcome.isCompletedExceptionally()
+                    ? outcome.join() : null;
+            if (result != null) {
+                entry.put("audioFileName", result.get("audioFileName"));
+                entry.put("downloadUrl", "/api/pdf-to-audio/download/" + result.get("audioFileName"));
+                entry.put("archiveEntry", getArchiveEntryName());
+                entry.put("summaryLength", result.get("summaryLength"));
+                entry.put("audioFileSize", result.get("audioFileSize"));
+                if (Boolean.TRUE.equals(result.get("cached"))) {
+                    entry.put("cached", true);
+                }
+            }
+            String failure = error != null ? error : current != null ? current.getError() : null;
+            if (failure != null) {
+                entry.put("error", failure);
+            }
+            PdfInspection inspection = rejection;
+            if (inspection != null) {
+                entry.put("reason", inspection.getVerdict().name());
+                entry.put("inspection", inspection.toMap());
+            }
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.pdfaudio.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content-addressed cache of finished conversions, keyed by the document id (the
+ * SHA-256 of the PDF) plus every setting that changes the audio. The index is kept in access order,
+ * persisted as JSON at most every {@code cache.result.index.flush.seconds} after it changed
+ * and at shutdown, and trimmed oldest-first when the cached audio exceeds the
+ * byte budget. Hits touch the audio file so storage eviction sees recently used
+ * entries as recent; entries whose audio was evicted are dropped on lookup.
+ */
+@Service
+public class ConversionCacheService {
+
+    private static final Logger logger = Logger.getLogger(ConversionCacheService.class.getName());
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private TextToSpeechService textToSpeechService;
+
+    @Value("${cache.result.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.result.max.bytes:524288000}")
+    private long maxBytes;
+
+    @Value("${cache.result.index.file:audio-files/result-cache-index.json}")
+    private String indexFile;
+
+    @Value("${cache.result.index.flush.seconds:5}")
+    private long indexFlushSeconds;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LinkedHashMap<String, CachedConversion> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicBoolean indexDirty = new AtomicBoolean();
+    private final Object indexFileLock = new Object();
+    private long totalBytes;
+    private ScheduledExecutorService indexWriter;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        loadIndex();
+        // Completed conversions only mark the index dirty; it is written here, off their path
+        indexWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "result-cache-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushSeconds = Math.max(1, indexFlushSeconds);
+        indexWriter.scheduleWithFixedDelay(this::saveIndexIfDirty, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (indexWriter != null) {
+            indexWriter.shutdownNow();
+        }
+        saveIndex();
+    }
+
+    private void loadIndex() {
+        Path indexPath = Paths.get(indexFile);
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        try {
+            List<CachedConversion> entries = objectMapper.readValue(indexPath.toFile(),
+                    new TypeReference<List<CachedConversion>>() { });
+            synchronized (this) {
+                for (CachedConversion entry : entries) {
+                    index.put(entry.key, entry);
+                    totalBytes += entry.audioFileSize;
+                }
+            }
+            logger.info("Loaded " + entries.size() + " cached conversions from " + indexFile);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ignoring unreadable result cache index " + indexFile + ": " + e.getMessage());
+        }
+    }
+
+    private void saveIndexIfDirty() {
+        if (indexDirty.get()) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * Writes the index to {@code cache.result.index.file}. Only the snapshot is taken under
+     * the cache's lock, so lookups wait for a copy of the entries rather than the disk.
+     */
+    public void saveIndex() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (indexFileLock) {
+            List<CachedConversion> entries;
+            synchronized (this) {
+                indexDirty.set(false);
+                entries = new ArrayList<>(index.values());
+            }
+            try {
+                Path indexPath = Paths.get(indexFile);
+                if (indexPath.getParent() != null) {
+                    Files.createDirectories(indexPath.getParent());
+                }
+                Path tempPath = Paths.get(indexFile + ".tmp");
+                objectMapper.writeValue(tempPath.toFile(), entries);
+                Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                indexDirty.set(true);
+                logger.log(Level.WARNING, "Failed to persist result cache index: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds the cache key for a document, identified by the SHA-256 of its PDF, the
+     * summarizer and the voice settings it will be spoken with.
+     */
+    public String cacheKey(String documentId, TextSummarizationService.Engine summarizer, VoiceSettings voice) {
+        return documentId + ":" + summarizer.name().toLowerCase() + ":" + voice + ":"
+                + textToSpeechService.getOutputSettings();
+    }
+
+    /**
+     * Returns the cached conversion for the key, or null if there is none or its audio is gone.
+     */
+    public synchronized CachedConversion lookup(String key) {
+        CachedConversion entry = index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!fileStorageService.fileExists(entry.audioFilePath)) {
+            index.remove(key);
+            totalBytes -= entry.audioFileSize;
+            indexDirty.set(true);
+            return null;
+        }
+        fileStorageService.touch(entry.audioFilePath);
+        return entry;
+    }
+
+    public void store(String key, Map<String, Object> result) {
+        CachedConversion entry = new CachedConversion();
+        entry.key = key;
+        entry.audioFileName = (String) result.get("audioFileName");
+        entry.audioFilePath = (String) result.get("audioFilePath");
+        entry.summary = (String) result.get("summary");
+        entry.extractedTextLength = ((Number) result.get("extractedTextLength")).longValue();
+        entry.audioFileSize = ((Number) result.get("audioFileSize")).longValue();
+
+        synchronized (this) {
+            CachedConversion previous = index.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.audioFileSize;
+            }
+            totalBytes += entry.audioFileSize;
+            evictOverBudget();
+            indexDirty.set(true);
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<CachedConversion> eldestFirst = index.values().iterator();
+        while (totalBytes > maxBytes && eldestFirst.hasNext()) {
+            CachedConversion eldest = eldestFirst.next();
+            if (index.size() == 1) {
+                break; // Always keep the entry that was just stored
+            }
+            eldestFirst.remove();
+            totalBytes -= eldest.audioFileSize;
+            try {
+                // Audio a batch, narration or journal still needs is left to storage eviction
+                fileStorageService.deleteUnlessPinned(eldest.audioFilePath);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to delete evicted audio " + eldest.audioFilePath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Persisted part of a conversion result that can be served for any upload of the same content.
+     */
+    public static class CachedConversion {
+        public String key;
+        public String audioFileName;
+        public String audioFilePath;
+        public String summary;
+        public long extractedTextLength;
+        public long audioFileSize;
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.pdfaudio.service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * State of one PDF to audio conversion as it moves through the pipeline.
+ */
+public class ConversionJob {
+
+    public enum Status {
+        QUEUED, EXTRACTING, SUMMARIZING, SYNTHESIZING, COMPLETED, FAILED
+    }
+
+    private final String jobId;
+    private final String originalFileName;
+    private final String uniqueFileName;
+    private final String voiceType;
+    private final Instant createdAt = Instant.now();
+    private final CompletableFuture<Map<String, Object>> completion = new CompletableFuture<>();
+
+    private volatile SynthesisProgress synthesis = new SynthesisProgress();
+    private volatile ConversionJob leader;
+    private volatile String batchId;
+    private volatile String savedPdfPath;
+    private volatile String documentId;
+    private volatile VoiceSettings voiceSettings;
+    private volatile TextSummarizationService.Engine summarizer = TextSummarizationService.Engine.FREQUENCY;
+    private volatile boolean revoice;
+    private volatile boolean queued;
+    private volatile Status status = Status.QUEUED;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    private volatile String resumedFromStage;
+    private volatile int synthesisRetries;
+    private volatile boolean retryable;
+    private volatile String cancelReason;
+    private int followers;
+    private String pendingCancelReason;
+
+    public ConversionJob(String jobId, String originalFileName, String uniqueFileName, String voiceType) {
+        this.jobId = jobId;
+        this.originalFileName = originalFileName;
+        this.uniqueFileName = uniqueFileName;
+        this.voiceType = voiceType;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getOriginalFileName() {
+        return originalFileName;
+    }
+
+    public String getUniqueFileName() {
+        return uniqueFileName;
+    }
+
+    public String getVoiceType() {
+        return voiceType;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getSavedPdfPath() {
+        return savedPdfPath;
+    }
+
+    void setSavedPdfPath(String savedPdfPath) {
+        this.savedPdfPath = savedPdfPath;
+    }
+
+    /**
+     * Stable id of the converted document (the SHA-256 of its PDF), under which it can be
+     * spoken again with other voice settings.
+     */
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public VoiceSettings getVoiceSettings() {
+        return voiceSettings;
+    }
+
+    void setVoiceSettings(VoiceSettings voiceSettings) {
+        this.voiceSettings = voiceSettings;
+    }
+
+    public TextSummarizationService.Engine getSummarizer() {
+        return summarizer;
+    }
+
+    void setSummarizer(TextSummarizationService.Engine summarizer) {
+        this.summarizer = summarizer;
+    }
+
+    /**
+     * Whether this job only speaks the stored summary of a document again, skipping
+     * extraction and summarization.
+     */
+    public boolean isRevoice() {
+        return revoice;
+    }
+
+    void setRevoice(boolean revoice) {
+        this.revoice = revoice;
+    }
+
+    /**
+     * Whether this job was claimed from the {@link JobQueue}, which hands it to another
+     * worker if this node goes away, so it is not journaled.
+     */
+    public boolean isQueued() {
+        return queued;
+    }
+
+    void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    public Status getStatus() {
+        ConversionJob following = leader;
+        if (following != null && !isFinished()) {
+            return following.getStatus();
+        }
+        return status;
+    }
+
+    /**
+     * The job whose pipeline this one joined because it converts the same content, if any.
+     */
+    public ConversionJob getLeader() {
+        return leader;
+    }
+
+    void setLeader(ConversionJob leader) {
+        this.leader = leader;
+    }
+
+    /**
+     * The batch this job belongs to, or {@code null} for a single upload. Batch jobs leave
+     * the file cleanup to their batch.
+     */
+    public String getBatchId() {
+        return batchId;
+    }
+
+    void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /**
+     * The journaled stage this job was resumed after, or {@code null} if it ran from the start.
+     */
+    public String getResumedFromStage() {
+        return resumedFromStage;
+    }
+
+    void setResumedFromStage(String resumedFromStage) {
+        this.resumedFromStage = resumedFromStage;
+    }
+
+    /**
+     * Gives a failed synthesis attempt a fresh progress to publish to; streams of the failed
+     * attempt end with an error and have to be reopened.
+     */
+    void restartSynthesis() {
+        synthesisRetries++;
+        synthesis = new SynthesisProgress();
+    }
+
+    /**
+     * Whether the job failed with its finished stages journaled, so it can be retried
+     * without uploading the PDF again.
+     */
+    public boolean isRetryable() {
+        return retryable && status == Status.FAILED;
+    }
+
+    void setRetryable(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    /**
+     * Whether the job's result is no longer wanted; its pipeline stops at the next stage
+     * or sentence chunk.
+     */
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    String getCancelReason() {
+        return cancelReason;
+    }
+
+    /**
+     * @return {@code false} if other jobs follow this one, which still want its result;
+     *         the job is then cancelled once the last of them has gone
+     */
+    synchronized boolean cancel(String reason) {
+        if (followers > 0) {
+            pendingCancelReason = reason;
+            return false;
+        }
+        this.cancelReason = reason;
+        if (leader == null) {
+            synthesis.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Registers a job that joins this one's pipeline.
+     *
+     * @return {@code false} if this job was cancelled and its pipeline is stopping
+     */
+    synchronized boolean addFollower() {
+        if (cancelReason != null) {
+            return false;
+        }
+        followers++;
+        return true;
+    }
+
+    /**
+     * Unregisters a follower that no longer wants this job's result, cancelling this job if
+     * it was the last one and a cancel was held back for it.
+     */
+    synchronized void removeFollower() {
+        if (followers > 0) {
+            followers--;
+        }
+        if (followers == 0 && pendingCancelReason != null && cancelReason == null) {
+            cancel(pendingCancelReason);
+        }
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    /**
+     * Completes with the same response body the synchronous upload returns.
+     */
+    public CompletableFuture<Map<String, Object>> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Chunk-by-chunk progress of this job's audio, shared with the leader when coalesced.
+     */
+    public SynthesisProgress getSynthesis() {
+        ConversionJob following = leader;
+        return following != null ? following.getSynthesis() : synthesis;
+    }
+
+    void complete(Map<String, Object> result) {
+        this.status = Status.COMPLETED;
+        this.finishedAt = Instant.now();
+        completion.complete(result);
+    }
+
+    void fail(Throwable cause) {
+        this.status = Status.FAILED;
+        this.error = cause.getMessage();
+        this.finishedAt = Instant.now();
+        if (leader == null) {
+            synthesis.fail(cause);
+        }
+        completion.completeExceptionally(cause);
+    }
+
+    public Map<String, Object> toStatusMap() {
+        Map<String, Object> statusMap = new HashMap<>();
+        statusMap.put("jobId", jobId);
+        statusMap.put("status", getStatus().name());
+        statusMap.put("originalFileName", originalFileName);
+        statusMap.put("voiceType", voiceType);
+        if (voiceSettings != null) {
+            statusMap.put("rate", voiceSettings.getRate());
+            statusMap.put("volume", voiceSettings.getVolume());
+        }
+        statusMap.put("summarizer", summarizer.name().toLowerCase());
+        statusMap.put("createdAt", createdAt.toString());
+        if (finishedAt != null) {
+            statusMap.put("finishedAt", finishedAt.toString());
+        }
+        if (error != null) {
+            statusMap.put("error", error);
+        }
+        if (leader != null) {
+            statusMap.put("coalescedWithJobId", leader.getJobId());
+        }
+        if (batchId != null) {
+            statusMap.put("batchId", batchId);
+        }
+        if (documentId != null) {
+            statusMap.put("documentId", documentId);
+        }
+        if (revoice) {
+            statusMap.put("revoice", true);
+        }
+        if (resumedFromStage != null) {
+            statusMap.put("resumedFromStage", resumedFromStage);
+        }
+        if (synthesisRetries > 0) {
+            statusMap.put("synthesisRetries", synthesisRetries);
+        }
+        if (isRetryable()) {
+            statusMap.put("retryUrl", "/api/pdf-to-audio/jobs/" + jobId + "/retry");
+        }
+        return statusMap;
+    }
+}
@@ -0,0 +1,865 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.TeeWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the save, extract, summarize, synthesize and cleanup steps of a conversion
+ * as a chain of stages on the pipeline executors, so HTTP threads are released
+ * as soon as the upload has been written to disk.
+ * <p>
+ * Single uploads are journaled by {@link JobJournalService}: a failed synthesis is
+ * retried from the chunks already produced, a job that failed anyway can be retried
+ * under the same id, and jobs interrupted by a restart are resumed once the application
+ * is up again, each after the last stage that had finished.
+ * <p>
+ * Every converted document keeps its text and summary in the {@link DocumentStoreService}
+ * under a stable document id, so it can be spoken again with other voice settings by a
+ * job that runs the synthesis stage only.
+ */
+@Service
+public class ConversionJobService {
+
+    private static final Logger logger = Logger.getLogger(ConversionJobService.class.getName());
+
+    @Autowired
+    private PdfTextExtractionService pdfTextExtractionService;
+
+    @Autowired
+    private PdfPreflightService pdfPreflightService;
+
+    @Autowired
+    private TextSummarizationService textSummarizationService;
+
+    @Autowired
+    private TextToSpeechService textToSpeechService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ConversionCacheService conversionCacheService;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private JobJournalService jobJournalService;
+
+    @Autowired
+    private DocumentStoreService documentStoreService;
+
+    @Autowired
+    @Qualifier("cpuStageExecutor")
+    private TaskExecutor cpuStageExecutor;
+
+    @Autowired
+    @Qualifier("ttsStageExecutor")
+    private TaskExecutor ttsStageExecutor;
+
+    @Value("${pipeline.job.retention.minutes:60}")
+    private long jobRetentionMinutes;
+
+    @Value("${journal.tts.max.attempts:3}")
+    private int maxSynthesisAttempts;
+
+    @Value("${journal.tts.retry.backoff.ms:2000}")
+    private long synthesisRetryBackoffMillis;
+
+    private final Map<String, ConversionJob> jobs = new ConcurrentHashMap<>();
+
+    // Cache key -> job currently converting that content
+    private final Map<String, ConversionJob> inFlight = new ConcurrentHashMap<>();
+
+    // Journals of jobs that are running, or failed and may be retried
+    private final Map<String, JobJournalService.JournalEntry> journals = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        pipelineMetrics.gauge("pdfaudio.jobs.active", "Conversion jobs that have not finished",
+                () -> jobs.values().stream().filter(job -> !job.isFinished()).count());
+    }
+
+    /**
+     * Saves the upload on the calling thread (the multipart data only lives for the
+     * duration of the request) and queues the remaining stages. Content that was
+     * converted before is answered from the result cache, and content that is being
+     * converted right now joins the running job instead of starting another one.
+     * Documents the pre-flight check rejects are deleted again right away.
+     *
+     * @throws AdmissionRejectedException if the server is already running as many
+     *                                    conversions as it admits
+     * @throws PdfRejectedException       if the PDF cannot be converted
+     */
+    public ConversionJob submit(MultipartFile file, String voiceType, TextSummarizationService.Engine summarizer)
+            throws IOException {
+        purgeExpiredJobs();
+
+        admissionControlService.admit();
+        long admittedNanos = System.nanoTime();
+        boolean pipelineStarted = false;
+        try {
+            fileStorageService.ensureAudioDirectoryExists();
+            fileStorageService.ensurePdfDirectoryExists();
+
+            String uniqueFileName = fileStorageService.generateUniqueFileName(file.getOriginalFilename());
+            ConversionJob job = new ConversionJob(UUID.randomUUID().toString(), file.getOriginalFilename(),
+                    uniqueFileName, voiceType);
+            long saveStart = System.nanoTime();
+            job.setVoiceSettings(textToSpeechService.voiceSettings(voiceType));
+            job.setSummarizer(summarizer);
+            // Hashed while it is spooled, so the request does not read the upload twice
+            MessageDigest digest = FileStorageService.newSha256();
+            job.setSavedPdfPath(fileStorageService.savePdfFile(file, uniqueFileName, digest));
+            job.setDocumentId(documentStoreService.documentId(digest));
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_SAVE, System.nanoTime() - saveStart);
+            pipelineMetrics.bytesReceived(file.getSize());
+            try {
+                pdfPreflightService.check(job.getSavedPdfPath());
+            } catch (PdfRejectedException e) {
+                fileStorageService.deleteFile(job.getSavedPdfPath());
+                throw e;
+            }
+
+            pipelineStarted = start(job, admittedNanos, null);
+            return job;
+        } finally {
+            if (!pipelineStarted) {
+                // Cache hits, followers and failed submissions give their slot back right away
+                admissionControlService.release();
+            }
+        }
+    }
+
+    /**
+     * Speaks a stored document again with other voice settings. Only the synthesis stage
+     * runs, from the stored summary; a document already spoken with these settings is
+     * answered from the result cache. A summary of another engine than the stored one is
+     * made from the stored text first.
+     *
+     * @return the new job, or {@code null} if the document is not stored (any more)
+     * @throws AdmissionRejectedException if the server is already running as many
+     *                                    conversions as it admits
+     */
+    public ConversionJob revoice(String documentId, VoiceSettings voice, TextSummarizationService.Engine summarizer)
+            throws IOException {
+        DocumentStoreService.StoredDocument document = documentStoreService.load(documentId, summarizer);
+        if (document == null || (document.summary == null && !document.textStored)) {
+            return null;
+        }
+        purgeExpiredJobs();
+
+        admissionControlService.admit();
+        long admittedNanos = System.nanoTime();
+        boolean pipelineStarted = false;
+        try {
+            fileStorageService.ensureAudioDirectoryExists();
+
+            ConversionJob job = new ConversionJob(UUID.randomUUID().toString(), document.originalFileName,
+                    fileStorageService.generateUniqueFileName(document.originalFileName), voice.getVoiceType());
+            job.setVoiceSettings(voice);
+            job.setSummarizer(summarizer);
+            job.setDocumentId(documentId);
+            job.setRevoice(true);
+            job.setSavedPdfPath(document.savedPdfPath);
+
+            pipelineStarted = start(job, admittedNanos, null);
+            return job;
+        } finally {
+            if (!pipelineStarted) {
+                admissionControlService.release();
+            }
+        }
+    }
+
+    /**
+     * Runs a failed job again under the same id, after the last stage its journal holds.
+     *
+     * @return the new run of the job, or {@code null} if it is unknown or not retryable
+     * @throws AdmissionRejectedException if the server is already running as many
+     *                                    conversions as it admits
+     */
+    public ConversionJob retry(String jobId) throws IOException {
+        ConversionJob failed = jobs.get(jobId);
+        JobJournalService.JournalEntry journal = journals.get(jobId);
+        if (failed == null || journal == null || !failed.isRetryable()) {
+            return null;
+        }
+
+        admissionControlService.admit();
+        long admittedNanos = System.nanoTime();
+        boolean pipelineStarted = false;
+        // Claims the journal, so two retries of the same job cannot both start
+        if (!journals.remove(jobId, journal)) {
+            admissionControlService.release();
+            return null;
+        }
+        try {
+            jobJournalService.recordRetry(journal);
+            ConversionJob job = resumedJob(journal);
+            pipelineStarted = start(job, admittedNanos, journal);
+            logger.info("Retrying job " + jobId + " after stage " + journal.stage);
+            return job;
+        } catch (IOException | RuntimeException e) {
+            jobs.put(jobId, failed);
+            journals.put(jobId, journal);
+            jobJournalService.recordFailure(journal, failed.getError());
+            throw e;
+        } finally {
+            if (!pipelineStarted) {
+                admissionControlService.release();
+            }
+        }
+    }
+
+    /**
+     * Picks up the jobs journaled by a previous run once the application is ready. They
+     * are registered under their old ids straight away and resumed one by one on a
+     * background thread as admission allows; jobs that had failed wait for a retry.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJournaledJobs() {
+        List<JobJournalService.JournalEntry> entries = jobJournalService.recover();
+        if (entries.isEmpty()) {
+            return;
+        }
+        logger.info("Recovering " + entries.size() + " journaled jobs");
+        for (JobJournalService.JournalEntry entry : entries) {
+            ConversionJob job = resumedJob(entry);
+            jobs.put(job.getJobId(), job);
+            if (entry.error != null) {
+                journals.put(job.getJobId(), entry);
+                job.setRetryable(true);
+                job.fail(new IOException(entry.error));
+            }
+        }
+        Thread recovery = new Thread(() -> resumeJournaledJobs(entries), "journal-recovery");
+        recovery.setDaemon(true);
+        recovery.start();
+    }
+
+    private void resumeJournaledJobs(List<JobJournalService.JournalEntry> entries) {
+        try {
+            for (JobJournalService.JournalEntry entry : entries) {
+                ConversionJob job = jobs.get(entry.jobId);
+                if (entry.error == null && job != null) {
+                    resumeJournaledJob(job, entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts one recovered job, waiting while the server is at capacity.
+     */
+    private void resumeJournaledJob(ConversionJob job, JobJournalService.JournalEntry entry)
+            throws InterruptedException {
+        while (true) {
+            long waitSeconds;
+            try {
+                admissionControlService.admit();
+                long admittedNanos = System.nanoTime();
+                boolean pipelineStarted = false;
+                try {
+                    pipelineStarted = start(job, admittedNanos, entry);
+                    return;
+                } finally {
+                    if (!pipelineStarted) {
+                        admissionControlService.release();
+                    }
+                }
+            } catch (AdmissionRejectedException e) {
+                waitSeconds = e.getRetryAfterSeconds();
+            } catch (TaskRejectedException e) {
+                jobs.put(job.getJobId(), job);
+                waitSeconds = 1;
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to resume job " + job.getJobId() + ": " + e.getMessage());
+                jobs.put(job.getJobId(), job);
+                journals.put(job.getJobId(), entry);
+                jobJournalService.recordFailure(entry, e.getMessage());
+                job.setRetryable(true);
+                job.fail(e);
+                return;
+            }
+            TimeUnit.SECONDS.sleep(waitSeconds);
+        }
+    }
+
+    private ConversionJob resumedJob(JobJournalService.JournalEntry entry) {
+        ConversionJob job = new ConversionJob(entry.jobId, entry.originalFileName, entry.uniqueFileName,
+                entry.voiceType);
+        job.setVoiceSettings(textToSpeechService.voiceSettings(entry.voiceType));
+        if (entry.summarizer != null) {
+            job.setSummarizer(entry.summarizer);
+        }
+        job.setSavedPdfPath(entry.savedPdfPath);
+        job.setDocumentId(entry.documentId);
+        if (entry.stage != JobJournalService.Stage.SAVED) {
+            job.setResumedFromStage(entry.stage.name());
+        }
+        return job;
+    }
+
+    /**
+     * Queues a PDF that is already saved under the PDF directory as one document of a
+     * batch. Admission applies per document; the batch pins its files until it is purged.
+     *
+     * @throws AdmissionRejectedException if the server is already running as many
+     *                                    conversions as it admits
+     */
+    ConversionJob submitSaved(String batchId, String originalFileName, String uniqueFileName,
+                              String savedPdfPath, String voiceType) throws IOException {
+        purgeExpiredJobs();
+
+        admissionControlService.admit();
+        long admittedNanos = System.nanoTime();
+        boolean pipelineStarted = false;
+        try {
+            fileStorageService.ensureAudioDirectoryExists();
+
+            ConversionJob job = new ConversionJob(UUID.randomUUID().toString(), originalFileName,
+                    uniqueFileName, voiceType);
+            job.setBatchId(batchId);
+            job.setVoiceSettings(textToSpeechService.voiceSettings(voiceType));
+            job.setSavedPdfPath(savedPdfPath);
+
+            pipelineStarted = start(job, admittedNanos, null);
+            return job;
+        } finally {
+            if (!pipelineStarted) {
+                // Cache hits, followers and failed submissions give their slot back right away
+                admissionControlService.release();
+            }
+        }
+    }
+
+    /**
+     * Runs a job claimed from the {@link JobQueue} on this node, under the id it was queued
+     * with; its PDF has been fetched from the artifact store into the PDF directory.
+     *
+     * @throws AdmissionRejectedException if the server is already running as many
+     *                                    conversions as it admits
+     */
+    ConversionJob submitQueued(QueuedJob queued, String savedPdfPath) throws IOException {
+        purgeExpiredJobs();
+
+        admissionControlService.admit();
+        long admittedNanos = System.nanoTime();
+        boolean pipelineStarted = false;
+        try {
+            fileStorageService.ensureAudioDirectoryExists();
+
+            ConversionJob job = new ConversionJob(queued.jobId, queued.originalFileName,
+                    queued.uniqueFileName, queued.voiceType);
+            job.setQueued(true);
+            job.setVoiceSettings(textToSpeechService.voiceSettings(queued.voiceType));
+            job.setSummarizer(queued.summarizer);
+            job.setSavedPdfPath(savedPdfPath);
+
+            pipelineStarted = start(job, admittedNanos, null);
+            return job;
+        } finally {
+            if (!pipelineStarted) {
+                admissionControlService.release();
+            }
+        }
+    }
+
+    /**
+     * Stops a job whose result is no longer wanted, e.g. a queued job whose lease was
+     * lost to another worker. Its pipeline fails the job at the next stage or sentence
+     * chunk, which gives back the admission slot and the TTS workers; a job that joined
+     * another conversion is failed at once and leaves that conversion running. A job
+     * other jobs have joined keeps running for them, and stops once the last of them has
+     * been cancelled too.
+     */
+    void cancel(ConversionJob job, String reason) {
+        if (job.isFinished() || !job.cancel(reason)) {
+            return;
+        }
+        ConversionJob leader = job.getLeader();
+        if (leader != null) {
+            job.fail(new CancellationException(reason));
+            leader.removeFollower();
+        }
+    }
+
+    /**
+     * Registers a saved job and answers it from the cache, attaches it to an in-flight
+     * conversion of the same content, or starts its pipeline.
+     *
+     * @param resumeFrom the journal of an earlier run to resume after, or {@code null}
+     * @return whether a pipeline was started, which then owns the admission slot
+     */
+    private boolean start(ConversionJob job, long admittedNanos, JobJournalService.JournalEntry resumeFrom)
+            throws IOException {
+        jobs.put(job.getJobId(), job);
+
+        String cacheKey = null;
+        if (resumeFrom != null) {
+            // The PDF itself may be gone by now
+            cacheKey = resumeFrom.cacheKey;
+        } else {
+            if (job.getDocumentId() == null) {
+                job.setDocumentId(documentStoreService.documentId(job.getSavedPdfPath()));
+            }
+            if (conversionCacheService.isEnabled()) {
+                cacheKey = conversionCacheService.cacheKey(job.getDocumentId(), job.getSummarizer(),
+                        job.getVoiceSettings());
+            }
+        }
+        if (cacheKey != null) {
+            ConversionCacheService.CachedConversion cached = conversionCacheService.lookup(cacheKey);
+            pipelineMetrics.cacheLookup(cached != null);
+            if (cached != null) {
+                logger.info("Result cache hit for " + job.getOriginalFileName());
+                closeJournal(resumeFrom);
+                if (job.getDocumentId() != null) {
+                    // Stored before unless it has been evicted since
+                    documentStoreService.store(job, null, cached.summary, cached.extractedTextLength);
+                }
+                job.getSynthesis().completePublished(Paths.get(cached.audioFilePath));
+                job.complete(buildCachedResult(job, cached));
+                return false;
+            }
+
+            ConversionJob leader;
+            while ((leader = inFlight.putIfAbsent(cacheKey, job)) != null && !leader.addFollower()) {
+                // Cancelled and stopping; this job runs the conversion instead
+                inFlight.remove(cacheKey, leader);
+            }
+            if (leader != null) {
+                logger.info("Joining in-flight conversion " + leader.getJobId() + " for " + job.getOriginalFileName());
+                closeJournal(resumeFrom);
+                followLeader(job, leader);
+                return false;
+            }
+        }
+
+        JobJournalService.JournalEntry journal = resumeFrom;
+        try {
+            if (journal == null && jobJournalService.isEnabled() && job.getBatchId() == null && !job.isRevoice()
+                    && !job.isQueued()) {
+                journal = jobJournalService.open(job, cacheKey);
+            }
+            runPipeline(job, cacheKey, admittedNanos, journal);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // The journal could not be written or the CPU pool rejected the first stage;
+            // nothing else was queued
+            jobs.remove(job.getJobId());
+            if (cacheKey != null) {
+                inFlight.remove(cacheKey, job);
+            }
+            if (journal != null) {
+                journals.remove(job.getJobId(), journal);
+                if (resumeFrom == null) {
+                    jobJournalService.close(journal);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void closeJournal(JobJournalService.JournalEntry journal) {
+        if (journal != null) {
+            journals.remove(journal.jobId, journal);
+            jobJournalService.close(journal);
+        }
+    }
+
+    public ConversionJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Blocks until the job finishes and rethrows the failure of the stage that broke it.
+     */
+    public Map<String, Object> awaitResult(ConversionJob job) throws IOException, InterruptedException {
+        try {
+            return job.getCompletion().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Chains the stages that are still missing from the job's journal, if it has one.
+     */
+    private void runPipeline(ConversionJob job, String cacheKey, long admittedNanos,
+                             JobJournalService.JournalEntry journal) {
+        PipelineState pipelineState = new PipelineState();
+        pipelineState.journal = journal;
+        JobJournalService.Stage finished = journal != null ? journal.stage : JobJournalService.Stage.SAVED;
+        if (finished != JobJournalService.Stage.SAVED) {
+            pipelineMetrics.jobResumed(finished.name());
+        }
+        if (journal != null) {
+            journals.put(job.getJobId(), journal);
+        }
+
+        CompletableFuture<PipelineState> summarized;
+        if (job.isRevoice()) {
+            summarized = CompletableFuture.supplyAsync(() -> loadDocumentStage(job, pipelineState), cpuStageExecutor);
+        } else if (finished == JobJournalService.Stage.SUMMARIZED) {
+            summarized = CompletableFuture.supplyAsync(() -> reloadSummaryStage(job, pipelineState), cpuStageExecutor);
+        } else if (finished == JobJournalService.Stage.EXTRACTED) {
+            summarized = CompletableFuture
+                    .supplyAsync(() -> reloadTextStage(job, pipelineState), cpuStageExecutor)
+                    .thenApplyAsync(state -> summarizeStage(job, state), cpuStageExecutor);
+        } else {
+            summarized = CompletableFuture
+                    .supplyAsync(() -> extractStage(job, pipelineState), cpuStageExecutor)
+                    .thenApplyAsync(state -> summarizeStage(job, state), cpuStageExecutor);
+        }
+
+        summarized
+                .thenCompose(state -> synthesizeWithRetries(job, state, 1))
+                .whenComplete((result, throwable) -> {
+                    pipelineState.deleteTextFile();
+                    admissionControlService.completed(System.nanoTime() - admittedNanos);
+                    if (throwable != null) {
+                        Throwable cause = unwrap(throwable);
+                        logger.log(Level.WARNING, "Conversion job " + job.getJobId() + " failed: " + cause.getMessage());
+                        if (journal != null && !job.isCancelled()) {
+                            // Kept for a retry until the job expires
+                            jobJournalService.recordFailure(journal, cause.getMessage());
+                            job.setRetryable(true);
+                        }
+                        job.fail(cause);
+                    } else {
+                        closeJournal(journal);
+                        if (cacheKey != null) {
+                            conversionCacheService.store(cacheKey, result);
+                        }
+                        job.complete(result);
+                    }
+                    if (cacheKey != null) {
+                        inFlight.remove(cacheKey, job);
+                    }
+                });
+    }
+
+    private void followLeader(ConversionJob follower, ConversionJob leader) {
+        follower.setLeader(leader);
+        leader.getCompletion().whenComplete((result, throwable) -> {
+            if (follower.isFinished()) {
+                // Cancelled while it waited
+                return;
+            }
+            if (throwable != null) {
+                follower.fail(unwrap(throwable));
+                leader.removeFollower();
+                return;
+            }
+            try {
+                Map<String, Object> response = personalizeResult(follower, result);
+                response.put("coalesced", true);
+                follower.complete(response);
+            } catch (IOException e) {
+                follower.fail(e);
+                leader.removeFollower();
+            }
+        });
+    }
+
+    private static void checkNotCancelled(ConversionJob job) {
+        if (job.isCancelled()) {
+            throw new CancellationException(job.getCancelReason());
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+    }
+
+    /**
+     * Runs the synthesis stage, and for journaled jobs runs it again after a backoff when
+     * it fails, reusing the chunks that were already synthesized.
+     */
+    private CompletableFuture<Map<String, Object>> synthesizeWithRetries(ConversionJob job, PipelineState state,
+                                                                        int attempt) {
+        CompletableFuture<Void> ready = attempt == 1
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(synthesisRetryBackoffMillis * (attempt - 1), TimeUnit.MILLISECONDS));
+        return ready
+                .thenApplyAsync(ignored -> synthesizeStage(job, state), ttsStageExecutor)
+                .exceptionallyCompose(throwable -> {
+                    if (state.journal == null || attempt >= maxSynthesisAttempts || job.isCancelled()) {
+                        return CompletableFuture.failedFuture(throwable);
+                    }
+                    logger.log(Level.WARNING, "Synthesis attempt " + attempt + " of job " + job.getJobId()
+                            + " failed, retrying: " + unwrap(throwable).getMessage());
+                    job.restartSynthesis();
+                    return synthesizeWithRetries(job, state, attempt + 1);
+                });
+    }
+
+    /**
+     * Streams the extracted text to a temp file while the first summary pass counts its
+     * terms, so a long document is never held in memory as a whole. A journaled job spools
+     * into its journal instead, where the text stays until it has been summarized.
+     */
+    private PipelineState extractStage(ConversionJob job, PipelineState state) {
+        checkNotCancelled(job);
+        job.setStatus(ConversionJob.Status.EXTRACTING);
+        try {
+            state.textFile = state.journal != null
+                    ? jobJournalService.newTextFile(state.journal)
+                    : Files.createTempFile("extracted-text-", ".txt");
+            state.streamingSummary = textSummarizationService.startStreamingSummary(job.getSummarizer());
+            try (Writer spool = Files.newBufferedWriter(state.textFile, StandardCharsets.UTF_8);
+                 Writer text = new TeeWriter(spool, state.streamingSummary)) {
+                pdfTextExtractionService.extractText(job.getSavedPdfPath(), text);
+            }
+            if (state.streamingSummary.isBlank()) {
+                throw new IllegalArgumentException("No text found in PDF");
+            }
+            state.extractedTextLength = state.streamingSummary.getTextLength();
+            if (state.journal != null) {
+                jobJournalService.recordExtracted(state.journal, state.textFile, state.extractedTextLength);
+                state.textFile = jobJournalService.textFile(state.journal);
+            }
+            return state;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Replays the journaled text through the first summary pass, which is much cheaper
+     * than parsing the PDF again.
+     */
+    private PipelineState reloadTextStage(ConversionJob job, PipelineState state) {
+        checkNotCancelled(job);
+        job.setStatus(ConversionJob.Status.SUMMARIZING);
+        state.textFile = jobJournalService.textFile(state.journal);
+        state.streamingSummary = textSummarizationService.startStreamingSummary(job.getSummarizer());
+        try (Reader text = Files.newBufferedReader(state.textFile, StandardCharsets.UTF_8);
+             Writer summary = state.streamingSummary) {
+            text.transferTo(summary);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        state.extractedTextLength = state.journal.extractedTextLength;
+        return state;
+    }
+
+    /**
+     * Loads the stored summary of a document, or summarizes its stored text if only
+     * another engine's summary is stored.
+     */
+    private PipelineState loadDocumentStage(ConversionJob job, PipelineState state) {
+        checkNotCancelled(job);
+        job.setStatus(ConversionJob.Status.SUMMARIZING);
+        try {
+            DocumentStoreService.StoredDocument document =
+                    documentStoreService.load(job.getDocumentId(), job.getSummarizer());
+            if (document == null) {
+                throw new IOException("Document " + job.getDocumentId() + " is no longer stored");
+            }
+            state.extractedTextLength = document.extractedTextLength;
+            if (document.summary != null) {
+                state.summary = document.summary;
+                return state;
+            }
+
+            state.textFile = Files.createTempFile("stored-text-", ".txt");
+            state.streamingSummary = textSummarizationService.startStreamingSummary(job.getSummarizer());
+            try (Reader text = documentStoreService.openText(job.getDocumentId())) {
+                if (text == null) {
+                    throw new IOException("Text of document " + job.getDocumentId() + " is no longer stored");
+                }
+                try (Writer spool = Files.newBufferedWriter(state.textFile, StandardCharsets.UTF_8);
+                     Writer tee = new TeeWriter(spool, state.streamingSummary)) {
+                    text.transferTo(tee);
+                }
+            }
+        } catch (IOException e) {
+            state.deleteTextFile();
+            throw new CompletionException(e);
+        }
+        return summarizeStage(job, state);
+    }
+
+    private PipelineState reloadSummaryStage(ConversionJob job, PipelineState state) {
+        checkNotCancelled(job);
+        job.setStatus(ConversionJob.Status.SUMMARIZING);
+        try {
+            state.summary = jobJournalService.readSummary(state.journal);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        state.extractedTextLength = state.journal.extractedTextLength;
+        return state;
+    }
+
+    private PipelineState summarizeStage(ConversionJob job, PipelineState state) {
+        checkNotCancelled(job);
+        job.setStatus(ConversionJob.Status.SUMMARIZING);
+        long start = System.nanoTime();
+        try (Reader text = Files.newBufferedReader(state.textFile, StandardCharsets.UTF_8)) {
+            state.summary = state.streamingSummary.summarize(text);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        pipelineMetrics.recordStage(PipelineMetrics.STAGE_SUMMARIZE, System.nanoTime() - start);
+        documentStoreService.store(job, state.textFile, state.summary, state.extractedTextLength);
+        if (state.journal != null) {
+            try {
+                jobJournalService.recordSummary(state.journal, state.summary);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }
+        state.deleteTextFile();
+        return state;
+    }
+
+    private Map<String, Object> synthesizeStage(ConversionJob job, PipelineState state) {
+        checkNotCancelled(job);
+        job.setStatus(ConversionJob.Status.SYNTHESIZING);
+        try {
+            Path chunkDirectory = state.journal != null ? jobJournalService.chunkDirectory(state.journal) : null;
+            String audioFilePath = textToSpeechService.convertTextToAudio(state.summary, job.getUniqueFileName(),
+                    job.getVoiceSettings(), job.getSynthesis(), chunkDirectory);
+
+            return buildResult(job, state, audioFilePath);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private Map<String, Object> buildResult(ConversionJob job, PipelineState state, String audioFilePath)
+            throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "PDF successfully converted to audio");
+        response.put("jobId", job.getJobId());
+        response.put("documentId", job.getDocumentId());
+        response.put("voiceType", job.getVoiceType());
+        response.put("summarizer", job.getSummarizer().name().toLowerCase());
+        response.put("originalFileName", job.getOriginalFileName());
+        response.put("savedPdfPath", job.getSavedPdfPath());
+        response.put("audioFileName", Paths.get(audioFilePath).getFileName().toString());
+        response.put("audioFilePath", audioFilePath);
+        response.put("summary", state.summary);
+        response.put("extractedTextLength", state.extractedTextLength);
+        response.put("summaryLength", state.summary.length());
+        response.put("audioFileSize", fileStorageService.getFileSize(audioFilePath));
+        response.put("pdfFileSize", fileStorageService.getFileSize(job.getSavedPdfPath()));
+        return response;
+    }
+
+    private Map<String, Object> buildCachedResult(ConversionJob job, ConversionCacheService.CachedConversion cached)
+            throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "PDF successfully converted to audio");
+        response.put("audioFileName", cached.audioFileName);
+        response.put("audioFilePath", cached.audioFilePath);
+        response.put("summary", cached.summary);
+        response.put("extractedTextLength", cached.extractedTextLength);
+        response.put("summaryLength", cached.summary.length());
+        response.put("audioFileSize", cached.audioFileSize);
+        response = personalizeResult(job, response);
+        response.put("cached", true);
+        return response;
+    }
+
+    /**
+     * Copies a shared result and fills in the fields that belong to this particular upload.
+     */
+    private Map<String, Object> personalizeResult(ConversionJob job, Map<String, Object> result) throws IOException {
+        Map<String, Object> response = new HashMap<>(result);
+        response.put("jobId", job.getJobId());
+        response.put("documentId", job.getDocumentId());
+        response.put("voiceType", job.getVoiceType());
+        response.put("summarizer", job.getSummarizer().name().toLowerCase());
+        response.put("originalFileName", job.getOriginalFileName());
+        response.put("savedPdfPath", job.getSavedPdfPath());
+        response.put("pdfFileSize", fileStorageService.getFileSize(job.getSavedPdfPath()));
+        return response;
+    }
+
+    private void purgeExpiredJobs() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(jobRetentionMinutes));
+        jobs.values().removeIf(job -> {
+            if (!job.isFinished() || !job.getFinishedAt().isBefore(cutoff)) {
+                return false;
+            }
+            JobJournalService.JournalEntry journal = journals.get(job.getJobId());
+            if (journal != null && job.isRetryable()) {
+                closeJournal(journal);
+            }
+            return true;
+        });
+    }
+
+    private static class PipelineState {
+        JobJournalService.JournalEntry journal;
+        Path textFile;
+        TextSummarizationService.StreamingSummary streamingSummary;
+        long extractedTextLength;
+        String summary;
+
+        /**
+         * Deletes the spooled text unless it belongs to the journal.
+         */
+        void deleteTextFile() {
+            if (textFile != null && journal == null) {
+                FileUtils.deleteQuietly(textFile.toFile());
+                textFile = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.config.NodeRole;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The worker side of a queued deployment: {@code worker.threads} threads claim jobs from
+ * the {@link JobQueue}, fetch their PDF from the {@link ArtifactStore} and run them through
+ * the local pipeline like any upload, so the result cache, fragment cache and admission
+ * limits of this node apply. The lease is renewed while the job runs; the audio goes back
+ * to the artifact store and the result to the queue, without paths local to this node.
+ * <p>
+ * Runs on nodes in the {@code worker} and {@code all} roles once the application is ready,
+ * i.e. after the warm-up. A job this node has no capacity for is put back in the queue for
+ * another worker.
+ */
+@Service
+public class ConversionWorker {
+
+    private static final Logger logger = Logger.getLogger(ConversionWorker.class.getName());
+
+    private static final long CLAIM_TIMEOUT_MILLIS = 5000;
+    private static final long QUEUE_ERROR_BACKOFF_SECONDS = 5;
+
+    @Autowired(required = false)
+    private JobQueue jobQueue;
+
+    @Autowired
+    private ArtifactStore artifactStore;
+
+    @Autowired
+    private ConversionJobService conversionJobService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.role:all}")
+    private String role;
+
+    @Value("${worker.threads:2}")
+    private int threads;
+
+    @Value("${worker.id:}")
+    private String workerIdPrefix;
+
+    @Value("${jobs.queue.lease.seconds:60}")
+    private long leaseSeconds;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (jobQueue == null || !NodeRole.fromProperty(role).runsWorkers()) {
+            return;
+        }
+        String prefix = workerIdPrefix.isBlank() ? defaultWorkerIdPrefix() : workerIdPrefix;
+        running = true;
+        for (int i = 1; i <= threads; i++) {
+            String workerId = prefix + "-" + i;
+            Thread worker = new Thread(() -> work(workerId), "conversion-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        logger.info("Started " + threads + " conversion workers as " + prefix);
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        workers.clear();
+    }
+
+    private void work(String workerId) {
+        while (running) {
+            try {
+                QueuedJob job = jobQueue.claim(workerId, CLAIM_TIMEOUT_MILLIS);
+                if (job != null) {
+                    long backoffSeconds = run(job, workerId);
+                    if (backoffSeconds > 0) {
+                        TimeUnit.SECONDS.sleep(backoffSeconds);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Worker " + workerId + " cannot reach the job queue: " + e.getMessage());
+                try {
+                    TimeUnit.SECONDS.sleep(QUEUE_ERROR_BACKOFF_SECONDS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one claimed job to the end and reports its outcome to the queue.
+     *
+     * @return seconds to wait before claiming the next job, when this node is at capacity
+     */
+    private long run(QueuedJob job, String workerId) throws IOException, InterruptedException {
+        logger.info("Worker " + workerId + " claimed job " + job.jobId + " (attempt " + job.attempts + ")");
+        ConversionJob local;
+        try {
+            local = conversionJobService.submitQueued(job, fetchPdf(job));
+        } catch (AdmissionRejectedException e) {
+            jobQueue.release(job.jobId, workerId);
+            return e.getRetryAfterSeconds();
+        } catch (TaskRejectedException e) {
+            jobQueue.release(job.jobId, workerId);
+            return 1;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Job " + job.jobId + " could not be started: " + e.getMessage());
+            jobQueue.fail(job.jobId, workerId, e.getMessage());
+            return 0;
+        }
+
+        try {
+            Map<String, Object> result = awaitRenewingLease(local, workerId);
+            if (result == null) {
+                logger.warning("Worker " + workerId + " lost the lease of job " + job.jobId
+                        + ", another worker runs it now");
+                conversionJobService.cancel(local, "Lease lost to another worker");
+                return 0;
+            }
+            String audioFileName = (String) result.get("audioFileName");
+            artifactStore.put(QueuedConversionService.AUDIO_PREFIX + audioFileName,
+                    Paths.get((String) result.get("audioFilePath")));
+
+            Map<String, Object> published = new HashMap<>(result);
+            published.remove("audioFilePath");
+            published.remove("savedPdfPath");
+            published.put("workerId", workerId);
+            if (jobQueue.complete(job.jobId, workerId, published)) {
+                artifactStore.delete(job.pdfKey);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Job " + job.jobId + " failed on worker " + workerId + ": " + e.getMessage());
+            jobQueue.fail(job.jobId, workerId, e.getMessage());
+        } catch (InterruptedException e) {
+            // Shutting down; another worker can have it right away instead of after the lease
+            conversionJobService.cancel(local, "Worker is shutting down");
+            jobQueue.release(job.jobId, workerId);
+            throw e;
+        }
+        return 0;
+    }
+
+    /**
+     * The PDF in local storage: already there on a node in the {@code all} role, fetched
+     * from the artifact store otherwise.
+     */
+    private String fetchPdf(QueuedJob job) throws IOException {
+        Path local = fileStorageService.resolvePdfFile(Paths.get(job.pdfKey).getFileName().toString());
+        if (local != null) {
+            return local.toString();
+        }
+        try (InputStream in = artifactStore.open(job.pdfKey)) {
+            if (in == null) {
+                throw new IOException("PDF " + job.pdfKey + " is missing from the artifact store");
+            }
+            fileStorageService.ensurePdfDirectoryExists();
+            return fileStorageService.savePdfFile(in, job.uniqueFileName);
+        }
+    }
+
+    /**
+     * Waits for the local job, renewing the lease a few times per lease period.
+     *
+     * @return the result, or {@code null} if the lease was lost in the meantime; the
+     *         local job is then still running and has to be cancelled
+     */
+    private Map<String, Object> awaitRenewingLease(ConversionJob local, String workerId)
+            throws IOException, InterruptedException {
+        long renewMillis = TimeUnit.SECONDS.toMillis(leaseSeconds) / 3;
+        while (true) {
+            try {
+                local.getCompletion().get(renewMillis, TimeUnit.MILLISECONDS);
+                return conversionJobService.awaitResult(local);
+            } catch (ExecutionException e) {
+                // Rethrown as the failure of the stage that broke it
+                return conversionJobService.awaitResult(local);
+            } catch (TimeoutException e) {
+                if (!jobQueue.renew(local.getJobId(), workerId, local.getStatus().name())) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    private static String defaultWorkerIdPrefix() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+}
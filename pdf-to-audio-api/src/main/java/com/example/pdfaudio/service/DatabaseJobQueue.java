@@ -0,0 +1,359 @@
+package com.example.pdfaudio.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Job queue in a table of a JDBC database, so API and worker nodes in separate processes
+ * share it. The default is an H2 file opened with {@code AUTO_SERVER=TRUE}: the first
+ * process to open it serves it to the others over TCP, which is enough to run API and
+ * workers side by side on one machine or a shared volume; point
+ * {@code jobs.queue.jdbc.url} at a database server to spread them over several machines.
+ * <p>
+ * A claim is a conditional update of the oldest claimable row, so two workers racing for
+ * the same job cannot both get it: the loser updates no row and tries the next one.
+ * Workers poll for new jobs every {@code jobs.queue.poll.ms}.
+ * <p>
+ * Every operation borrows its own connection from a pool of {@code jobs.queue.jdbc.pool.size},
+ * so status polls of the API threads never hold up the lease renewals of the workers.
+ */
+@Service
+@ConditionalOnProperty(name = "jobs.queue.type", havingValue = "database")
+public class DatabaseJobQueue implements JobQueue {
+
+    private static final Logger logger = Logger.getLogger(DatabaseJobQueue.class.getName());
+
+    private static final TypeReference<Map<String, Object>> RESULT_TYPE = new TypeReference<>() { };
+
+    private static final String COLUMNS = "job_id, state, stage, pdf_key, original_file_name, unique_file_name, "
+            + "voice_type, summarizer, attempts, worker_id, lease_expires_at, error, result, created_at, finished_at";
+
+    // The lease condition of a claimable row; the parameter is the current time
+    private static final String CLAIMABLE = "(state = 'QUEUED' OR (state = 'RUNNING' AND lease_expires_at < ?))";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${jobs.queue.jdbc.url:jdbc:h2:file:./queue/jobs;AUTO_SERVER=TRUE}")
+    private String jdbcUrl;
+
+    @Value("${jobs.queue.jdbc.user:sa}")
+    private String jdbcUser;
+
+    @Value("${jobs.queue.jdbc.password:}")
+    private String jdbcPassword;
+
+    @Value("${jobs.queue.jdbc.pool.size:4}")
+    private int poolSize;
+
+    @Value("${jobs.queue.poll.ms:500}")
+    private long pollMillis;
+
+    @Value("${jobs.queue.lease.seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${jobs.queue.max.attempts:3}")
+    private int maxAttempts;
+
+    @Value("${pipeline.job.retention.minutes:60}")
+    private long retentionMinutes;
+
+    private HikariDataSource dataSource;
+
+    @PostConstruct
+    public void init() throws IOException {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("job-queue");
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(jdbcUser);
+        config.setPassword(jdbcPassword);
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(1);
+        // Fail at the first operation rather than at startup if the database is down
+        config.setInitializationFailTimeout(-1);
+        dataSource = new HikariDataSource(config);
+
+        try (Connection db = dataSource.getConnection();
+             Statement statement = db.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS conversion_queue ("
+                    + "job_id VARCHAR(64) PRIMARY KEY, "
+                    + "state VARCHAR(16) NOT NULL, "
+                    + "stage VARCHAR(32), "
+                    + "pdf_key VARCHAR(1024) NOT NULL, "
+                    + "original_file_name VARCHAR(1024), "
+                    + "unique_file_name VARCHAR(1024) NOT NULL, "
+                    + "voice_type VARCHAR(64), "
+                    + "summarizer VARCHAR(32) NOT NULL, "
+                    + "attempts INT NOT NULL, "
+                    + "worker_id VARCHAR(256), "
+                    + "lease_expires_at BIGINT, "
+                    + "error VARCHAR(4096), "
+                    + "result CLOB, "
+                    + "created_at BIGINT NOT NULL, "
+                    + "finished_at BIGINT)");
+            statement.execute("CREATE INDEX IF NOT EXISTS conversion_queue_claim ON conversion_queue (state, created_at)");
+        } catch (SQLException e) {
+            throw failure("create the queue table", e);
+        }
+        logger.info("Job queue in " + jdbcUrl);
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+
+    @Override
+    public void enqueue(QueuedJob job) throws IOException {
+        try (Connection db = dataSource.getConnection()) {
+            try (PreparedStatement purge = db.prepareStatement(
+                    "DELETE FROM conversion_queue WHERE state IN ('COMPLETED', 'FAILED') AND finished_at < ?")) {
+                purge.setLong(1, Instant.now().minus(Duration.ofMinutes(retentionMinutes)).toEpochMilli());
+                purge.executeUpdate();
+            }
+            try (PreparedStatement insert = db.prepareStatement(
+                    "INSERT INTO conversion_queue (" + COLUMNS + ") VALUES (?, 'QUEUED', NULL, ?, ?, ?, ?, ?, 0, "
+                            + "NULL, NULL, NULL, NULL, ?, NULL)")) {
+                insert.setString(1, job.jobId);
+                insert.setString(2, job.pdfKey);
+                insert.setString(3, job.originalFileName);
+                insert.setString(4, job.uniqueFileName);
+                insert.setString(5, job.voiceType);
+                insert.setString(6, job.summarizer.name());
+                insert.setLong(7, job.createdAt.toEpochMilli());
+                insert.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw failure("enqueue job " + job.jobId, e);
+        }
+    }
+
+    @Override
+    public QueuedJob claim(String workerId, long timeoutMillis) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            QueuedJob job = claimNext(workerId);
+            if (job != null) {
+                return job;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.MILLISECONDS.sleep(Math.min(remaining, pollMillis));
+        }
+    }
+
+    private QueuedJob claimNext(String workerId) throws IOException {
+        try (Connection db = dataSource.getConnection()) {
+            db.setAutoCommit(false);
+            try {
+                long now = System.currentTimeMillis();
+                try (PreparedStatement expire = db.prepareStatement(
+                        "UPDATE conversion_queue SET state = 'FAILED', stage = NULL, lease_expires_at = NULL, "
+                                + "error = 'Worker ' || worker_id || ' stopped renewing its lease', finished_at = ? "
+                                + "WHERE state = 'RUNNING' AND lease_expires_at < ? AND attempts >= ?")) {
+                    expire.setLong(1, now);
+                    expire.setLong(2, now);
+                    expire.setInt(3, maxAttempts);
+                    expire.executeUpdate();
+                }
+                while (true) {
+                    String jobId;
+                    try (PreparedStatement next = db.prepareStatement(
+                            "SELECT job_id FROM conversion_queue WHERE " + CLAIMABLE
+                                    + " ORDER BY created_at, job_id LIMIT 1")) {
+                        next.setLong(1, now);
+                        try (ResultSet row = next.executeQuery()) {
+                            if (!row.next()) {
+                                db.commit();
+                                return null;
+                            }
+                            jobId = row.getString(1);
+                        }
+                    }
+                    try (PreparedStatement take = db.prepareStatement(
+                            "UPDATE conversion_queue SET state = 'RUNNING', stage = NULL, worker_id = ?, "
+                                    + "attempts = attempts + 1, lease_expires_at = ? WHERE job_id = ? AND " + CLAIMABLE)) {
+                        take.setString(1, workerId);
+                        take.setLong(2, now + TimeUnit.SECONDS.toMillis(leaseSeconds));
+                        take.setString(3, jobId);
+                        take.setLong(4, now);
+                        if (take.executeUpdate() == 1) {
+                            QueuedJob job = select(db, jobId);
+                            db.commit();
+                            return job;
+                        }
+                    }
+                    // Another process claimed it between the select and the update
+                    db.commit();
+                }
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw failure("claim a job", e);
+        }
+    }
+
+    @Override
+    public boolean renew(String jobId, String workerId, String stage) throws IOException {
+        try (Connection db = dataSource.getConnection();
+             PreparedStatement update = db.prepareStatement(
+                "UPDATE conversion_queue SET stage = ?, lease_expires_at = ? "
+                        + "WHERE job_id = ? AND state = 'RUNNING' AND worker_id = ?")) {
+            update.setString(1, stage);
+            update.setLong(2, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(leaseSeconds));
+            update.setString(3, jobId);
+            update.setString(4, workerId);
+            return update.executeUpdate() == 1;
+        } catch (SQLException e) {
+            throw failure("renew the lease of job " + jobId, e);
+        }
+    }
+
+    @Override
+    public boolean complete(String jobId, String workerId, Map<String, Object> result)
+            throws IOException {
+        try (Connection db = dataSource.getConnection();
+             PreparedStatement update = db.prepareStatement(
+                "UPDATE conversion_queue SET state = 'COMPLETED', stage = NULL, lease_expires_at = NULL, "
+                        + "error = NULL, result = ?, finished_at = ? "
+                        + "WHERE job_id = ? AND state = 'RUNNING' AND worker_id = ?")) {
+            update.setString(1, objectMapper.writeValueAsString(result));
+            update.setLong(2, System.currentTimeMillis());
+            update.setString(3, jobId);
+            update.setString(4, workerId);
+            return update.executeUpdate() == 1;
+        } catch (SQLException e) {
+            throw failure("complete job " + jobId, e);
+        }
+    }
+
+    @Override
+    public void fail(String jobId, String workerId, String error) throws IOException {
+        try (Connection db = dataSource.getConnection();
+             PreparedStatement update = db.prepareStatement(
+                "UPDATE conversion_queue SET state = CASE WHEN attempts >= ? THEN 'FAILED' ELSE 'QUEUED' END, "
+                        + "finished_at = CASE WHEN attempts >= ? THEN ? ELSE NULL END, "
+                        + "stage = NULL, lease_expires_at = NULL, error = ? "
+                        + "WHERE job_id = ? AND state = 'RUNNING' AND worker_id = ?")) {
+            update.setInt(1, maxAttempts);
+            update.setInt(2, maxAttempts);
+            update.setLong(3, System.currentTimeMillis());
+            update.setString(4, truncate(error));
+            update.setString(5, jobId);
+            update.setString(6, workerId);
+            update.executeUpdate();
+        } catch (SQLException e) {
+            throw failure("fail job " + jobId, e);
+        }
+    }
+
+    @Override
+    public void release(String jobId, String workerId) throws IOException {
+        try (Connection db = dataSource.getConnection();
+             PreparedStatement update = db.prepareStatement(
+                "UPDATE conversion_queue SET state = 'QUEUED', stage = NULL, lease_expires_at = NULL, "
+                        + "attempts = attempts - 1 WHERE job_id = ? AND state = 'RUNNING' AND worker_id = ?")) {
+            update.setString(1, jobId);
+            update.setString(2, workerId);
+            update.executeUpdate();
+        } catch (SQLException e) {
+            throw failure("release job " + jobId, e);
+        }
+    }
+
+    @Override
+    public QueuedJob get(String jobId) throws IOException {
+        try (Connection db = dataSource.getConnection()) {
+            return select(db, jobId);
+        } catch (SQLException e) {
+            throw failure("read job " + jobId, e);
+        }
+    }
+
+    @Override
+    public int depth() {
+        try (Connection db = dataSource.getConnection();
+             Statement statement = db.createStatement();
+             ResultSet row = statement.executeQuery("SELECT COUNT(*) FROM conversion_queue WHERE state = 'QUEUED'")) {
+            row.next();
+            return row.getInt(1);
+        } catch (SQLException e) {
+            logger.log(Level.FINE, "Could not count queued jobs: " + e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private QueuedJob select(Connection db, String jobId) throws SQLException, IOException {
+        try (PreparedStatement query = db.prepareStatement(
+                "SELECT " + COLUMNS + " FROM conversion_queue WHERE job_id = ?")) {
+            query.setString(1, jobId);
+            try (ResultSet row = query.executeQuery()) {
+                if (!row.next()) {
+                    return null;
+                }
+                QueuedJob job = new QueuedJob();
+                job.jobId = row.getString("job_id");
+                job.state = QueuedJob.State.valueOf(row.getString("state"));
+                job.stage = row.getString("stage");
+                job.pdfKey = row.getString("pdf_key");
+                job.originalFileName = row.getString("original_file_name");
+                job.uniqueFileName = row.getString("unique_file_name");
+                job.voiceType = row.getString("voice_type");
+                job.summarizer = TextSummarizationService.Engine.valueOf(row.getString("summarizer"));
+                job.attempts = row.getInt("attempts");
+                job.workerId = row.getString("worker_id");
+                job.leaseExpiresAt = instant(row, "lease_expires_at");
+                job.error = row.getString("error");
+                String result = row.getString("result");
+                job.result = result != null ? objectMapper.readValue(result, RESULT_TYPE) : null;
+                job.createdAt = instant(row, "created_at");
+                job.finishedAt = instant(row, "finished_at");
+                return job;
+            }
+        }
+    }
+
+    private static Instant instant(ResultSet row, String column) throws SQLException {
+        long millis = row.getLong(column);
+        return row.wasNull() ? null : Instant.ofEpochMilli(millis);
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 4096 ? error.substring(0, 4096) : error;
+    }
+
+    private static IOException failure(String action, SQLException e) {
+        // The pool drops broken connections, e.g. when the process that served the H2 file went away
+        return new IOException("Could not " + action + ": " + e.getMessage(), e);
+    }
+}
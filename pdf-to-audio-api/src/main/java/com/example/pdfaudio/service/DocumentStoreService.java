@@ -0,0 +1,194 @@
+package com.example.pdfaudio.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the extracted text and summary of every converted PDF, gzip-compressed next to the
+ * stored PDFs, under a stable document id: the SHA-256 of the PDF. A document can then be
+ * spoken again with other voice settings by running only the TTS stage, without the upload,
+ * PDFBox extraction or summarization.
+ * <p>
+ * Each document has a {@code <id>.summary.gz} holding its metadata and summary as JSON,
+ * which is all a new voice needs, and a {@code <id>.text.gz} with the full text. Summaries
+ * of other engines than the frequency one go to {@code <id>.<engine>.summary.gz}. All of
+ * them count toward the PDF quota and are evicted like the PDFs, least recently used first.
+ */
+@Service
+public class DocumentStoreService {
+
+    private static final Logger logger = Logger.getLogger(DocumentStoreService.class.getName());
+
+    private static final String SUMMARY_SUFFIX = ".summary.gz";
+    private static final String TEXT_SUFFIX = ".text.gz";
+    private static final Pattern DOCUMENT_ID = Pattern.compile("[0-9a-f]{64}");
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * The id of the document in a saved PDF; identical PDFs share it.
+     */
+    public String documentId(String savedPdfPath) throws IOException {
+        return fileStorageService.sha256Hex(savedPdfPath);
+    }
+
+    /**
+     * The id of a document whose PDF went through {@code digest}, one from
+     * {@link FileStorageService#newSha256()}, as it was saved.
+     */
+    public String documentId(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static boolean isDocumentId(String documentId) {
+        return documentId != null && DOCUMENT_ID.matcher(documentId).matches();
+    }
+
+    /**
+     * Stores what a job extracted from its PDF. Failures are logged, not thrown: the store
+     * only saves work on later voice changes.
+     *
+     * @param textFile the extracted text, or {@code null} if it is not at hand
+     */
+    public void store(ConversionJob job, Path textFile, String summary, long extractedTextLength) {
+        String documentId = job.getDocumentId();
+        if (documentId == null) {
+            return;
+        }
+        try {
+            if (textFile != null && fileStorageService.resolveDocumentFile(documentId + TEXT_SUFFIX) == null) {
+                Path target = fileStorageService.documentPath(documentId + TEXT_SUFFIX);
+                Path temp = fileStorageService.newTempFile(target);
+                try {
+                    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                        Files.copy(textFile, out);
+                    }
+                    fileStorageService.commit(temp, target);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            String summaryFileName = summaryFileName(documentId, job.getSummarizer());
+            if (fileStorageService.resolveDocumentFile(summaryFileName) == null) {
+                StoredDocument document = new StoredDocument();
+                document.documentId = documentId;
+                document.originalFileName = job.getOriginalFileName();
+                document.savedPdfPath = job.getSavedPdfPath();
+                document.createdAt = Instant.now().toString();
+                document.extractedTextLength = extractedTextLength;
+                document.summarizer = job.getSummarizer().name().toLowerCase();
+                document.summary = summary;
+
+                Path target = fileStorageService.documentPath(summaryFileName);
+                Path temp = fileStorageService.newTempFile(target);
+                try {
+                    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                        objectMapper.writeValue(out, document);
+                    }
+                    fileStorageService.commit(temp, target);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to store document " + documentId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads a stored document's metadata and the summary the given engine made of it. If
+     * only another engine's summary is stored, the document comes without a summary; it
+     * can still be summarized from its stored text, if that is there.
+     *
+     * @return the document, or {@code null} if it was never stored or has been evicted
+     */
+    public StoredDocument load(String documentId, TextSummarizationService.Engine summarizer) throws IOException {
+        if (!isDocumentId(documentId)) {
+            return null;
+        }
+        Path summaryFile = fileStorageService.resolveDocumentFile(summaryFileName(documentId, summarizer));
+        boolean otherSummary = false;
+        for (TextSummarizationService.Engine other : TextSummarizationService.Engine.values()) {
+            if (summaryFile == null) {
+                summaryFile = fileStorageService.resolveDocumentFile(summaryFileName(documentId, other));
+                otherSummary = true;
+            }
+        }
+        if (summaryFile == null) {
+            return null;
+        }
+        StoredDocument document;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(summaryFile))) {
+            document = objectMapper.readValue(in, StoredDocument.class);
+        }
+        fileStorageService.touch(summaryFile.toString());
+        if (otherSummary) {
+            document.summarizer = summarizer.name().toLowerCase();
+            document.summary = null;
+        }
+        document.textStored = fileStorageService.resolveDocumentFile(documentId + TEXT_SUFFIX) != null;
+        document.pdfStored = document.savedPdfPath != null && fileStorageService.fileExists(document.savedPdfPath);
+        return document;
+    }
+
+    /**
+     * Opens the stored text of a document.
+     *
+     * @return the text, or {@code null} if it is not stored
+     */
+    public Reader openText(String documentId) throws IOException {
+        if (!isDocumentId(documentId)) {
+            return null;
+        }
+        Path textFile = fileStorageService.resolveDocumentFile(documentId + TEXT_SUFFIX);
+        if (textFile == null) {
+            return null;
+        }
+        fileStorageService.touch(textFile.toString());
+        return new InputStreamReader(new GZIPInputStream(Files.newInputStream(textFile)), StandardCharsets.UTF_8);
+    }
+
+    private static String summaryFileName(String documentId, TextSummarizationService.Engine summarizer) {
+        return summarizer == TextSummarizationService.Engine.FREQUENCY
+                ? documentId + SUMMARY_SUFFIX
+                : documentId + "." + summarizer.name().toLowerCase() + SUMMARY_SUFFIX;
+    }
+
+    /**
+     * Metadata and summary of a stored document.
+     */
+    public static class StoredDocument {
+        public String documentId;
+        public String originalFileName;
+        public String savedPdfPath;
+        public String createdAt;
+        public long extractedTextLength;
+        public String summarizer;
+        // Null if only another engine's summary is stored
+        public String summary;
+        // Filled in on load
+        public boolean textStored;
+        public boolean pdfStored;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.pdfaudio.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Job queue in the memory of this node, for running API and workers in one process (or
+ * trying the queued mode locally). Jobs are lost on restart; use {@link DatabaseJobQueue}
+ * to share a queue between processes.
+ */
+@Service
+@ConditionalOnProperty(name = "jobs.queue.type", havingValue = "embedded")
+public class EmbeddedJobQueue implements JobQueue {
+
+    @Value("${jobs.queue.lease.seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${jobs.queue.max.attempts:3}")
+    private int maxAttempts;
+
+    @Value("${pipeline.job.retention.minutes:60}")
+    private long retentionMinutes;
+
+    // In order of arrival, so the oldest waiting job is claimed first
+    private final Map<String, QueuedJob> jobs = new LinkedHashMap<>();
+
+    @Override
+    public synchronized void enqueue(QueuedJob job) {
+        purgeFinished();
+        QueuedJob queued = job.copy();
+        queued.state = QueuedJob.State.QUEUED;
+        jobs.put(queued.jobId, queued);
+        notifyAll();
+    }
+
+    @Override
+    public synchronized QueuedJob claim(String workerId, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            Instant now = Instant.now();
+            for (QueuedJob job : jobs.values()) {
+                if (job.state == QueuedJob.State.RUNNING && job.leaseExpiresAt.isBefore(now)
+                        && job.attempts >= maxAttempts) {
+                    finish(job, QueuedJob.State.FAILED, "Worker " + job.workerId + " stopped renewing its lease");
+                } else if (job.state == QueuedJob.State.QUEUED
+                        || (job.state == QueuedJob.State.RUNNING && job.leaseExpiresAt.isBefore(now))) {
+                    job.state = QueuedJob.State.RUNNING;
+                    job.stage = null;
+                    job.workerId = workerId;
+                    job.attempts++;
+                    job.leaseExpiresAt = now.plusSeconds(leaseSeconds);
+                    return job.copy();
+                }
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            // Also wakes up in time to reclaim an expiring lease
+            wait(Math.min(remaining, leaseSeconds * 1000));
+        }
+    }
+
+    @Override
+    public synchronized boolean renew(String jobId, String workerId, String stage) {
+        QueuedJob job = heldBy(jobId, workerId);
+        if (job == null) {
+            return false;
+        }
+        job.stage = stage;
+        job.leaseExpiresAt = Instant.now().plusSeconds(leaseSeconds);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean complete(String jobId, String workerId, Map<String, Object> result) {
+        QueuedJob job = heldBy(jobId, workerId);
+        if (job == null) {
+            return false;
+        }
+        job.result = result;
+        finish(job, QueuedJob.State.COMPLETED, null);
+        return true;
+    }
+
+    @Override
+    public synchronized void fail(String jobId, String workerId, String error) {
+        QueuedJob job = heldBy(jobId, workerId);
+        if (job == null) {
+            return;
+        }
+        if (job.attempts >= maxAttempts) {
+            finish(job, QueuedJob.State.FAILED, error);
+        } else {
+            job.state = QueuedJob.State.QUEUED;
+            job.error = error;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void release(String jobId, String workerId) {
+        QueuedJob job = heldBy(jobId, workerId);
+        if (job != null) {
+            job.state = QueuedJob.State.QUEUED;
+            job.attempts--;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized QueuedJob get(String jobId) {
+        QueuedJob job = jobs.get(jobId);
+        return job != null ? job.copy() : null;
+    }
+
+    @Override
+    public synchronized int depth() {
+        return (int) jobs.values().stream().filter(job -> job.state == QueuedJob.State.QUEUED).count();
+    }
+
+    private QueuedJob heldBy(String jobId, String workerId) {
+        QueuedJob job = jobs.get(jobId);
+        return job != null && job.state == QueuedJob.State.RUNNING && workerId.equals(job.workerId) ? job : null;
+    }
+
+    private static void finish(QueuedJob job, QueuedJob.State state, String error) {
+        job.state = state;
+        job.stage = null;
+        job.error = error;
+        job.leaseExpiresAt = null;
+        job.finishedAt = Instant.now();
+    }
+
+    private void purgeFinished() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        for (Iterator<QueuedJob> it = jobs.values().iterator(); it.hasNext(); ) {
+            QueuedJob job = it.next();
+            if (job.isFinished() && job.finishedAt.isBefore(cutoff)) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves stored audio and PDF files with the HTTP caching and range semantics players and
+ * proxies expect: strong ETags derived from the content, 304 for matching
+ * {@code If-None-Match}, single byte ranges as 206 (honouring {@code If-Range}), and long
+ * lived {@code Cache-Control} since stored files are never rewritten under the same name.
+ * <p>
+ * Bodies of at least {@code download.sendfile.min.bytes} are handed to Tomcat's sendfile
+ * support, so the kernel copies them from the page cache to the socket without passing
+ * through the JVM. Smaller bodies, and connectors without sendfile (e.g. TLS), are written
+ * by the usual message converters.
+ */
+@Service
+public class FileDownloadService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${download.cache.max.age.seconds:31536000}")
+    private long maxAgeSeconds;
+
+    @Value("${download.sendfile.enabled:true}")
+    private boolean sendfileEnabled;
+
+    @Value("${download.sendfile.min.bytes:49152}")
+    private long sendfileMinBytes;
+
+    @Value("${download.etag.cache.entries:4096}")
+    private int etagCacheEntries;
+
+    // Hashes by path, reused while the file and its size are unchanged. Not keyed on the
+    // modification time, which the result cache bumps on every hit to order eviction
+    private final Map<Path, ContentTag> etags = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, ContentTag> eldest) {
+                    return size() > etagCacheEntries;
+                }
+            });
+
+    /**
+     * Builds the response for a GET or HEAD of {@code file}, sent as an attachment named
+     * after the file.
+     */
+    public ResponseEntity<Object> serve(Path file, MediaType contentType, HttpServletRequest request)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        String etag = etag(file, attributes);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic().immutable());
+        headers.setLastModified(attributes.lastModifiedTime().toMillis());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        headers.setContentType(contentType);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"");
+
+        long start = 0;
+        long end = length - 1;
+        HttpStatus status = HttpStatus.OK;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // A stale If-Range means the client's partial copy is of other content: send it all
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Players only ask for one range; several are answered with the whole file
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    start = length;
+                }
+                if (start >= length || end < start) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                            .build();
+                }
+                status = HttpStatus.PARTIAL_CONTENT;
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        headers.setContentLength(count);
+
+        if ("HEAD".equals(request.getMethod())) {
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+        pipelineMetrics.bytesSent(count);
+
+        if (sendfileEnabled && count >= sendfileMinBytes
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file after the headers; the body must stay empty
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+        // Not a FileSystemResource: MVC would apply the Range header again on its own
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ).position(start);
+        InputStream in = new BoundedInputStream(Channels.newInputStream(channel), count);
+        return ResponseEntity.status(status).headers(headers).body(new InputStreamResource(in));
+    }
+
+    private String etag(Path file, BasicFileAttributes attributes) throws IOException {
+        long size = attributes.size();
+        // Stored files are replaced by moving a new file in, which gives them a new identity
+        Object identity = attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+        ContentTag cached = etags.get(file);
+        if (cached != null && cached.size == size && cached.identity.equals(identity)) {
+            return cached.etag;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        String etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()) + "\"";
+        etags.put(file, new ContentTag(size, identity, etag));
+        return etag;
+    }
+
+    /**
+     * Weak comparison as If-None-Match requires; our tags are strong, so a {@code W/}
+     * prefix from a proxy is the only difference to ignore.
+     */
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ContentTag {
+        final long size;
+        final Object identity;
+        final String etag;
+
+        ContentTag(long size, Object identity, String etag) {
+            this.size = size;
+            this.identity = identity;
+            this.etag = etag;
+        }
+    }
+}
@@ -1,27 +1,118 @@
 package com.example.pdfaudio.service;
 
-import org.apache.commons.io.FileUtils;
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
+/**
+ * Stores uploaded PDFs and generated audio. Each directory is sharded into 256
+ * subdirectories by a hash of the file name, and every stored file is tracked in an
+ * in-memory index ordered by last access, rebuilt from the directories at startup.
+ * <p>
+ * Files are written under a temporary name and renamed into place, so readers never see a
+ * partial file. A background janitor evicts least recently used files once a directory
+ * exceeds its byte quota ({@code storage.audio.max.bytes}, {@code storage.pdf.max.bytes}),
+ * leaving alone files that are pinned, e.g. by a batch that has not been collected yet.
+ */
 @Service
 public class FileStorageService {
 
+    private static final Logger logger = Logger.getLogger(FileStorageService.class.getName());
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
     private final String audioFilesDirectory = "audio-files";
     private final String pdfFilesDirectory = "pdf";
 
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${storage.audio.max.bytes:2147483648}")
+    private long audioMaxBytes;
+
+    @Value("${storage.pdf.max.bytes:1073741824}")
+    private long pdfMaxBytes;
+
+    @Value("${storage.janitor.interval.seconds:60}")
+    private long janitorIntervalSeconds;
+
+    private StorageArea audioArea;
+    private StorageArea pdfArea;
+    private final Map<Path, Integer> pins = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweepPending = new AtomicBoolean();
+    private ScheduledExecutorService janitor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        audioArea = new StorageArea(Paths.get(audioFilesDirectory), audioMaxBytes, ".wav", ".flac");
+        pdfArea = new StorageArea(Paths.get(pdfFilesDirectory), pdfMaxBytes, ".pdf", ".gz");
+        for (StorageArea area : List.of(audioArea, pdfArea)) {
+            Files.createDirectories(area.root);
+            area.rebuild();
+        }
+        pipelineMetrics.gauge("pdfaudio.storage.audio.bytes", "Bytes of stored audio files", audioArea::totalBytes);
+        pipelineMetrics.gauge("pdfaudio.storage.pdf.bytes", "Bytes of stored PDF files", pdfArea::totalBytes);
+
+        janitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-janitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        janitor.scheduleWithFixedDelay(this::sweep, janitorIntervalSeconds, janitorIntervalSeconds, TimeUnit.SECONDS);
+        requestSweep();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        janitor.shutdownNow();
+    }
+
+    /**
+     * Builds a name no other stored file has: the original base name, a timestamp for
+     * readability and a random suffix, so uploads of the same file in the same second
+     * get their own outputs.
+     */
     public String generateUniqueFileName(String originalFileName) {
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
         String baseName = originalFileName.replaceAll("\\.[^.]+$", ""); // Remove extension
-        return String.format("%s_%s", baseName, timestamp);
+        String suffix = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        return String.format("%s_%s_%s", baseName, timestamp, suffix);
     }
 
     public boolean fileExists(String filePath) {
@@ -29,21 +120,111 @@ public class FileStorageService {
     }
 
     public void ensureAudioDirectoryExists() throws IOException {
-        Path audioDir = Paths.get(audioFilesDirectory);
-        if (!Files.exists(audioDir)) {
-            Files.createDirectories(audioDir);
-        }
+        Files.createDirectories(audioArea.root);
     }
 
     public String getAudioFilesDirectory() {
         return audioFilesDirectory;
     }
 
+    /**
+     * Where the audio file of that name is stored, in its shard directory.
+     */
+    public Path audioPath(String fileName) throws IOException {
+        return audioArea.pathFor(fileName);
+    }
+
+    /**
+     * Finds a stored audio file by name and counts the lookup as an access.
+     *
+     * @return the file, or null if there is no such file
+     */
+    public Path resolveAudioFile(String fileName) {
+        return audioArea.resolve(fileName);
+    }
+
+    /**
+     * Finds a stored PDF by name and counts the lookup as an access.
+     *
+     * @return the file, or null if there is no such file
+     */
+    public Path resolvePdfFile(String fileName) {
+        return pdfArea.resolve(fileName);
+    }
+
+    /**
+     * Where a compressed file derived from a PDF, such as its extracted text, is stored. These
+     * files live with the PDFs and count toward their quota.
+     */
+    public Path documentPath(String fileName) throws IOException {
+        return pdfArea.pathFor(fileName);
+    }
+
+    /**
+     * Finds a stored file derived from a PDF by name and counts the lookup as an access.
+     *
+     * @return the file, or null if there is no such file
+     */
+    public Path resolveDocumentFile(String fileName) {
+        return pdfArea.resolve(fileName);
+    }
+
+    /**
+     * Returns an unused path next to {@code target} to write it under before
+     * {@link #commit} renames it into place. Left-over temporary files are removed at startup.
+     */
+    public Path newTempFile(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Atomically renames a completely written temporary file to {@code target} and adds it
+     * to the index.
+     */
+    public void commit(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        register(target);
+    }
+
+    /**
+     * Stores {@code source} as {@code target} as well, as a hard link where the file system
+     * allows it and as a copy otherwise; {@code source} can then be deleted independently.
+     */
+    public void link(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+            register(target);
+        } catch (UnsupportedOperationException | IOException e) {
+            Path temp = newTempFile(target);
+            Files.copy(source, temp);
+            commit(temp, target);
+        }
+    }
+
     public void deleteFile(String filePath) throws IOException {
         Path path = Paths.get(filePath);
-        if (Files.exists(path)) {
-            Files.delete(path);
+        areaOf(path).remove(path);
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Deletes a file unless it is pinned, e.g. by a batch that still has to archive it; a
+     * pinned file stays in the index and is evicted by quota once it is unpinned.
+     *
+     * @return whether the file was deleted
+     */
+    public boolean deleteUnlessPinned(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (pins.containsKey(key(path))) {
+            return false;
         }
+        deleteFile(filePath);
+        return true;
     }
 
     public long getFileSize(String filePath) throws IOException {
@@ -54,71 +235,287 @@ public class FileStorageService {
         return 0;
     }
 
-    public void cleanupOldFiles(int maxFiles) throws IOException {
-        File audioDir = new File(audioFilesDirectory);
-        if (!audioDir.exists()) {
-            return;
-        }
+    /**
+     * Marks a file as recently used so eviction keeps it around longer; the modification
+     * time carries the order over a restart.
+     */
+    public void touch(String filePath) {
+        Path path = Paths.get(filePath);
+        areaOf(path).access(path);
+        new File(filePath).setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Protects a file from eviction until it is unpinned as often as it was pinned. The file
+     * need not exist yet.
+     */
+    public void pin(String filePath) {
+        pins.merge(key(Paths.get(filePath)), 1, Integer::sum);
+    }
 
-        File[] files = audioDir.listFiles((dir, name) -> name.endsWith(".wav"));
-        if (files != null && files.length > maxFiles) {
-            // Sort files by last modified date (oldest first)
-            java.util.Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
-            
-            // Delete oldest files to keep only maxFiles
-            for (int i = 0; i < files.length - maxFiles; i++) {
-                FileUtils.deleteQuietly(files[i]);
+    public void unpin(String filePath) {
+        pins.computeIfPresent(key(Paths.get(filePath)), (path, count) -> count > 1 ? count - 1 : null);
+        requestSweep();
+    }
+
+    public String sha256Hex(String filePath) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
             }
         }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static MessageDigest newSha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
     }
 
     // PDF Storage Methods
     public void ensurePdfDirectoryExists() throws IOException {
-        Path pdfDir = Paths.get(pdfFilesDirectory);
-        if (!Files.exists(pdfDir)) {
-            Files.createDirectories(pdfDir);
-        }
+        Files.createDirectories(pdfArea.root);
     }
 
     public String getPdfFilesDirectory() {
         return pdfFilesDirectory;
     }
 
+    /**
+     * Saves an upload as {@code <uniqueFileName>.pdf}, whatever extension the client gave it,
+     * so the index picks it up again after a restart.
+     *
+     * @return the path of the saved file
+     */
     public String savePdfFile(MultipartFile file, String uniqueFileName) throws IOException {
-        ensurePdfDirectoryExists();
-        
-        String fileExtension = getFileExtension(file.getOriginalFilename());
-        String savedFileName = uniqueFileName + fileExtension;
-        String savedFilePath = pdfFilesDirectory + "/" + savedFileName;
-        
-        Path targetPath = Paths.get(savedFilePath);
-        Files.write(targetPath, file.getBytes());
-        
-        return savedFilePath;
-    }
-
-    public void cleanupOldPdfFiles(int maxFiles) throws IOException {
-        File pdfDir = new File(pdfFilesDirectory);
-        if (!pdfDir.exists()) {
-            return;
-        }
-
-        File[] files = pdfDir.listFiles((dir, name) -> name.endsWith(".pdf"));
-        if (files != null && files.length > maxFiles) {
-            // Sort files by last modified date (oldest first)
-            java.util.Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
-            
-            // Delete oldest files to keep only maxFiles
-            for (int i = 0; i < files.length - maxFiles; i++) {
-                FileUtils.deleteQuietly(files[i]);
+        return savePdfFile(file, uniqueFileName, null);
+    }
+
+    /**
+     * Same as {@link #savePdfFile(MultipartFile, String)}, feeding the bytes to {@code digest}
+     * as they are copied, so hashing the upload does not take a second read.
+     */
+    public String savePdfFile(MultipartFile file, String uniqueFileName, MessageDigest digest) throws IOException {
+        Path targetPath = pdfArea.pathFor(uniqueFileName + ".pdf");
+
+        // Stream the spooled multipart part to its final location instead of buffering it in memory
+        Path tempPath = newTempFile(targetPath).toAbsolutePath();
+        try {
+            if (digest == null) {
+                file.transferTo(tempPath);
+            } else {
+                try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                    Files.copy(in, tempPath, StandardCopyOption.REPLACE_EXISTING);
+                }
             }
+            commit(tempPath, targetPath);
+        } finally {
+            Files.deleteIfExists(tempPath);
         }
+        return targetPath.toString();
     }
 
-    private String getFileExtension(String fileName) {
-        if (fileName == null || fileName.lastIndexOf('.') == -1) {
-            return "";
+    /**
+     * Saves a PDF read from a stream, e.g. an entry of an uploaded ZIP archive.
+     *
+     * @return the path of the saved file
+     */
+    public String savePdfFile(InputStream in, String uniqueFileName) throws IOException {
+        Path targetPath = pdfArea.pathFor(uniqueFileName + ".pdf");
+        Path tempPath = newTempFile(targetPath);
+        try {
+            Files.copy(in, tempPath);
+            commit(tempPath, targetPath);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        return targetPath.toString();
+    }
+
+    private void register(Path path) throws IOException {
+        if (areaOf(path).add(path, Files.size(path))) {
+            requestSweep();
+        }
+    }
+
+    private StorageArea areaOf(Path path) {
+        return key(path).startsWith(pdfArea.root) ? pdfArea : audioArea;
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private void requestSweep() {
+        if (janitor != null && sweepPending.compareAndSet(false, true)) {
+            janitor.execute(this::sweep);
+        }
+    }
+
+    private void sweep() {
+        sweepPending.set(false);
+        long start = System.nanoTime();
+        try {
+            audioArea.evictOverQuota();
+            pdfArea.evictOverQuota();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Storage sweep failed: " + e.getMessage(), e);
+        }
+        pipelineMetrics.recordStage(PipelineMetrics.STAGE_CLEANUP, System.nanoTime() - start);
+    }
+
+    /**
+     * One storage directory with its access-ordered index and quota.
+     */
+    private final class StorageArea {
+
+        private final Path directory;
+        private final Path root;
+        private final long maxBytes;
+        private final String[] extensions;
+        // Keyed by file name; names are unique across shards
+        private final LinkedHashMap<String, StoredFile> index = new LinkedHashMap<>(256, 0.75f, true);
+        private long totalBytes;
+
+        StorageArea(Path directory, long maxBytes, String... extensions) {
+            this.directory = directory;
+            this.root = key(directory);
+            this.maxBytes = maxBytes;
+            this.extensions = extensions;
+        }
+
+        Path pathFor(String fileName) throws IOException {
+            int hash = fileName.hashCode();
+            hash ^= hash >>> 16;
+            Path shard = directory.resolve(String.format("%02x", hash & 0xff));
+            Files.createDirectories(shard);
+            return shard.resolve(fileName);
+        }
+
+        synchronized Path resolve(String fileName) {
+            StoredFile stored = index.get(fileName);
+            if (stored == null || !Files.isRegularFile(stored.path)) {
+                return null;
+            }
+            return stored.path;
+        }
+
+        /**
+         * @return whether the area is now over its quota
+         */
+        synchronized boolean add(Path path, long size) {
+            StoredFile previous = index.put(path.getFileName().toString(), new StoredFile(key(path), size));
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            totalBytes += size;
+            return totalBytes > maxBytes;
+        }
+
+        synchronized void remove(Path path) {
+            String name = path.getFileName().toString();
+            StoredFile stored = index.get(name);
+            if (stored != null && stored.path.equals(key(path))) {
+                index.remove(name);
+                totalBytes -= stored.size;
+            }
+        }
+
+        synchronized void access(Path path) {
+            index.get(path.getFileName().toString());
+        }
+
+        synchronized long totalBytes() {
+            return totalBytes;
+        }
+
+        void evictOverQuota() {
+            List<StoredFile> victims = new ArrayList<>();
+            synchronized (this) {
+                Iterator<StoredFile> eldestFirst = index.values().iterator();
+                while (totalBytes > maxBytes && eldestFirst.hasNext()) {
+                    StoredFile eldest = eldestFirst.next();
+                    if (pins.containsKey(eldest.path)) {
+                        continue;
+                    }
+                    eldestFirst.remove();
+                    totalBytes -= eldest.size;
+                    victims.add(eldest);
+                }
+            }
+            for (StoredFile victim : victims) {
+                try {
+                    Files.deleteIfExists(victim.path);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to evict " + victim.path + ": " + e.getMessage());
+                }
+            }
+            if (!victims.isEmpty()) {
+                logger.info("Evicted " + victims.size() + " files from " + root.getFileName());
+            }
+        }
+
+        /**
+         * Indexes what is on disk, oldest modification first, and removes temporary files
+         * left behind by an earlier run.
+         */
+        void rebuild() throws IOException {
+            List<StoredFile> found = new ArrayList<>();
+            Map<StoredFile, Long> modified = new LinkedHashMap<>();
+            try (Stream<Path> files = Files.walk(root, 2)) {
+                for (Path path : (Iterable<Path>) files::iterator) {
+                    String name = path.getFileName().toString();
+                    if (name.startsWith(".") && name.endsWith(TEMP_SUFFIX)) {
+                        Files.deleteIfExists(path);
+                        continue;
+                    }
+                    if (!hasExtension(name)) {
+                        continue;
+                    }
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        StoredFile stored = new StoredFile(key(path), attributes.size());
+                        found.add(stored);
+                        modified.put(stored, attributes.lastModifiedTime().toMillis());
+                    }
+                }
+            }
+            found.sort(Comparator.comparing(modified::get));
+            synchronized (this) {
+                index.clear();
+                totalBytes = 0;
+                for (StoredFile stored : found) {
+                    index.put(stored.path.getFileName().toString(), stored);
+                    totalBytes += stored.size;
+                }
+            }
+            logger.info("Indexed " + found.size() + " files (" + totalBytes + " bytes) in " + root.getFileName());
+        }
+
+        private boolean hasExtension(String name) {
+            String lowerCase = name.toLowerCase(Locale.ROOT);
+            for (String extension : extensions) {
+                if (lowerCase.endsWith(extension)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class StoredFile {
+        final Path path;
+        final long size;
+
+        StoredFile(Path path, long size) {
+            this.path = path;
+            this.size = size;
         }
-        return fileName.substring(fileName.lastIndexOf('.'));
     }
 }
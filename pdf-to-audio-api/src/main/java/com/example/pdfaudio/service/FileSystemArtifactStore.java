@@ -0,0 +1,129 @@
+package com.example.pdfaudio.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Artifact store in a directory every node mounts, e.g. an NFS or SMB share or a volume
+ * shared by the containers of one host ({@code artifacts.directory}). Artifacts are copied
+ * to a temporary name in the same directory and renamed into place. Artifacts older than
+ * {@code artifacts.retention.hours} are deleted by every node in the background; API nodes
+ * keep a local copy of the audio they have served.
+ */
+@Service
+@ConditionalOnProperty(name = "artifacts.store", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemArtifactStore implements ArtifactStore {
+
+    private static final Logger logger = Logger.getLogger(FileSystemArtifactStore.class.getName());
+
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*(/[A-Za-z0-9_-][A-Za-z0-9._-]*)*");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    @Value("${artifacts.directory:shared-artifacts}")
+    private String directory;
+
+    @Value("${artifacts.retention.hours:24}")
+    private long retentionHours;
+
+    private Path root;
+    private ScheduledExecutorService janitor;
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(directory).toAbsolutePath();
+        janitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "artifact-janitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        janitor.scheduleWithFixedDelay(this::deleteExpired, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        janitor.shutdownNow();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = pathOf(key);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            Files.copy(source, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return Files.newInputStream(pathOf(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathOf(key));
+    }
+
+    private Path pathOf(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid artifact key: " + key);
+        }
+        return root.resolve(key);
+    }
+
+    /**
+     * Deletes artifacts, and temporary files left by writers that died, past the retention.
+     */
+    private void deleteExpired() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(Duration.ofHours(retentionHours));
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    // Deleted by another node in the meantime
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Error deleting expired artifacts: " + e.getMessage(), e);
+        }
+    }
+}
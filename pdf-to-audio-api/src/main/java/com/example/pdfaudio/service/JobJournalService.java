@@ -0,0 +1,250 @@
+package com.example.pdfaudio.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-ahead journal of conversion jobs on local disk, so a job whose synthesis failed
+ * or whose JVM went down resumes after the last stage that finished instead of parsing
+ * and summarizing the PDF again.
+ * <p>
+ * Each job gets a directory holding {@code job.json} and the output of every finished
+ * stage: the extracted text, then the summary, and the synthesized sentence chunks. Each
+ * file is written under a temporary name, forced to disk and renamed into place before
+ * {@code job.json} records the stage, so a crash leaves either the previous stage or the
+ * complete new one. The directory is deleted once the job has completed.
+ */
+@Service
+public class JobJournalService {
+
+    private static final Logger logger = Logger.getLogger(JobJournalService.class.getName());
+
+    private static final String ENTRY_FILE = "job.json";
+    private static final String TEXT_FILE = "text.txt";
+    private static final String SUMMARY_FILE = "summary.txt";
+    private static final String CHUNK_DIRECTORY = "chunks";
+
+    /**
+     * Last stage whose output is in the journal.
+     */
+    public enum Stage {
+        SAVED, EXTRACTED, SUMMARIZED
+    }
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${journal.directory:journal}")
+    private String journalDirectory;
+
+    @Value("${journal.max.age.hours:24}")
+    private long maxAgeHours;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts the journal of a job whose PDF has been saved. The PDF stays pinned in storage
+     * until the journal is closed.
+     *
+     * @param cacheKey the job's result cache key, or {@code null} if the cache is off
+     */
+    public JournalEntry open(ConversionJob job, String cacheKey) throws IOException {
+        JournalEntry entry = new JournalEntry();
+        entry.jobId = job.getJobId();
+        entry.originalFileName = job.getOriginalFileName();
+        entry.uniqueFileName = job.getUniqueFileName();
+        entry.voiceType = job.getVoiceType();
+        entry.summarizer = job.getSummarizer();
+        entry.savedPdfPath = job.getSavedPdfPath();
+        entry.documentId = job.getDocumentId();
+        entry.cacheKey = cacheKey;
+        entry.createdAt = Instant.now().toString();
+        entry.stage = Stage.SAVED;
+
+        Files.createDirectories(directory(entry));
+        write(entry);
+        fileStorageService.pin(entry.savedPdfPath);
+        return entry;
+    }
+
+    /**
+     * Temporary file the extraction stage spools the text to.
+     */
+    public Path newTextFile(JournalEntry entry) {
+        return directory(entry).resolve("." + TEXT_FILE + ".tmp");
+    }
+
+    public Path textFile(JournalEntry entry) {
+        return directory(entry).resolve(TEXT_FILE);
+    }
+
+    /**
+     * Where the sentence chunks of the job's audio are kept until it has completed.
+     */
+    public Path chunkDirectory(JournalEntry entry) throws IOException {
+        return Files.createDirectories(directory(entry).resolve(CHUNK_DIRECTORY));
+    }
+
+    /**
+     * Moves the spooled text into the journal and records the extraction.
+     */
+    public void recordExtracted(JournalEntry entry, Path spooledText, long extractedTextLength) throws IOException {
+        force(spooledText);
+        Files.move(spooledText, textFile(entry), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        entry.extractedTextLength = extractedTextLength;
+        entry.stage = Stage.EXTRACTED;
+        write(entry);
+    }
+
+    /**
+     * Records the summary; the extracted text is not needed after that.
+     */
+    public void recordSummary(JournalEntry entry, String summary) throws IOException {
+        Path summaryFile = directory(entry).resolve(SUMMARY_FILE);
+        Path temp = directory(entry).resolve("." + SUMMARY_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(summary);
+        }
+        force(temp);
+        Files.move(temp, summaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        entry.stage = Stage.SUMMARIZED;
+        write(entry);
+        Files.deleteIfExists(textFile(entry));
+    }
+
+    public String readSummary(JournalEntry entry) throws IOException {
+        return Files.readString(directory(entry).resolve(SUMMARY_FILE), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Notes that the job failed, so recovery after a restart leaves it for an explicit retry.
+     */
+    public void recordFailure(JournalEntry entry, String error) {
+        entry.error = error;
+        try {
+            write(entry);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to journal failure of job " + entry.jobId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Clears a recorded failure before the job is run again.
+     */
+    public void recordRetry(JournalEntry entry) throws IOException {
+        entry.error = null;
+        write(entry);
+    }
+
+    /**
+     * Deletes the job's journal once it has completed or will never be retried.
+     */
+    public void close(JournalEntry entry) {
+        fileStorageService.unpin(entry.savedPdfPath);
+        FileUtils.deleteQuietly(directory(entry).toFile());
+    }
+
+    /**
+     * Reads the journals left behind by a previous run, oldest first, and pins their PDFs
+     * again. Journals that are unreadable, older than {@code journal.max.age.hours} or
+     * whose PDF was evicted before the text was extracted are deleted.
+     */
+    public List<JournalEntry> recover() {
+        List<JournalEntry> entries = new ArrayList<>();
+        Path root = Paths.get(journalDirectory);
+        if (!enabled || !Files.isDirectory(root)) {
+            return entries;
+        }
+        Instant cutoff = Instant.now().minus(Duration.ofHours(maxAgeHours));
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path directory : directories) {
+                JournalEntry entry = read(directory);
+                if (entry == null || Instant.parse(entry.createdAt).isBefore(cutoff)
+                        || (entry.stage == Stage.SAVED && !fileStorageService.fileExists(entry.savedPdfPath))) {
+                    FileUtils.deleteQuietly(directory.toFile());
+                    continue;
+                }
+                fileStorageService.pin(entry.savedPdfPath);
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read job journal " + journalDirectory + ": " + e.getMessage());
+        }
+        entries.sort(Comparator.comparing(entry -> entry.createdAt));
+        return entries;
+    }
+
+    private JournalEntry read(Path directory) {
+        try {
+            JournalEntry entry = objectMapper.readValue(directory.resolve(ENTRY_FILE).toFile(), JournalEntry.class);
+            return directory.getFileName().toString().equals(entry.jobId) ? entry : null;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Discarding unreadable job journal " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized void write(JournalEntry entry) throws IOException {
+        Path temp = directory(entry).resolve("." + ENTRY_FILE + ".tmp");
+        objectMapper.writeValue(temp.toFile(), entry);
+        force(temp);
+        Files.move(temp, directory(entry).resolve(ENTRY_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path directory(JournalEntry entry) {
+        return Paths.get(journalDirectory, entry.jobId);
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Persisted state of one journaled job.
+     */
+    public static class JournalEntry {
+        public String jobId;
+        public String originalFileName;
+        public String uniqueFileName;
+        public String voiceType;
+        public TextSummarizationService.Engine summarizer;
+        public String savedPdfPath;
+        public String documentId;
+        public String cacheKey;
+        public String createdAt;
+        public Stage stage;
+        public long extractedTextLength;
+        public String error;
+    }
+}
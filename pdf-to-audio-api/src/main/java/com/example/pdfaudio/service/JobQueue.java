@@ -0,0 +1,64 @@
+package com.example.pdfaudio.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Conversions waiting for a worker, shared by the API nodes that enqueue them and the
+ * worker nodes that run them. Selected with {@code jobs.queue.type}: {@code embedded}
+ * keeps the queue in memory for a single node, {@code database} keeps it in a database
+ * all nodes open; with {@code none} (the default) there is no queue and every node
+ * converts its own uploads.
+ * <p>
+ * A worker claims a job under a lease of {@code jobs.queue.lease.seconds} and renews it
+ * while the job runs. A job whose lease expires, because its worker died or hung, is
+ * claimed again by the next worker, and a job is failed for good once it has been
+ * claimed {@code jobs.queue.max.attempts} times.
+ */
+public interface JobQueue {
+
+    void enqueue(QueuedJob job) throws IOException;
+
+    /**
+     * Claims the oldest job that is waiting or whose lease has expired, waiting up to
+     * {@code timeoutMillis} for one to arrive.
+     *
+     * @return the claimed job, or {@code null} if there was none in time
+     */
+    QueuedJob claim(String workerId, long timeoutMillis) throws IOException, InterruptedException;
+
+    /**
+     * Extends the lease of a running job and records the stage it has reached.
+     *
+     * @return whether {@code workerId} still holds the job; if not, its lease expired and
+     * the result of this worker will not be accepted
+     */
+    boolean renew(String jobId, String workerId, String stage) throws IOException;
+
+    /**
+     * @return whether the result was accepted, i.e. {@code workerId} still held the job
+     */
+    boolean complete(String jobId, String workerId, Map<String, Object> result) throws IOException;
+
+    /**
+     * Puts a job that failed back in the queue, or fails it for good once it has used up
+     * its attempts.
+     */
+    void fail(String jobId, String workerId, String error) throws IOException;
+
+    /**
+     * Puts a job back in the queue without counting the claim as an attempt, e.g. when the
+     * worker has no capacity for it after all.
+     */
+    void release(String jobId, String workerId) throws IOException;
+
+    /**
+     * @return the job, or {@code null} if it is unknown or expired
+     */
+    QueuedJob get(String jobId) throws IOException;
+
+    /**
+     * Jobs waiting for a worker.
+     */
+    int depth();
+}
@@ -0,0 +1,268 @@
+package com.example.pdfaudio.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text narration of one PDF, split into chapters that are narrated to separate audio
+ * files. Chapters finish roughly in order, so clients can play the first ones while the
+ * rest are still being produced.
+ */
+public class Narration {
+
+    public enum Status {
+        QUEUED, PLANNING, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String narrationId;
+    private final String originalFileName;
+    private final String uniqueFileName;
+    private final String voiceType;
+    private final String savedPdfPath;
+    private final Instant createdAt = Instant.now();
+    private final List<Chapter> chapters = new ArrayList<>();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    public Narration(String narrationId, String originalFileName, String uniqueFileName, String voiceType,
+                     String savedPdfPath) {
+        this.narrationId = narrationId;
+        this.originalFileName = originalFileName;
+        this.uniqueFileName = uniqueFileName;
+        this.voiceType = voiceType;
+        this.savedPdfPath = savedPdfPath;
+    }
+
+    public String getNarrationId() {
+        return narrationId;
+    }
+
+    String getUniqueFileName() {
+        return uniqueFileName;
+    }
+
+    public String getVoiceType() {
+        return voiceType;
+    }
+
+    String getSavedPdfPath() {
+        return savedPdfPath;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public synchronized List<Chapter> getChapters() {
+        return Collections.unmodifiableList(new ArrayList<>(chapters));
+    }
+
+    /**
+     * The chapter with the given 1-based index, or null.
+     */
+    public synchronized Chapter getChapter(int index) {
+        return index >= 1 && index <= chapters.size() ? chapters.get(index - 1) : null;
+    }
+
+    synchronized void setChapters(List<PdfChapter> planned) {
+        for (PdfChapter chapter : planned) {
+            chapters.add(new Chapter(chapters.size() + 1, chapter));
+        }
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    void complete() {
+        this.status = Status.COMPLETED;
+        this.finishedAt = Instant.now();
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.status = Status.FAILED;
+        this.finishedAt = Instant.now();
+    }
+
+    public Map<String, Object> toManifest() {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("narrationId", narrationId);
+        manifest.put("status", status.name());
+        manifest.put("originalFileName", originalFileName);
+        manifest.put("voiceType", voiceType);
+        manifest.put("createdAt", createdAt.toString());
+        if (finishedAt != null) {
+            manifest.put("finishedAt", finishedAt.toString());
+        }
+        if (error != null) {
+            manifest.put("error", error);
+        }
+
+        List<Chapter> current = getChapters();
+        int completed = 0;
+        List<Map<String, Object>> entries = new ArrayList<>(current.size());
+        for (Chapter chapter : current) {
+            if (chapter.getStatus() == Chapter.Status.COMPLETED) {
+                completed++;
+            }
+            entries.add(chapter.toManifestEntry(narrationId));
+        }
+        if (!current.isEmpty()) {
+            manifest.put("chapterSource", current.get(0).source.isFromOutline() ? "outline" : "pages");
+        }
+        manifest.put("chapterCount", current.size());
+        manifest.put("completed", completed);
+        manifest.put("playlistUrl", "/api/pdf-to-audio/narrations/" + narrationId + "/playlist.m3u");
+        manifest.put("chapters", entries);
+        return manifest;
+    }
+
+    /**
+     * An extended M3U playlist of the chapters finished so far without a gap, so a player
+     * can start on the first chapters and reload the playlist for more. Empty and failed
+     * chapters are left out.
+     */
+    public String toPlaylist() {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n");
+        for (Chapter chapter : getChapters()) {
+            Chapter.Status chapterStatus = chapter.getStatus();
+            if (chapterStatus == Chapter.Status.COMPLETED) {
+                playlist.append("#EXTINF:-1,").append(chapter.getTitle().replaceAll("[\\r\\n]+", " ")).append('\n')
+                        .append("/api/pdf-to-audio/download/").append(chapter.getAudioFileName()).append('\n');
+            } else if (chapterStatus != Chapter.Status.EMPTY && chapterStatus != Chapter.Status.FAILED) {
+                break;
+            }
+        }
+        return playlist.toString();
+    }
+
+    /**
+     * One chapter of a narration and its audio once synthesized.
+     */
+    public static class Chapter {
+
+        public enum Status {
+            QUEUED, EXTRACTING, SYNTHESIZING, COMPLETED, EMPTY, FAILED
+        }
+
+        private final int index;
+        private final PdfChapter source;
+        private final SynthesisProgress synthesis = new SynthesisProgress();
+
+        private volatile Status status = Status.QUEUED;
+        private volatile String text;
+        private volatile long textLength;
+        private volatile String audioFilePath;
+        private volatile String audioFileName;
+        private volatile long audioFileSize;
+        private volatile String error;
+
+        Chapter(int index, PdfChapter source) {
+            this.index = index;
+            this.source = source;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getTitle() {
+            return source.getTitle();
+        }
+
+        PdfChapter getSource() {
+            return source;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Chunk-by-chunk progress of the chapter's audio, for streaming it while it is
+         * synthesized.
+         */
+        public SynthesisProgress getSynthesis() {
+            return synthesis;
+        }
+
+        public String getAudioFileName() {
+            return audioFileName;
+        }
+
+        String getAudioFilePath() {
+            return audioFilePath;
+        }
+
+        public boolean isFinished() {
+            return status == Status.COMPLETED || status == Status.EMPTY || status == Status.FAILED;
+        }
+
+        void setStatus(Status status) {
+            this.status = status;
+        }
+
+        /**
+         * Holds the extracted text until the chapter is synthesized.
+         */
+        void setText(String text) {
+            this.text = text;
+            this.textLength = text.length();
+        }
+
+        String takeText() {
+            String extracted = text;
+            text = null;
+            return extracted;
+        }
+
+        void complete(String audioFilePath, String audioFileName, long audioFileSize) {
+            this.audioFilePath = audioFilePath;
+            this.audioFileName = audioFileName;
+            this.audioFileSize = audioFileSize;
+            this.status = Status.COMPLETED;
+        }
+
+        void fail(String error) {
+            this.error = error;
+            this.status = Status.FAILED;
+        }
+
+        Map<String, Object> toManifestEntry(String narrationId) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("index", index);
+            entry.put("title", source.getTitle());
+            entry.put("startPage", source.getStartPage());
+            entry.put("endPage", source.getEndPage());
+            entry.put("status", status.name());
+            if (textLength > 0) {
+                entry.put("textLength", textLength);
+            }
+            entry.put("chapterUrl", "/api/pdf-to-audio/narrations/" + narrationId + "/chapters/" + index);
+            if (status == Status.COMPLETED) {
+                entry.put("audioFileName", audioFileName);
+                entry.put("audioFileSize", audioFileSize);
+                entry.put("downloadUrl", "/api/pdf-to-audio/download/" + audioFileName);
+            }
+            if (error != null) {
+                entry.put("error", error);
+            }
+            return entry;
+        }
+    }
+}
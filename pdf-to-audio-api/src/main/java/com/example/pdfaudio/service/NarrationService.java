@@ -0,0 +1,243 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Narrates the full text of a PDF instead of its summary. The document is split into
+ * chapters by its outline (or into page ranges), and a narration thread feeds the
+ * chapters in order through the regular stage pools, a few at a time: each chapter's
+ * pages are extracted on the CPU pool and synthesized on the TTS pool into an audio file
+ * of its own. Chapter 1 is started first and so finishes first, while later chapters are
+ * still being produced.
+ * <p>
+ * A narration takes one admission slot for its whole run; its PDF and chapter audio are
+ * pinned in storage until the narration is purged.
+ */
+@Service
+public class NarrationService {
+
+    private static final Logger logger = Logger.getLogger(NarrationService.class.getName());
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private PdfTextExtractionService pdfTextExtractionService;
+
+    @Autowired
+    private PdfPreflightService pdfPreflightService;
+
+    @Autowired
+    private TextToSpeechService textToSpeechService;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    @Qualifier("cpuStageExecutor")
+    private TaskExecutor cpuStageExecutor;
+
+    @Autowired
+    @Qualifier("ttsStageExecutor")
+    private TaskExecutor ttsStageExecutor;
+
+    @Autowired
+    @Qualifier("narrationExecutor")
+    private TaskExecutor narrationExecutor;
+
+    @Value("${narration.chapter.pages:10}")
+    private int pagesPerChapter;
+
+    @Value("${narration.chapter.max.pages:50}")
+    private int maxChapterPages;
+
+    @Value("${narration.max.parallel.chapters:3}")
+    private int maxParallelChapters;
+
+    @Value("${pipeline.job.retention.minutes:60}")
+    private long narrationRetentionMinutes;
+
+    private final Map<String, Narration> narrations = new ConcurrentHashMap<>();
+
+    /**
+     * Saves the PDF and queues its narration.
+     *
+     * @throws AdmissionRejectedException if the server is already running as many
+     *                                    conversions as it admits
+     * @throws TaskRejectedException      if too many narrations are already queued
+     * @throws PdfRejectedException       if the PDF cannot be converted
+     */
+    public Narration submit(MultipartFile file, String voiceType) throws IOException {
+        purgeExpiredNarrations();
+
+        admissionControlService.admit();
+        boolean queued = false;
+        try {
+            String uniqueFileName = fileStorageService.generateUniqueFileName(file.getOriginalFilename());
+            long saveStart = System.nanoTime();
+            String savedPdfPath = fileStorageService.savePdfFile(file, uniqueFileName);
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_SAVE, System.nanoTime() - saveStart);
+            pipelineMetrics.bytesReceived(file.getSize());
+            try {
+                pdfPreflightService.check(savedPdfPath);
+            } catch (PdfRejectedException e) {
+                fileStorageService.deleteFile(savedPdfPath);
+                throw e;
+            }
+            fileStorageService.pin(savedPdfPath);
+
+            Narration narration = new Narration(UUID.randomUUID().toString(), file.getOriginalFilename(),
+                    uniqueFileName, voiceType, savedPdfPath);
+            narrations.put(narration.getNarrationId(), narration);
+            try {
+                narrationExecutor.execute(() -> run(narration));
+            } catch (TaskRejectedException e) {
+                narrations.remove(narration.getNarrationId());
+                fileStorageService.unpin(savedPdfPath);
+                throw e;
+            }
+            queued = true;
+            logger.info("Queued narration " + narration.getNarrationId() + " of " + file.getOriginalFilename());
+            return narration;
+        } finally {
+            if (!queued) {
+                admissionControlService.release();
+            }
+        }
+    }
+
+    public Narration getNarration(String narrationId) {
+        return narrations.get(narrationId);
+    }
+
+    private void run(Narration narration) {
+        try {
+            narration.setStatus(Narration.Status.PLANNING);
+            List<PdfChapter> chapters = pdfTextExtractionService.findChapters(narration.getSavedPdfPath(),
+                    pagesPerChapter, maxChapterPages);
+            narration.setChapters(chapters);
+            narration.setStatus(Narration.Status.RUNNING);
+            logger.info("Narrating " + chapters.size() + " chapters of " + narration.getNarrationId());
+
+            int parallel = Math.max(1, maxParallelChapters);
+            Semaphore slots = new Semaphore(parallel);
+            for (Narration.Chapter chapter : narration.getChapters()) {
+                slots.acquire();
+                try {
+                    CompletableFuture
+                            .runAsync(() -> extractChapter(narration, chapter), cpuStageExecutor)
+                            .thenRunAsync(() -> synthesizeChapter(narration, chapter), ttsStageExecutor)
+                            .whenComplete((result, throwable) -> {
+                                if (throwable != null) {
+                                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                                            ? throwable.getCause() : throwable;
+                                    logger.log(Level.WARNING, "Chapter " + chapter.getIndex() + " of narration "
+                                            + narration.getNarrationId() + " failed: " + cause.getMessage());
+                                    chapter.fail(cause.getMessage());
+                                    chapter.getSynthesis().fail(cause);
+                                }
+                                slots.release();
+                            });
+                } catch (TaskRejectedException e) {
+                    chapter.fail("Server is busy");
+                    chapter.getSynthesis().fail(e);
+                    slots.release();
+                }
+            }
+            slots.acquire(parallel);
+            narration.complete();
+            logger.info("Finished narration " + narration.getNarrationId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            narration.fail("Narration was interrupted");
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Narration " + narration.getNarrationId() + " failed: " + e.getMessage());
+            narration.fail(e.getMessage());
+        } finally {
+            fileStorageService.unpin(narration.getSavedPdfPath());
+            admissionControlService.release();
+        }
+    }
+
+    private void extractChapter(Narration narration, Narration.Chapter chapter) {
+        chapter.setStatus(Narration.Chapter.Status.EXTRACTING);
+        PdfChapter source = chapter.getSource();
+        try {
+            String text = pdfTextExtractionService.extractPages(narration.getSavedPdfPath(),
+                    source.getStartPage(), source.getEndPage());
+            chapter.setText(normalize(text));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void synthesizeChapter(Narration narration, Narration.Chapter chapter) {
+        String text = chapter.takeText();
+        if (text.isEmpty()) {
+            // Scanned pages or blank separators; nothing to say
+            chapter.setStatus(Narration.Chapter.Status.EMPTY);
+            chapter.getSynthesis().fail(new IllegalStateException("Chapter " + chapter.getIndex() + " has no text"));
+            return;
+        }
+        chapter.setStatus(Narration.Chapter.Status.SYNTHESIZING);
+        String fileName = String.format("%s_ch%03d", narration.getUniqueFileName(), chapter.getIndex());
+        try {
+            String audioFilePath = textToSpeechService.convertTextToAudio(text, fileName, narration.getVoiceType(),
+                    chapter.getSynthesis());
+            fileStorageService.pin(audioFilePath);
+            chapter.complete(audioFilePath, Paths.get(audioFilePath).getFileName().toString(),
+                    fileStorageService.getFileSize(audioFilePath));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Joins words hyphenated across line breaks and folds the stripper's layout
+     * whitespace, which would otherwise be read out as pauses.
+     */
+    private static String normalize(String text) {
+        return text.replaceAll("(\\p{L})-\\r?\\n(\\p{Ll})", "$1$2")
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+    private void purgeExpiredNarrations() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(narrationRetentionMinutes));
+        narrations.values().removeIf(narration -> {
+            if (narration.isFinished() && narration.getFinishedAt().isBefore(cutoff)) {
+                for (Narration.Chapter chapter : narration.getChapters()) {
+                    if (chapter.getAudioFilePath() != null) {
+                        fileStorageService.unpin(chapter.getAudioFilePath());
+                    }
+                }
+                return true;
+            }
+            return false;
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.pdfaudio.service;
+
+/**
+ * A run of pages narrated as one audio file, taken from the PDF outline or, for
+ * documents without one, a fixed-size page range.
+ */
+public class PdfChapter {
+
+    private final String title;
+    private final int startPage;
+    private final int endPage;
+    private final boolean fromOutline;
+
+    public PdfChapter(String title, int startPage, int endPage, boolean fromOutline) {
+        this.title = title;
+        this.startPage = startPage;
+        this.endPage = endPage;
+        this.fromOutline = fromOutline;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * First page, counted from 1.
+     */
+    public int getStartPage() {
+        return startPage;
+    }
+
+    /**
+     * Last page, inclusive.
+     */
+    public int getEndPage() {
+        return endPage;
+    }
+
+    public boolean isFromOutline() {
+        return fromOutline;
+    }
+}
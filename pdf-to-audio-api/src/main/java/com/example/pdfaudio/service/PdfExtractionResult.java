@@ -0,0 +1,72 @@
+package com.example.pdfaudio.service;
+
+/**
+ * Extracted text of a PDF together with how long each page took to strip.
+ */
+public class PdfExtractionResult {
+
+    private final String text;
+    private final long textLength;
+    private final long[] pageTimingsNanos;
+    private final int segmentCount;
+    private final long elapsedNanos;
+
+    public PdfExtractionResult(String text, long textLength, long[] pageTimingsNanos, int segmentCount,
+                               long elapsedNanos) {
+        this.text = text;
+        this.textLength = textLength;
+        this.pageTimingsNanos = pageTimingsNanos;
+        this.segmentCount = segmentCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * A copy of this result carrying the extracted text.
+     */
+    public PdfExtractionResult withText(String text) {
+        return new PdfExtractionResult(text, text.length(), pageTimingsNanos, segmentCount, elapsedNanos);
+    }
+
+    /**
+     * The extracted text, or null when it was written to a stream instead.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public long getTextLength() {
+        return textLength;
+    }
+
+    public int getPageCount() {
+        return pageTimingsNanos.length;
+    }
+
+    /**
+     * Strip time per page, index 0 is page 1.
+     */
+    public long[] getPageTimingsNanos() {
+        return pageTimingsNanos;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * 1-based number of the page that took longest to strip, or 0 for an empty document.
+     */
+    public int getSlowestPage() {
+        int slowest = -1;
+        for (int i = 0; i < pageTimingsNanos.length; i++) {
+            if (slowest < 0 || pageTimingsNanos[i] > pageTimingsNanos[slowest]) {
+                slowest = i;
+            }
+        }
+        return slowest + 1;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.pdfaudio.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What the pre-flight check found out about a PDF from its trailer, page tree and a few
+ * sampled pages, and whether the document can be converted.
+ */
+public class PdfInspection {
+
+    /**
+     * Outcome of the check; everything but {@code ACCEPTED} rejects the upload.
+     */
+    public enum Verdict {
+        ACCEPTED, UNREADABLE, ENCRYPTED, EMPTY, TOO_MANY_PAGES, NO_TEXT_LAYER
+    }
+
+    private final Verdict verdict;
+    private final int pageCount;
+    private final boolean encrypted;
+    private final int sampledPages;
+    private final int pagesWithText;
+    private final int imageOnlyPages;
+    private final int fontCount;
+    private final long elapsedNanos;
+
+    public PdfInspection(Verdict verdict, int pageCount, boolean encrypted, int sampledPages, int pagesWithText,
+                         int imageOnlyPages, int fontCount, long elapsedNanos) {
+        this.verdict = verdict;
+        this.pageCount = pageCount;
+        this.encrypted = encrypted;
+        this.sampledPages = sampledPages;
+        this.pagesWithText = pagesWithText;
+        this.imageOnlyPages = imageOnlyPages;
+        this.fontCount = fontCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    public boolean isAccepted() {
+        return verdict == Verdict.ACCEPTED;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    public int getSampledPages() {
+        return sampledPages;
+    }
+
+    public int getPagesWithText() {
+        return pagesWithText;
+    }
+
+    /**
+     * Sampled pages that draw images but no text, which is what scanned pages look like.
+     */
+    public int getImageOnlyPages() {
+        return imageOnlyPages;
+    }
+
+    /**
+     * Distinct fonts referenced by the sampled pages.
+     */
+    public int getFontCount() {
+        return fontCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("verdict", verdict.name());
+        map.put("pageCount", pageCount);
+        map.put("encrypted", encrypted);
+        map.put("sampledPages", sampledPages);
+        map.put("pagesWithText", pagesWithText);
+        map.put("imageOnlyPages", imageOnlyPages);
+        map.put("fontCount", fontCount);
+        map.put("elapsedMillis", getElapsedMillis());
+        return map;
+    }
+}
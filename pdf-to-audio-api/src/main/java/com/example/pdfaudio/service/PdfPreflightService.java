@@ -0,0 +1,181 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * Cheap check of a saved PDF before the pipeline runs, so that scanned, password
+ * protected or oversized documents are refused within milliseconds of the upload instead
+ * of after the whole document has been loaded and stripped.
+ * <p>
+ * Only the trailer, the page tree and {@code preflight.sample.pages} pages spread over
+ * the document are read. Sampling stops at the first page with enough text, so a normal
+ * document costs one page; a document is only taken for scanned once every sampled page
+ * came up empty.
+ */
+@Service
+public class PdfPreflightService {
+
+    private static final Logger logger = Logger.getLogger(PdfPreflightService.class.getName());
+
+    @Value("${preflight.enabled:true}")
+    private boolean enabled;
+
+    @Value("${preflight.max.pages:2000}")
+    private int maxPages;
+
+    @Value("${preflight.sample.pages:8}")
+    private int samplePages;
+
+    @Value("${preflight.min.text.chars:20}")
+    private int minTextChars;
+
+    @Autowired
+    private PdfTextExtractionService pdfTextExtractionService;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    /**
+     * Inspects a saved PDF and throws if it cannot be converted.
+     *
+     * @throws PdfRejectedException if the document is rejected
+     */
+    public PdfInspection check(String pdfFilePath) {
+        if (!enabled) {
+            return null;
+        }
+        PdfInspection inspection = inspect(pdfFilePath);
+        logger.info("Pre-flight of " + pdfFilePath + ": " + inspection.getVerdict() + ", "
+                + inspection.getPageCount() + " pages, " + inspection.getSampledPages() + " sampled in "
+                + inspection.getElapsedMillis() + " ms");
+        if (!inspection.isAccepted()) {
+            pipelineMetrics.preflightRejected(inspection.getVerdict().name());
+            throw new PdfRejectedException(rejectionMessage(inspection), inspection);
+        }
+        return inspection;
+    }
+
+    public PdfInspection inspect(String pdfFilePath) {
+        long startNanos = System.nanoTime();
+        try (PDDocument document = pdfTextExtractionService.loadDocument(new File(pdfFilePath))) {
+            int pageCount = document.getNumberOfPages();
+            boolean encrypted = document.isEncrypted();
+            if (encrypted && !document.getCurrentAccessPermission().canExtractContent()) {
+                return finish(PdfInspection.Verdict.ENCRYPTED, pageCount, true, 0, 0, 0, 0, startNanos);
+            }
+            if (pageCount == 0) {
+                return finish(PdfInspection.Verdict.EMPTY, 0, encrypted, 0, 0, 0, 0, startNanos);
+            }
+            if (pageCount > maxPages) {
+                return finish(PdfInspection.Verdict.TOO_MANY_PAGES, pageCount, encrypted, 0, 0, 0, 0, startNanos);
+            }
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            Set<COSName> fonts = new HashSet<>();
+            int sampled = 0;
+            int pagesWithText = 0;
+            int imageOnlyPages = 0;
+            for (int pageIndex : samplePageIndexes(pageCount)) {
+                PDPage page = document.getPage(pageIndex);
+                PDResources resources = page.getResources();
+                boolean hasImages = false;
+                if (resources != null) {
+                    resources.getFontNames().forEach(fonts::add);
+                    for (COSName name : resources.getXObjectNames()) {
+                        hasImages |= resources.isImageXObject(name);
+                    }
+                }
+
+                stripper.setStartPage(pageIndex + 1);
+                stripper.setEndPage(pageIndex + 1);
+                int textChars = countVisibleChars(stripper.getText(document));
+                sampled++;
+                if (textChars > 0) {
+                    pagesWithText++;
+                } else if (hasImages) {
+                    imageOnlyPages++;
+                }
+                if (textChars >= minTextChars) {
+                    return finish(PdfInspection.Verdict.ACCEPTED, pageCount, encrypted, sampled, pagesWithText,
+                            imageOnlyPages, fonts.size(), startNanos);
+                }
+            }
+            // Some text but never a full page of it is still worth a try
+            PdfInspection.Verdict verdict = pagesWithText > 0
+                    ? PdfInspection.Verdict.ACCEPTED : PdfInspection.Verdict.NO_TEXT_LAYER;
+            return finish(verdict, pageCount, encrypted, sampled, pagesWithText, imageOnlyPages, fonts.size(),
+                    startNanos);
+
+        } catch (InvalidPasswordException e) {
+            return finish(PdfInspection.Verdict.ENCRYPTED, 0, true, 0, 0, 0, 0, startNanos);
+        } catch (IOException | RuntimeException e) {
+            logger.info("Pre-flight could not parse " + pdfFilePath + ": " + e.getMessage());
+            return finish(PdfInspection.Verdict.UNREADABLE, 0, false, 0, 0, 0, 0, startNanos);
+        }
+    }
+
+    /**
+     * Up to {@code preflight.sample.pages} page indexes spread evenly from the first page
+     * to the last, in document order.
+     */
+    private Set<Integer> samplePageIndexes(int pageCount) {
+        Set<Integer> indexes = new TreeSet<>();
+        int samples = Math.max(1, Math.min(samplePages, pageCount));
+        for (int i = 0; i < samples; i++) {
+            indexes.add(samples == 1 ? 0 : (int) ((long) i * (pageCount - 1) / (samples - 1)));
+        }
+        return indexes;
+    }
+
+    private static int countVisibleChars(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private PdfInspection finish(PdfInspection.Verdict verdict, int pageCount, boolean encrypted, int sampledPages,
+                                 int pagesWithText, int imageOnlyPages, int fontCount, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        pipelineMetrics.recordStage(PipelineMetrics.STAGE_PREFLIGHT, elapsedNanos);
+        return new PdfInspection(verdict, pageCount, encrypted, sampledPages, pagesWithText, imageOnlyPages,
+                fontCount, elapsedNanos);
+    }
+
+    private String rejectionMessage(PdfInspection inspection) {
+        switch (inspection.getVerdict()) {
+            case ENCRYPTED:
+                return "PDF is password protected or does not allow text extraction";
+            case EMPTY:
+                return "PDF has no pages";
+            case TOO_MANY_PAGES:
+                return "PDF has " + inspection.getPageCount() + " pages, the limit is " + maxPages;
+            case NO_TEXT_LAYER:
+                return inspection.getImageOnlyPages() > 0
+                        ? "PDF appears to be scanned: no text found on " + inspection.getSampledPages()
+                        + " sampled pages, " + inspection.getImageOnlyPages() + " of them only images"
+                        : "No text found in PDF";
+            default:
+                return "PDF could not be read";
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.pdfaudio.service;
+
+/**
+ * Thrown when the pre-flight check finds that an uploaded PDF cannot be converted, for
+ * example because it has no text layer or is password protected. Carries the inspection
+ * so the client can see why.
+ */
+public class PdfRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final PdfInspection inspection;
+
+    public PdfRejectedException(String message, PdfInspection inspection) {
+        super(message);
+        this.inspection = inspection;
+    }
+
+    public PdfInspection getInspection() {
+        return inspection;
+    }
+}
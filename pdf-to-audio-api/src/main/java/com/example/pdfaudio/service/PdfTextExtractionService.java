@@ -1,13 +1,38 @@
 package com.example.pdfaudio.service;
 
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
+import java.io.FilterWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -16,19 +41,113 @@ public class PdfTextExtractionService {
 
     private static final Logger logger = Logger.getLogger(PdfTextExtractionService.class.getName());
 
+    @Value("${pdf.extraction.parallel.enabled:true}")
+    private boolean parallelEnabled;
+
+    @Value("${pdf.extraction.parallel.min.pages:32}")
+    private int parallelMinPages;
+
+    @Value("${pdf.extraction.parallel.segment.min.pages:8}")
+    private int minSegmentPages;
+
+    @Value("${pdf.extraction.parallelism:0}")
+    private int parallelism;
+
+    @Value("${pdf.extraction.scratch.policy:temp-file}")
+    private String scratchPolicy;
+
+    @Value("${pdf.extraction.scratch.max.memory.mb:16}")
+    private long scratchMaxMemoryMb;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    private ForkJoinPool extractionPool;
+
+    @PostConstruct
+    public void init() {
+        extractionPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        extractionPool.shutdown();
+    }
+
     public String extractTextFromPdf(MultipartFile pdfFile) throws IOException {
         logger.info("Starting PDF text extraction for file: " + pdfFile.getOriginalFilename());
-        
-        try (InputStream inputStream = pdfFile.getInputStream();
-             PDDocument document = Loader.loadPDF(inputStream.readAllBytes())) {
-            
-            logger.info("PDF document loaded successfully, extracting text...");
-            PDFTextStripper pdfStripper = new PDFTextStripper();
-            String extractedText = pdfStripper.getText(document);
-            
-            logger.info("Text extraction completed. Length: " + extractedText.length() + " characters");
-            return extractedText;
-            
+
+        // Spool to disk so PDFBox can parse from a file instead of a heap copy of the upload
+        Path spooledPdf = Files.createTempFile("pdf-upload-", ".pdf");
+        try {
+            pdfFile.transferTo(spooledPdf);
+            return extractTextFromPdf(spooledPdf.toString());
+        } finally {
+            Files.deleteIfExists(spooledPdf);
+        }
+    }
+
+    public String extractTextFromPdf(String pdfFilePath) throws IOException {
+        return extractText(pdfFilePath).getText();
+    }
+
+    /**
+     * Extracts the text of a saved PDF. Documents with at least
+     * {@code pdf.extraction.parallel.min.pages} pages are split into page ranges that
+     * are stripped concurrently, each by its own document instance and stripper, since
+     * PDFBox documents are not safe for concurrent use. The instance loaded to count the
+     * pages strips the first range, so no more documents are parsed than there are ranges.
+     */
+    public PdfExtractionResult extractText(String pdfFilePath) throws IOException {
+        StringWriter text = new StringWriter();
+        PdfExtractionResult result = extractText(pdfFilePath, text, false);
+        return result.withText(text.toString());
+    }
+
+    /**
+     * Same as {@link #extractText(String)}, but writes the text to {@code out} page by page
+     * instead of building it in memory. Parallel segments are spooled to temp files and
+     * copied to {@code out} in page order. The result carries the text length only.
+     */
+    public PdfExtractionResult extractText(String pdfFilePath, Writer out) throws IOException {
+        return extractText(pdfFilePath, out, true);
+    }
+
+    private PdfExtractionResult extractText(String pdfFilePath, Writer out, boolean spoolSegments)
+            throws IOException {
+        logger.info("Starting PDF text extraction for saved file: " + pdfFilePath);
+        long startNanos = System.nanoTime();
+        File pdfFile = new File(pdfFilePath);
+        CountingWriter text = new CountingWriter(out);
+
+        try (PDDocument document = loadDocument(pdfFile)) {
+            long stripStart = System.nanoTime();
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_LOAD, stripStart - startNanos);
+            int pageCount = document.getNumberOfPages();
+            long[] pageTimings = new long[pageCount];
+            int segmentCount;
+
+            if (!parallelEnabled || pageCount < parallelMinPages) {
+                logger.info("PDF document loaded successfully, extracting text...");
+                stripPages(document, 1, pageCount, pageTimings, text);
+                segmentCount = 1;
+            } else {
+                int segmentPages = Math.max(minSegmentPages,
+                        (pageCount + extractionPool.getParallelism() - 1) / extractionPool.getParallelism());
+                segmentCount = (pageCount + segmentPages - 1) / segmentPages;
+                logger.info("PDF document loaded successfully, extracting " + pageCount + " pages in "
+                        + segmentCount + " parallel segments...");
+                stripSegments(document, pdfFile, segmentCount, segmentPages, pageCount, pageTimings, text,
+                        spoolSegments);
+            }
+            text.flush();
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_STRIP, System.nanoTime() - stripStart);
+
+            PdfExtractionResult result = new PdfExtractionResult(null, text.getCount(), pageTimings, segmentCount,
+                    System.nanoTime() - startNanos);
+            logTimings(result);
+            return result;
+
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Error extracting text from PDF: " + e.getMessage(), e);
             throw new IOException("Failed to extract text from PDF: " + e.getMessage(), e);
@@ -37,4 +156,280 @@ public class PdfTextExtractionService {
             throw new IOException("Unexpected error processing PDF: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Splits a saved PDF into chapters for narration. The top level of the outline gives
+     * the chapters (descending while it holds a single entry, as manuals often wrap
+     * everything in one root bookmark); pages before the first bookmark become a front
+     * matter chapter. Without a usable outline the document is cut into runs of
+     * {@code pagesPerChapter} pages. Chapters longer than {@code maxChapterPages} are split
+     * into parts so one huge chapter does not serialize the narration.
+     */
+    public List<PdfChapter> findChapters(String pdfFilePath, int pagesPerChapter, int maxChapterPages)
+            throws IOException {
+        try (PDDocument document = loadDocument(new File(pdfFilePath))) {
+            int pageCount = document.getNumberOfPages();
+            TreeMap<Integer, String> starts = new TreeMap<>();
+            PDOutlineNode level = document.getDocumentCatalog().getDocumentOutline();
+            while (level != null && starts.size() < 2) {
+                starts.clear();
+                for (PDOutlineItem item : level.children()) {
+                    PDPage page = item.findDestinationPage(document);
+                    int pageIndex = page != null ? document.getPages().indexOf(page) : -1;
+                    if (pageIndex >= 0) {
+                        starts.putIfAbsent(pageIndex + 1, item.getTitle() != null ? item.getTitle().trim() : "");
+                    }
+                }
+                PDOutlineItem only = level.getFirstChild();
+                level = only != null && only.equals(level.getLastChild()) && only.hasChildren() ? only : null;
+            }
+
+            List<PdfChapter> chapters = new ArrayList<>();
+            if (starts.size() < 2) {
+                int size = Math.max(1, pagesPerChapter);
+                for (int start = 1; start <= pageCount; start += size) {
+                    int end = Math.min(pageCount, start + size - 1);
+                    chapters.add(new PdfChapter("Pages " + start + "-" + end, start, end, false));
+                }
+                return chapters;
+            }
+
+            if (starts.firstKey() > 1) {
+                starts.put(1, "Front matter");
+            }
+            for (Map.Entry<Integer, String> entry : starts.entrySet()) {
+                Integer next = starts.higherKey(entry.getKey());
+                int end = next != null ? next - 1 : pageCount;
+                addParts(chapters, entry.getValue(), entry.getKey(), end, Math.max(1, maxChapterPages));
+            }
+            return chapters;
+        }
+    }
+
+    private static void addParts(List<PdfChapter> chapters, String title, int start, int end, int maxPages) {
+        int parts = (end - start + maxPages) / maxPages;
+        for (int part = 0; part < parts; part++) {
+            int partStart = start + part * maxPages;
+            int partEnd = Math.min(end, partStart + maxPages - 1);
+            String partTitle = parts > 1 ? title + " (part " + (part + 1) + " of " + parts + ")" : title;
+            chapters.add(new PdfChapter(partTitle, partStart, partEnd, true));
+        }
+    }
+
+    /**
+     * Extracts the text of pages {@code startPage} to {@code endPage} (inclusive, from 1)
+     * with a privately loaded document, so several ranges of one file can be extracted
+     * concurrently.
+     */
+    public String extractPages(String pdfFilePath, int startPage, int endPage) throws IOException {
+        long startNanos = System.nanoTime();
+        try (PDDocument document = loadDocument(new File(pdfFilePath))) {
+            long stripStart = System.nanoTime();
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_LOAD, stripStart - startNanos);
+            StringWriter text = new StringWriter();
+            stripPages(document, startPage, endPage, new long[document.getNumberOfPages()], text);
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_STRIP, System.nanoTime() - stripStart);
+            return text.toString();
+        }
+    }
+
+    private void stripSegments(PDDocument firstDocument, File pdfFile, int segmentCount, int segmentPages,
+                               int pageCount, long[] pageTimings, Writer out, boolean spoolSegments)
+            throws IOException {
+        Writer[] segmentOutputs = new Writer[segmentCount];
+        Path[] segmentFiles = new Path[segmentCount];
+        try {
+            for (int i = 0; i < segmentCount; i++) {
+                if (spoolSegments) {
+                    segmentFiles[i] = Files.createTempFile("pdf-text-segment-", ".txt");
+                    segmentOutputs[i] = Files.newBufferedWriter(segmentFiles[i], StandardCharsets.UTF_8);
+                } else {
+                    segmentOutputs[i] = new StringWriter();
+                }
+            }
+            try {
+                extractionPool.invoke(new PageRangeTask(firstDocument, pdfFile, 0, segmentCount, segmentPages,
+                        pageCount, segmentOutputs, pageTimings));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            for (int i = 0; i < segmentCount; i++) {
+                segmentOutputs[i].close();
+                if (spoolSegments) {
+                    try (Reader segment = Files.newBufferedReader(segmentFiles[i], StandardCharsets.UTF_8)) {
+                        segment.transferTo(out);
+                    }
+                    Files.delete(segmentFiles[i]);
+                } else {
+                    out.write(segmentOutputs[i].toString());
+                }
+            }
+        } finally {
+            for (int i = 0; i < segmentCount; i++) {
+                IOUtils.closeQuietly(segmentOutputs[i]);
+                if (segmentFiles[i] != null) {
+                    Files.deleteIfExists(segmentFiles[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses straight from the saved file; objects PDFBox has to buffer while parsing go
+     * to the configured scratch storage rather than the heap.
+     */
+    PDDocument loadDocument(File pdfFile) throws IOException {
+        return Loader.loadPDF(pdfFile, createStreamCache());
+    }
+
+    private RandomAccessStreamCache.StreamCacheCreateFunction createStreamCache() {
+        switch (scratchPolicy.toLowerCase()) {
+            case "memory":
+                return IOUtils.createMemoryOnlyStreamCache();
+            case "mixed":
+                return MemoryUsageSetting.setupMixed(scratchMaxMemoryMb * 1024 * 1024).streamCache;
+            default:
+                return IOUtils.createTempFileOnlyStreamCache();
+        }
+    }
+
+    private static void stripPages(PDDocument document, int startPage, int endPage, long[] pageTimings, Writer out)
+            throws IOException {
+        PageTimingTextStripper stripper = new PageTimingTextStripper(pageTimings);
+        stripper.setStartPage(startPage);
+        stripper.setEndPage(endPage);
+        stripper.writeText(document, out);
+    }
+
+    private void logTimings(PdfExtractionResult result) {
+        logger.info("Text extraction completed. Length: " + result.getTextLength() + " characters, "
+                + result.getPageCount() + " pages in " + result.getElapsedMillis() + " ms"
+                + (result.getPageCount() > 0 ? ", slowest page " + result.getSlowestPage() : ""));
+        if (logger.isLoggable(Level.FINE)) {
+            long[] timings = result.getPageTimingsNanos();
+            for (int i = 0; i < timings.length; i++) {
+                logger.fine("Page " + (i + 1) + " stripped in " + (timings[i] / 1_000) + " us");
+            }
+        }
+    }
+
+    /**
+     * Splits a run of segments in half until a single segment is left, then strips
+     * that segment's pages from a privately loaded copy of the document.
+     */
+    private class PageRangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final PDDocument firstDocument;
+        private final File pdfFile;
+        private final int fromSegment;
+        private final int toSegment;
+        private final int segmentPages;
+        private final int pageCount;
+        private final Writer[] segmentOutputs;
+        private final long[] pageTimings;
+
+        /**
+         * @param firstDocument an already loaded instance that strips segment 0; the caller
+         *                      closes it
+         */
+        PageRangeTask(PDDocument firstDocument, File pdfFile, int fromSegment, int toSegment, int segmentPages,
+                      int pageCount, Writer[] segmentOutputs, long[] pageTimings) {
+            this.firstDocument = firstDocument;
+            this.pdfFile = pdfFile;
+            this.fromSegment = fromSegment;
+            this.toSegment = toSegment;
+            this.segmentPages = segmentPages;
+            this.pageCount = pageCount;
+            this.segmentOutputs = segmentOutputs;
+            this.pageTimings = pageTimings;
+        }
+
+        @Override
+        protected void compute() {
+            if (toSegment - fromSegment > 1) {
+                int middle = (fromSegment + toSegment) >>> 1;
+                invokeAll(new PageRangeTask(firstDocument, pdfFile, fromSegment, middle, segmentPages, pageCount,
+                                segmentOutputs, pageTimings),
+                        new PageRangeTask(firstDocument, pdfFile, middle, toSegment, segmentPages, pageCount,
+                                segmentOutputs, pageTimings));
+                return;
+            }
+
+            int startPage = fromSegment * segmentPages + 1;
+            int endPage = Math.min(pageCount, startPage + segmentPages - 1);
+            try {
+                if (fromSegment == 0 && firstDocument != null) {
+                    stripPages(firstDocument, startPage, endPage, pageTimings, segmentOutputs[fromSegment]);
+                    return;
+                }
+                try (PDDocument document = loadDocument(pdfFile)) {
+                    stripPages(document, startPage, endPage, pageTimings, segmentOutputs[fromSegment]);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Counts the characters passed through to the extraction output.
+     */
+    private static class CountingWriter extends FilterWriter {
+
+        private long count;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            out.write(text, offset, length);
+            count += length;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Records the wall time spent on each page between the stripper's page callbacks.
+     */
+    private static class PageTimingTextStripper extends PDFTextStripper {
+
+        private final long[] pageTimings;
+        private long pageStartNanos;
+
+        PageTimingTextStripper(long[] pageTimings) {
+            this.pageTimings = pageTimings;
+        }
+
+        @Override
+        protected void startPage(PDPage page) throws IOException {
+            pageStartNanos = System.nanoTime();
+            super.startPage(page);
+        }
+
+        @Override
+        protected void endPage(PDPage page) throws IOException {
+            super.endPage(page);
+            pageTimings[getCurrentPageNo() - 1] = System.nanoTime() - pageStartNanos;
+        }
+    }
 }
@@ -0,0 +1,193 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.config.NodeRole;
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * The API side of a queued deployment: uploads are checked and saved here as usual, then
+ * handed to the {@link JobQueue} with their PDF in the {@link ArtifactStore} instead of
+ * running on this node, and the audio the worker stored is fetched into local storage
+ * the first time it is downloaded. Only active when {@code jobs.queue.type} names a queue.
+ */
+@Service
+public class QueuedConversionService {
+
+    private static final Logger logger = Logger.getLogger(QueuedConversionService.class.getName());
+
+    static final String PDF_PREFIX = "pdf/";
+    static final String AUDIO_PREFIX = "audio/";
+
+    @Autowired(required = false)
+    private JobQueue jobQueue;
+
+    @Autowired
+    private ArtifactStore artifactStore;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private PdfPreflightService pdfPreflightService;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${app.role:all}")
+    private String role;
+
+    @Value("${jobs.queue.max.depth:1000}")
+    private int maxDepth;
+
+    @Value("${jobs.queue.poll.ms:500}")
+    private long pollMillis;
+
+    @Value("${jobs.queue.await.timeout.seconds:600}")
+    private long awaitTimeoutSeconds;
+
+    @PostConstruct
+    public void init() {
+        NodeRole nodeRole = NodeRole.fromProperty(role);
+        if (jobQueue == null) {
+            if (nodeRole != NodeRole.ALL) {
+                throw new IllegalStateException("app.role=" + role + " needs a job queue, set jobs.queue.type");
+            }
+            return;
+        }
+        if (nodeRole == NodeRole.API && jobQueue instanceof EmbeddedJobQueue) {
+            logger.warning("app.role=api with the embedded job queue: no worker will ever see its jobs");
+        }
+        pipelineMetrics.gauge("pdfaudio.queue.depth", "Queued conversions waiting for a worker", jobQueue::depth);
+    }
+
+    /**
+     * Whether uploads go through the job queue instead of running on this node.
+     */
+    public boolean isEnabled() {
+        return jobQueue != null;
+    }
+
+    /**
+     * Saves and checks the upload like a local conversion, publishes the PDF for the
+     * workers and queues the job. The local copy of the PDF stays for {@code /download-pdf}.
+     *
+     * @throws AdmissionRejectedException if {@code jobs.queue.max.depth} jobs are already waiting
+     * @throws PdfRejectedException       if the PDF cannot be converted
+     */
+    public QueuedJob submit(MultipartFile file, String voiceType, TextSummarizationService.Engine summarizer)
+            throws IOException {
+        if (jobQueue.depth() >= maxDepth) {
+            pipelineMetrics.admissionRejected("queue_full");
+            throw new AdmissionRejectedException("Conversion queue is full, please retry later", 10);
+        }
+        fileStorageService.ensurePdfDirectoryExists();
+
+        String uniqueFileName = fileStorageService.generateUniqueFileName(file.getOriginalFilename());
+        long saveStart = System.nanoTime();
+        String savedPdfPath = fileStorageService.savePdfFile(file, uniqueFileName);
+        pipelineMetrics.recordStage(PipelineMetrics.STAGE_SAVE, System.nanoTime() - saveStart);
+        pipelineMetrics.bytesReceived(file.getSize());
+        try {
+            pdfPreflightService.check(savedPdfPath);
+        } catch (PdfRejectedException e) {
+            fileStorageService.deleteFile(savedPdfPath);
+            throw e;
+        }
+
+        QueuedJob job = new QueuedJob();
+        job.jobId = UUID.randomUUID().toString();
+        job.state = QueuedJob.State.QUEUED;
+        job.pdfKey = PDF_PREFIX + Paths.get(savedPdfPath).getFileName();
+        job.originalFileName = file.getOriginalFilename();
+        job.uniqueFileName = uniqueFileName;
+        job.voiceType = voiceType;
+        job.summarizer = summarizer;
+        job.createdAt = Instant.now();
+        artifactStore.put(job.pdfKey, Paths.get(savedPdfPath));
+        try {
+            jobQueue.enqueue(job);
+        } catch (IOException | RuntimeException e) {
+            artifactStore.delete(job.pdfKey);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * @return the queued job, or {@code null} if there is no queue or no such job
+     */
+    public QueuedJob getJob(String jobId) throws IOException {
+        return jobQueue != null ? jobQueue.get(jobId) : null;
+    }
+
+    /**
+     * Polls the queue until a worker has finished the job, for the synchronous upload.
+     *
+     * @throws IOException with the worker's error if the job failed, or if it did not
+     *                     finish within {@code jobs.queue.await.timeout.seconds}
+     */
+    public Map<String, Object> awaitResult(QueuedJob job) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(awaitTimeoutSeconds);
+        while (true) {
+            QueuedJob current = jobQueue.get(job.jobId);
+            if (current == null) {
+                throw new IOException("Job " + job.jobId + " is no longer queued");
+            }
+            if (current.state == QueuedJob.State.COMPLETED) {
+                return current.result;
+            }
+            if (current.state == QueuedJob.State.FAILED) {
+                throw new IOException(current.error);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IOException("Job " + job.jobId + " did not finish within " + awaitTimeoutSeconds
+                        + " s, poll /api/pdf-to-audio/jobs/" + job.jobId);
+            }
+            TimeUnit.MILLISECONDS.sleep(pollMillis);
+        }
+    }
+
+    /**
+     * Finds audio a worker stored, copying it into local storage on first access, so that
+     * it is served (and evicted) like audio converted here.
+     *
+     * @return the local file, or null if neither this node nor the artifact store has it
+     */
+    public Path fetchAudio(String fileName) throws IOException {
+        if (jobQueue == null) {
+            return null;
+        }
+        try (InputStream in = artifactStore.open(AUDIO_PREFIX + fileName)) {
+            if (in == null) {
+                return null;
+            }
+            Path target = fileStorageService.audioPath(fileName);
+            Path temp = fileStorageService.newTempFile(target);
+            try {
+                Files.copy(in, temp);
+                fileStorageService.commit(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return target;
+        } catch (IllegalArgumentException e) {
+            // Not a valid artifact name, so not an artifact
+            return null;
+        }
+    }
+}
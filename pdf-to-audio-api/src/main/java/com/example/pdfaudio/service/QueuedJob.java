@@ -0,0 +1,86 @@
+package com.example.pdfaudio.service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A conversion as the {@link JobQueue} holds it between the API node that took the upload
+ * and the worker that runs it. Everything a worker needs is in here or in the
+ * {@link ArtifactStore} under {@link #pdfKey}; nothing refers to either node's local disk.
+ */
+public class QueuedJob {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    public String jobId;
+    public State state;
+    // Pipeline status reported by the worker while running, e.g. SYNTHESIZING
+    public String stage;
+    public String pdfKey;
+    public String originalFileName;
+    public String uniqueFileName;
+    public String voiceType;
+    public TextSummarizationService.Engine summarizer;
+    // Claims so far, including the current one
+    public int attempts;
+    public String workerId;
+    public Instant leaseExpiresAt;
+    public String error;
+    // The response the synchronous upload returns, without paths local to the worker
+    public Map<String, Object> result;
+    public Instant createdAt;
+    public Instant finishedAt;
+
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+
+    QueuedJob copy() {
+        QueuedJob copy = new QueuedJob();
+        copy.jobId = jobId;
+        copy.state = state;
+        copy.stage = stage;
+        copy.pdfKey = pdfKey;
+        copy.originalFileName = originalFileName;
+        copy.uniqueFileName = uniqueFileName;
+        copy.voiceType = voiceType;
+        copy.summarizer = summarizer;
+        copy.attempts = attempts;
+        copy.workerId = workerId;
+        copy.leaseExpiresAt = leaseExpiresAt;
+        copy.error = error;
+        copy.result = result != null ? new HashMap<>(result) : null;
+        copy.createdAt = createdAt;
+        copy.finishedAt = finishedAt;
+        return copy;
+    }
+
+    /**
+     * Same fields as {@link ConversionJob#toStatusMap()}; a running job reports the stage
+     * its worker last renewed the lease with.
+     */
+    public Map<String, Object> toStatusMap() {
+        Map<String, Object> statusMap = new HashMap<>();
+        statusMap.put("jobId", jobId);
+        statusMap.put("status", state == State.RUNNING && stage != null ? stage : state.name());
+        statusMap.put("originalFileName", originalFileName);
+        statusMap.put("voiceType", voiceType);
+        statusMap.put("summarizer", summarizer.name().toLowerCase());
+        statusMap.put("createdAt", createdAt.toString());
+        if (finishedAt != null) {
+            statusMap.put("finishedAt", finishedAt.toString());
+        }
+        if (error != null) {
+            statusMap.put("error", error);
+        }
+        if (workerId != null) {
+            statusMap.put("workerId", workerId);
+        }
+        statusMap.put("attempts", attempts);
+        statusMap.put("queued", true);
+        return statusMap;
+    }
+}
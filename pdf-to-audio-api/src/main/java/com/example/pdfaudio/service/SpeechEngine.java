@@ -0,0 +1,25 @@
+package com.example.pdfaudio.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Turns one piece of text into a WAV file. Selected with {@code tts.engine}:
+ * {@code process} (the default) runs the platform's speech engine, {@code stub} writes
+ * synthetic audio for benchmarks and machines without a speech engine.
+ */
+public interface SpeechEngine {
+
+    /**
+     * Whether this engine should be used; when not, the synthesizer starts an engine
+     * process per request instead.
+     */
+    boolean isEnabled();
+
+    /**
+     * Synthesizes {@code text} into {@code outputPath}, spoken as {@code voice} describes.
+     *
+     * @return a short description of the engine that produced the audio
+     */
+    String synthesize(String text, Path outputPath, VoiceSettings voice) throws IOException;
+}
@@ -0,0 +1,390 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.audio.WavHeader;
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Synthesized audio of single sentences, shared by all documents, so boilerplate such as
+ * disclaimers, headers and standard clauses is spoken by the engine once instead of once
+ * per document. Keyed by the sentence with its whitespace normalized, the engine and the
+ * voice, rate and volume.
+ * <p>
+ * The PCM data lives outside the heap, in memory-mapped segment files of
+ * {@code tts.fragment.cache.segment.bytes} under {@code tts.fragment.cache.directory}.
+ * Fragments are appended to the newest segment; each record carries its key and format,
+ * and its magic number is written last, so the index can be rebuilt by scanning the
+ * segments at startup and a torn record is simply where the scan stops.
+ * <p>
+ * Once the segments exceed {@code tts.fragment.cache.max.bytes} the oldest one is
+ * dropped as a whole. Fragments in it that were used since they were written get a
+ * second chance and are copied forward into the newest segment first, so boilerplate that
+ * keeps coming back stays while one-off sentences age out.
+ * <p>
+ * Only sentences seen at least {@code tts.fragment.cache.admit.after} times are worth
+ * synthesizing on their own; {@link #admit} remembers recent sentences by hash to tell.
+ */
+@Service
+public class SpeechFragmentCache {
+
+    private static final Logger logger = Logger.getLogger(SpeechFragmentCache.class.getName());
+
+    private static final int RECORD_MAGIC = 0x46524731;
+    // magic, key length, data length, audio format, channels, sample rate, bits per sample
+    private static final int RECORD_HEADER_BYTES = 4 + 4 + 4 + 2 + 2 + 4 + 2;
+    private static final int RECORD_ALIGNMENT = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    @Value("${tts.fragment.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tts.fragment.cache.directory:fragment-cache}")
+    private String directory;
+
+    @Value("${tts.fragment.cache.max.bytes:268435456}")
+    private long maxBytes;
+
+    @Value("${tts.fragment.cache.segment.bytes:16777216}")
+    private int segmentBytes;
+
+    @Value("${tts.fragment.cache.admit.after:2}")
+    private int admitAfter;
+
+    @Value("${tts.fragment.cache.doorkeeper.entries:100000}")
+    private int doorkeeperEntries;
+
+    @Value("${tts.engine:process}")
+    private String engine;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    private Path root;
+    private final Map<String, Fragment> index = new HashMap<>();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSegmentId;
+    private long fragmentBytes;
+    private Map<Long, Integer> doorkeeper;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        doorkeeper = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                return size() > doorkeeperEntries;
+            }
+        };
+        root = Paths.get(directory);
+        Files.createDirectories(root);
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(root)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        synchronized (this) {
+            for (Path file : files) {
+                try {
+                    long id = Long.parseLong(file.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+                    Segment segment = openSegment(file);
+                    segments.addLast(segment);
+                    nextSegmentId = id + 1;
+                    scan(segment);
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, "Dropping unreadable fragment segment " + file + ": " + e.getMessage());
+                    Files.deleteIfExists(file);
+                }
+            }
+            trim();
+        }
+        logger.info("Loaded " + index.size() + " cached speech fragments (" + fragmentBytes + " bytes) from "
+                + root);
+        pipelineMetrics.gauge("pdfaudio.tts.fragment.bytes", "Bytes of cached sentence audio", this::bytes);
+        pipelineMetrics.gauge("pdfaudio.tts.fragment.entries", "Cached sentence fragments", this::size);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The key a sentence is cached under when spoken as {@code voice} by the configured engine.
+     */
+    public String key(String sentence, VoiceSettings voice) {
+        String normalized = Normalizer.normalize(sentence, Normalizer.Form.NFC).trim().replaceAll("\\s+", " ");
+        return engine + ":" + voice + ":" + normalized;
+    }
+
+    /**
+     * Whether the sentence of {@code key} is cached, counted as a fragment cache lookup.
+     */
+    public synchronized boolean isCached(String key) {
+        boolean hit = index.containsKey(key);
+        pipelineMetrics.fragmentLookup(hit);
+        return hit;
+    }
+
+    /**
+     * Counts a sighting of the sentence and tells whether it has now been seen often
+     * enough to be synthesized on its own and cached.
+     */
+    public synchronized boolean admit(String key) {
+        int seen = doorkeeper.merge(hash(key), 1, Integer::sum);
+        return seen >= admitAfter;
+    }
+
+    /**
+     * Writes the cached audio of {@code keys}, in order, to {@code output} as one WAV file.
+     * With an {@code expectedFormat}, every fragment must be in it, so the file can be
+     * joined with audio the engine speaks now.
+     *
+     * @return false, writing nothing, if any of them is no longer cached or the formats differ
+     */
+    public boolean write(List<String> keys, Path output, WavHeader expectedFormat) throws IOException {
+        List<Fragment> fragments = new ArrayList<>(keys.size());
+        WavHeader format = expectedFormat;
+        synchronized (this) {
+            for (String key : keys) {
+                Fragment fragment = index.get(key);
+                if (fragment == null || (format != null && !format.hasSameFormat(fragment.format))) {
+                    return false;
+                }
+                format = fragment.format;
+                fragment.referenced = true;
+                fragments.add(fragment);
+            }
+        }
+        long dataLength = 0;
+        for (Fragment fragment : fragments) {
+            dataLength += fragment.dataLength;
+        }
+        // A dropped segment stays mapped until its buffer is collected, so the slices are safe to read
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, fragments.get(0).format.toBytes(dataLength));
+            for (Fragment fragment : fragments) {
+                writeFully(out, fragment.data());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Caches the PCM data of a WAV file holding exactly the sentence of {@code key}.
+     * Fragments too large for a quarter of a segment are not cached.
+     */
+    public void store(String key, Path wavFile) throws IOException {
+        WavHeader header = WavHeader.read(wavFile);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long recordLength = RECORD_HEADER_BYTES + keyBytes.length + header.getDataLength();
+        if (recordLength > segmentBytes / 4) {
+            return;
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) header.getDataLength());
+        try (FileChannel in = FileChannel.open(wavFile, StandardOpenOption.READ)) {
+            while (data.hasRemaining()) {
+                if (in.read(data, header.getDataOffset() + data.position()) < 0) {
+                    throw new IOException("Unexpected end of WAVE file " + wavFile);
+                }
+            }
+        }
+        data.flip();
+        synchronized (this) {
+            if (index.containsKey(key)) {
+                return;
+            }
+            append(key, keyBytes, header, data);
+            trim();
+        }
+    }
+
+    public synchronized long bytes() {
+        return fragmentBytes;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    private void append(String key, byte[] keyBytes, WavHeader format, ByteBuffer data) throws IOException {
+        int recordLength = align(RECORD_HEADER_BYTES + keyBytes.length + data.remaining());
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.position + recordLength > segmentBytes) {
+            segment = openSegment(root.resolve(String.format("%016d%s", nextSegmentId, SEGMENT_SUFFIX)));
+            nextSegmentId++;
+            segments.addLast(segment);
+        }
+        int offset = segment.position;
+        int dataLength = data.remaining();
+        ByteBuffer buffer = segment.buffer;
+        buffer.putInt(offset + 4, keyBytes.length);
+        buffer.putInt(offset + 8, dataLength);
+        buffer.putShort(offset + 12, (short) format.getAudioFormat());
+        buffer.putShort(offset + 14, (short) format.getChannels());
+        buffer.putInt(offset + 16, format.getSampleRate());
+        buffer.putShort(offset + 20, (short) format.getBitsPerSample());
+        buffer.put(offset + RECORD_HEADER_BYTES, keyBytes);
+        int dataOffset = offset + RECORD_HEADER_BYTES + keyBytes.length;
+        buffer.put(dataOffset, data, data.position(), dataLength);
+        // Written last: a record without its magic is one that was never finished
+        buffer.putInt(offset, RECORD_MAGIC);
+        segment.position = offset + recordLength;
+
+        Fragment fragment = new Fragment(segment, dataOffset, dataLength, format);
+        segment.keys.add(key);
+        index.put(key, fragment);
+        fragmentBytes += dataLength;
+    }
+
+    /**
+     * Drops the oldest segments until the cache fits its budget, moving fragments that
+     * were used while they sat there into the newest segment.
+     */
+    private void trim() throws IOException {
+        while ((long) segments.size() * segmentBytes > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.pollFirst();
+            for (String key : oldest.keys) {
+                Fragment fragment = index.get(key);
+                if (fragment == null || fragment.segment != oldest) {
+                    continue;
+                }
+                index.remove(key);
+                fragmentBytes -= fragment.dataLength;
+                if (fragment.referenced) {
+                    append(key, key.getBytes(StandardCharsets.UTF_8), fragment.format, fragment.data());
+                }
+            }
+            try {
+                Files.deleteIfExists(oldest.file);
+            } catch (IOException e) {
+                // Windows refuses while the file is mapped; if it survives, the next start loads it again
+                logger.log(Level.FINE, "Could not delete fragment segment " + oldest.file + ": " + e.getMessage());
+                oldest.file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + RECORD_HEADER_BYTES <= segmentBytes && buffer.getInt(offset) == RECORD_MAGIC) {
+            int keyLength = buffer.getInt(offset + 4);
+            int dataLength = buffer.getInt(offset + 8);
+            int recordLength = align(RECORD_HEADER_BYTES + keyLength + dataLength);
+            if (keyLength <= 0 || dataLength < 0 || offset + recordLength > segmentBytes) {
+                break;
+            }
+            WavHeader format = new WavHeader(Short.toUnsignedInt(buffer.getShort(offset + 12)),
+                    Short.toUnsignedInt(buffer.getShort(offset + 14)), buffer.getInt(offset + 16),
+                    Short.toUnsignedInt(buffer.getShort(offset + 20)), WavHeader.CANONICAL_HEADER_SIZE, dataLength);
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(offset + RECORD_HEADER_BYTES, keyBytes);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+
+            // A key copied forward into a newer segment replaces its older record
+            Fragment previous = index.put(key, new Fragment(segment, offset + RECORD_HEADER_BYTES + keyLength,
+                    dataLength, format));
+            if (previous != null) {
+                fragmentBytes -= previous.dataLength;
+            }
+            segment.keys.add(key);
+            fragmentBytes += dataLength;
+            offset += recordLength;
+        }
+        segment.position = offset;
+    }
+
+    private Segment openSegment(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        }
+    }
+
+    private static int align(int length) {
+        return (length + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+    }
+
+    /**
+     * 64-bit FNV-1a of the key; a collision only admits a sentence one sighting early.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static final class Segment {
+        final Path file;
+        final MappedByteBuffer buffer;
+        final List<String> keys = new ArrayList<>();
+        int position;
+
+        Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Fragment {
+        final Segment segment;
+        final int dataOffset;
+        final int dataLength;
+        final WavHeader format;
+        volatile boolean referenced;
+
+        Fragment(Segment segment, int dataOffset, int dataLength, WavHeader format) {
+            this.segment = segment;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.format = format;
+        }
+
+        ByteBuffer data() {
+            return segment.buffer.slice(dataOffset, dataLength);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.audio.WavHeader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speech engine that writes a deterministic tone instead of speech: 16 kHz mono 16-bit
+ * PCM, {@code tts.stub.ms.per.char} milliseconds of audio per character at a loudness
+ * that follows the requested volume, after sleeping {@code tts.stub.latency.ms} plus
+ * {@code tts.stub.latency.us.per.char} microseconds per character, as a real engine takes
+ * longer for longer text. Lets the pipeline be benchmarked and load tested without SAPI
+ * or espeak, with the engine's cost held constant.
+ */
+@Service
+@ConditionalOnProperty(name = "tts.engine", havingValue = "stub")
+public class StubSpeechEngine implements SpeechEngine {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    @Value("${tts.stub.latency.ms:0}")
+    private long latencyMs;
+
+    @Value("${tts.stub.latency.us.per.char:0}")
+    private long latencyMicrosPerChar;
+
+    @Value("${tts.stub.ms.per.char:60}")
+    private int msPerChar;
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public String synthesize(String text, Path outputPath, VoiceSettings voice) throws IOException {
+        long latencyMicros = latencyMs * 1000 + text.length() * latencyMicrosPerChar;
+        if (latencyMicros > 0) {
+            try {
+                TimeUnit.MICROSECONDS.sleep(latencyMicros);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted in stub TTS engine");
+            }
+        }
+
+        long samples = (long) text.length() * msPerChar * SAMPLE_RATE / 1000;
+        short amplitude = (short) (2500 * voice.getVolume() / VoiceSettings.MAX_VOLUME);
+        WavHeader format = new WavHeader(WavHeader.FORMAT_PCM, 1, SAMPLE_RATE, 16,
+                WavHeader.CANONICAL_HEADER_SIZE, samples * 2);
+        try (FileChannel out = FileChannel.open(outputPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, format.toBytes(samples * 2));
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (long i = 0; i < samples; i++) {
+                // 500 Hz square wave at low amplitude
+                buffer.putShort((i / 16) % 2 == 0 ? amplitude : (short) -amplitude);
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    writeFully(out, buffer);
+                    buffer.clear();
+                }
+            }
+            buffer.flip();
+            writeFully(out, buffer);
+        }
+        return "OK-STUB";
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
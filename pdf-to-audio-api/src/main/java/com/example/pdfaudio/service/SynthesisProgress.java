@@ -0,0 +1,280 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.audio.WavHeader;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tracks the chunk files of one synthesis as they are produced, so the audio can be
+ * streamed to a client before the final WAV exists.
+ * <p>
+ * Chunk files are temporary: once they have been concatenated into the final file the
+ * synthesizer retires and deletes them. A reader copies chunk data in small slices under
+ * a read lock and, if the chunks have been retired in the meantime, continues from the
+ * same PCM offset in the final file, which holds exactly the same bytes.
+ * <p>
+ * When the audio is post-processed into another format, the final PCM file is only a
+ * master for streaming: once the encoded file is published, the master is deleted as soon
+ * as the last stream reading it ends, and later streams are sent to the published file.
+ */
+public class SynthesisProgress {
+
+    private static final int COPY_SLICE_BYTES = 64 * 1024;
+
+    private final CompletableFuture<List<CompletableFuture<Path>>> started = new CompletableFuture<>();
+    private final CompletableFuture<Path> finalFile = new CompletableFuture<>();
+    private final ReentrantReadWriteLock chunkLock = new ReentrantReadWriteLock();
+    private boolean chunksRetired;
+
+    private final Object readerLock = new Object();
+    private int readers;
+    private boolean masterRetired;
+    private volatile Path publishedFile;
+    private volatile boolean cancelled;
+
+    /**
+     * Announces how many chunks the synthesis will produce.
+     */
+    List<CompletableFuture<Path>> start(int chunkCount) {
+        List<CompletableFuture<Path>> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.add(new CompletableFuture<>());
+        }
+        started.complete(chunks);
+        return chunks;
+    }
+
+    /**
+     * Marks the chunk files as no longer readable; blocks only while a reader is copying a slice.
+     */
+    void retireChunks() {
+        chunkLock.writeLock().lock();
+        try {
+            chunksRetired = true;
+        } finally {
+            chunkLock.writeLock().unlock();
+        }
+    }
+
+    void complete(Path outputFile) {
+        started.complete(List.of());
+        finalFile.complete(outputFile);
+    }
+
+    /**
+     * Hands out the file clients download. If it is not the PCM master itself, the master
+     * is deleted once no stream is reading it.
+     */
+    void publish(Path outputFile) {
+        Path master = finalFile.join();
+        publishedFile = outputFile;
+        if (outputFile.equals(master)) {
+            return;
+        }
+        boolean unused;
+        synchronized (readerLock) {
+            masterRetired = true;
+            unused = readers == 0;
+        }
+        if (unused) {
+            FileUtils.deleteQuietly(master.toFile());
+        }
+    }
+
+    /**
+     * Completes with a stored result that has no PCM master to stream from, e.g. a cache hit.
+     */
+    void completePublished(Path outputFile) {
+        started.complete(List.of());
+        finalFile.complete(outputFile);
+        publishedFile = outputFile;
+        synchronized (readerLock) {
+            masterRetired = true;
+        }
+    }
+
+    void fail(Throwable cause) {
+        started.completeExceptionally(cause);
+        if (!started.isCompletedExceptionally()) {
+            started.join().forEach(chunk -> chunk.completeExceptionally(cause));
+        }
+        finalFile.completeExceptionally(cause);
+    }
+
+    /**
+     * Asks the synthesizer to skip the chunks it has not started yet.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isStarted() {
+        return started.isDone();
+    }
+
+    /**
+     * Registers a stream that is about to call {@link #streamTo}; it must call
+     * {@link #release()} when done.
+     *
+     * @return {@code false} if the PCM master is gone and the client should download
+     *         {@link #getPublishedFile()} instead
+     */
+    public boolean retain() {
+        synchronized (readerLock) {
+            if (masterRetired) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+    }
+
+    public void release() {
+        boolean deleteMaster;
+        synchronized (readerLock) {
+            deleteMaster = --readers == 0 && masterRetired;
+        }
+        if (deleteMaster) {
+            FileUtils.deleteQuietly(finalFile.join().toFile());
+        }
+    }
+
+    /**
+     * The file clients download, once synthesis and post-processing have finished.
+     */
+    public Path getPublishedFile() {
+        return publishedFile;
+    }
+
+    /**
+     * Writes a WAV header with an open-ended length followed by the PCM data of every
+     * chunk in order, each as soon as it has been synthesized.
+     */
+    public void streamTo(OutputStream outputStream, long timeoutSeconds)
+            throws IOException, InterruptedException, TimeoutException {
+        WritableByteChannel out = Channels.newChannel(outputStream);
+        List<CompletableFuture<Path>> chunks = await(started, timeoutSeconds);
+
+        boolean headerWritten = false;
+        long pcmSent = 0;
+        for (CompletableFuture<Path> chunk : chunks) {
+            Path chunkFile = await(chunk, timeoutSeconds);
+            WavHeader header = readChunkHeader(chunkFile);
+            if (header == null) {
+                break;
+            }
+            if (!headerWritten) {
+                writeStreamingHeader(out, header);
+                headerWritten = true;
+            }
+
+            long length = header.getDataLength() - header.getDataLength() % Math.max(1, header.getBlockAlign());
+            long copied = copyChunk(chunkFile, header.getDataOffset(), length, out);
+            pcmSent += copied;
+            outputStream.flush();
+            if (copied < length) {
+                break;
+            }
+        }
+
+        Path output = await(finalFile, timeoutSeconds);
+        WavHeader header = WavHeader.read(output);
+        if (!headerWritten) {
+            writeStreamingHeader(out, header);
+        }
+        try (FileChannel in = FileChannel.open(output, StandardOpenOption.READ)) {
+            copyRange(in, header.getDataOffset() + pcmSent, header.getDataLength() - pcmSent, out);
+        }
+        outputStream.flush();
+    }
+
+    private WavHeader readChunkHeader(Path chunkFile) throws IOException {
+        chunkLock.readLock().lock();
+        try {
+            return chunksRetired ? null : WavHeader.read(chunkFile);
+        } finally {
+            chunkLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies one slice at a time so a slow client never holds the lock while writing to the
+     * socket. The chunk is reopened per slice because Windows cannot delete an open file.
+     */
+    private long copyChunk(Path chunkFile, long dataOffset, long length, WritableByteChannel out) throws IOException {
+        ByteBuffer slice = ByteBuffer.allocate(COPY_SLICE_BYTES);
+        long copied = 0;
+        while (copied < length) {
+            slice.clear();
+            slice.limit((int) Math.min(COPY_SLICE_BYTES, length - copied));
+            chunkLock.readLock().lock();
+            try {
+                if (chunksRetired) {
+                    return copied;
+                }
+                try (FileChannel in = FileChannel.open(chunkFile, StandardOpenOption.READ)) {
+                    while (slice.hasRemaining() && in.read(slice, dataOffset + copied + slice.position()) > 0) {
+                        // keep reading until the slice is full
+                    }
+                }
+            } finally {
+                chunkLock.readLock().unlock();
+            }
+            slice.flip();
+            copied += slice.remaining();
+            while (slice.hasRemaining()) {
+                out.write(slice);
+            }
+            if (slice.limit() == 0) {
+                break;
+            }
+        }
+        return copied;
+    }
+
+    private static void copyRange(FileChannel in, long position, long count, WritableByteChannel out) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long n = in.transferTo(position + transferred, count - transferred, out);
+            if (n <= 0) {
+                break;
+            }
+            transferred += n;
+        }
+    }
+
+    private static void writeStreamingHeader(WritableByteChannel out, WavHeader format) throws IOException {
+        ByteBuffer header = format.toBytes(WavHeader.MAX_DATA_LENGTH);
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long timeoutSeconds)
+            throws IOException, InterruptedException, TimeoutException {
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Synthesis failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
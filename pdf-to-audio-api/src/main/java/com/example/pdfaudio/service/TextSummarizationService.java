@@ -1,105 +1,914 @@
 package com.example.pdfaudio.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Frequency-based extractive summarizer.
+ * <p>
+ * The text is cleaned, split into sentences and tokenized in a single character-level
+ * pass. Words are mapped to int ids in a {@link TermTable} without creating a String per
+ * word, counted in a primitive array, and sentences are kept as spans of the cleaned
+ * text. The result is identical to the original regex based algorithm:
+ * <ol>
+ *   <li>drop every character other than ASCII letters, digits, whitespace and {@code .,!?},
+ *       collapse whitespace runs to one space and trim;</li>
+ *   <li>sentences are the pieces between runs of {@code .!?};</li>
+ *   <li>word frequencies count whitespace separated tokens of the whole text, reduced to
+ *       their lower-cased letters, that are longer than two letters and not stop words;</li>
+ *   <li>a sentence longer than ten characters scores the average frequency of its words;</li>
+ *   <li>the best quarter of the sentences (at least two, ties going to the earlier one) is
+ *       joined in document order.</li>
+ * </ol>
+ * Long documents are summarized with a {@link StreamingSummary}, which never holds the
+ * whole text and produces the same summary.
+ * <p>
+ * The {@link Engine#TEXTRANK} engine ranks the same sentences by centrality in a
+ * similarity graph instead; see {@link TextRankSummarizer}.
+ */
 @Service
 public class TextSummarizationService {
 
+    /**
+     * How sentences are scored; selectable per request.
+     */
+    public enum Engine {
+        FREQUENCY, TEXTRANK
+    }
+
+    private static final String[] STOP_WORDS = {"the", "a", "an", "and", "or", "but", "in",
+            "on", "at", "to", "for", "of", "with", "by", "is", "are", "was",
+            "were", "be", "been", "have", "has", "had", "do", "does", "did",
+            "will", "would", "could", "should", "may", "might", "must", "can",
+            "this", "that", "these", "those", "i", "you", "he", "she", "it",
+            "we", "they", "me", "him", "her", "us", "them"};
+
+    private static final int READ_BUFFER_CHARS = 8192;
+
+    @Value("${summarizer.default.engine:frequency}")
+    private String defaultEngine;
+
+    @Value("${summarizer.textrank.parallelism:0}")
+    private int textRankParallelism;
+
+    private ForkJoinPool textRankPool;
+
+    @PostConstruct
+    public void init() {
+        textRankPool = new ForkJoinPool(textRankParallelism > 0
+                ? textRankParallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        textRankPool.shutdown();
+    }
+
+    /**
+     * The engine with the given name, or {@code summarizer.default.engine} if none is given.
+     *
+     * @throws IllegalArgumentException if there is no such engine
+     */
+    public Engine engine(String name) {
+        String engine = StringUtils.isBlank(name) ? defaultEngine : name.trim();
+        for (Engine candidate : Engine.values()) {
+            if (candidate.name().equalsIgnoreCase(engine)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("Unknown summarizer: " + engine
+                + " (use " + Arrays.toString(Engine.values()).toLowerCase() + ")");
+    }
+
     public String generateSummary(String text) {
+        return generateSummary(text, Engine.FREQUENCY);
+    }
+
+    public String generateSummary(String text, Engine engine) {
         if (StringUtils.isBlank(text)) {
             return "No content to summarize.";
         }
 
-        // Clean and prepare text
-        String cleanText = text.replaceAll("[^a-zA-Z0-9\\s.,!?]", "")
-                              .replaceAll("\\s+", " ")
-                              .trim();
-
-        // Split into sentences
-        String[] sentences = cleanText.split("[.!?]+");
-        
-        if (sentences.length <= 3) {
-            return cleanText;
+        Tokenized doc = tokenize(text);
+        if (engine == Engine.TEXTRANK) {
+            return TextRankSummarizer.summarize(doc, textRankPool);
         }
 
-        // Calculate word frequencies
-        Map<String, Integer> wordFreq = calculateWordFrequency(cleanText.toLowerCase());
+        if (doc.sentenceCount <= 3) {
+            return new String(doc.clean, 0, doc.cleanUsed);
+        }
 
         // Score sentences based on word frequencies
-        List<ScoredSentence> scoredSentences = new ArrayList<>();
-        for (int i = 0; i < sentences.length; i++) {
-            String sentence = sentences[i].trim();
-            if (sentence.length() > 10) { // Ignore very short sentences
-                double score = calculateSentenceScore(sentence.toLowerCase(), wordFreq);
-                scoredSentences.add(new ScoredSentence(sentence, score, i));
+        double[] scores = new double[doc.sentenceCount];
+        int[] candidates = new int[doc.sentenceCount];
+        int candidateCount = 0;
+        for (int s = 0; s < doc.sentenceCount; s++) {
+            if (doc.trimmedEnd[s] - doc.trimmedStart[s] > 10) { // Ignore very short sentences
+                scores[s] = calculateSentenceScore(doc, s);
+                candidates[candidateCount++] = s;
+            }
+        }
+
+        // Select top sentences (25% of original) and restore document order
+        int summaryLength = Math.max(2, doc.sentenceCount / 4);
+        int[] top = selectTopSentences(candidates, candidateCount, scores, summaryLength);
+        Arrays.sort(top);
+        return joinSentences(doc, top);
+    }
+
+    /**
+     * Joins the given sentences, in the given order, into a summary.
+     */
+    static String joinSentences(Tokenized doc, int[] sentences) {
+        StringBuilder summary = new StringBuilder();
+        for (int s : sentences) {
+            if (summary.length() > 0) {
+                summary.append(". ");
+            }
+            summary.append(doc.clean, doc.trimmedStart[s], doc.trimmedEnd[s] - doc.trimmedStart[s]);
+        }
+        return endWithPeriod(summary);
+    }
+
+    /**
+     * Starts a summary of text too large to hold in memory, such as the extracted text of
+     * a book. Write the text to the returned summary once, as it becomes available, and
+     * then call {@link StreamingSummary#summarize} with a reader over the same text.
+     */
+    public StreamingSummary startStreamingSummary() {
+        return new FrequencySummary();
+    }
+
+    /**
+     * Same as {@link #startStreamingSummary()}, for the given engine.
+     */
+    public StreamingSummary startStreamingSummary(Engine engine) {
+        return engine == Engine.TEXTRANK ? new TextRankSummary(textRankPool) : new FrequencySummary();
+    }
+
+    /**
+     * Two-pass summary with the same result as {@link #generateSummary(String, Engine)}.
+     * Write the text once, then call {@link #summarize} with a reader over the same text.
+     */
+    public abstract static class StreamingSummary extends Writer {
+
+        private long length;
+        private boolean blank = true;
+        private boolean finished;
+
+        StreamingSummary() {
+        }
+
+        /** First pass over a piece of the text. */
+        abstract void feed(char[] text, int offset, int count);
+
+        /** End of the first pass. */
+        abstract void endOfText();
+
+        /** Second pass over the whole text of a document that is not blank. */
+        abstract String summarizeText(Reader text) throws IOException;
+
+        @Override
+        public void write(char[] text, int offset, int count) {
+            if (finished) {
+                throw new IllegalStateException("Summary text is already complete");
+            }
+            length += count;
+            for (int i = offset; blank && i < offset + count; i++) {
+                blank = Character.isWhitespace(text[i]);
+            }
+            feed(text, offset, count);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        /**
+         * Ends the first pass; called by {@link #summarize} if not called before.
+         */
+        @Override
+        public void close() {
+            if (!finished) {
+                finished = true;
+                endOfText();
             }
         }
 
-        // Sort by score and select top sentences
-        int summaryLength = Math.max(2, sentences.length / 4); // 25% of original
-        List<ScoredSentence> topSentences = scoredSentences.stream()
-                .sorted((s1, s2) -> Double.compare(s2.score, s1.score))
-                .limit(summaryLength)
-                .sorted(Comparator.comparingInt(s -> s.originalIndex))
-                .collect(Collectors.toList());
+        public long getTextLength() {
+            return length;
+        }
 
-        // Combine selected sentences
-        String summary = topSentences.stream()
-                .map(s -> s.sentence)
-                .collect(Collectors.joining(". "));
+        public boolean isBlank() {
+            return blank;
+        }
 
-        return summary + (summary.endsWith(".") ? "" : ".");
+        /**
+         * Reads the text a second time and returns its summary.
+         */
+        public String summarize(Reader text) throws IOException {
+            close();
+            if (blank) {
+                return "No content to summarize.";
+            }
+            return summarizeText(text);
+        }
     }
 
-    private Map<String, Integer> calculateWordFrequency(String text) {
-        Map<String, Integer> wordFreq = new HashMap<>();
-        String[] words = text.split("\\s+");
-        
-        Set<String> stopWords = Set.of("the", "a", "an", "and", "or", "but", "in", 
-                "on", "at", "to", "for", "of", "with", "by", "is", "are", "was", 
-                "were", "be", "been", "have", "has", "had", "do", "does", "did",
-                "will", "would", "could", "should", "may", "might", "must", "can",
-                "this", "that", "these", "those", "i", "you", "he", "she", "it",
-                "we", "they", "me", "him", "her", "us", "them");
+    /**
+     * Frequency summary of a stream.
+     * <p>
+     * Text written to this writer is tokenized straight away to count term frequencies and
+     * sentences; nothing but the vocabulary is retained. The second pass scores every
+     * sentence as it is read and keeps the best ones in a heap the size of the summary, so
+     * memory depends on the vocabulary and the summary length, not on the document length.
+     */
+    private static final class FrequencySummary extends StreamingSummary {
 
-        for (String word : words) {
-            word = word.replaceAll("[^a-zA-Z]", "").toLowerCase();
-            if (word.length() > 2 && !stopWords.contains(word)) {
-                wordFreq.put(word, wordFreq.getOrDefault(word, 0) + 1);
+        private final TermCounter counter = new TermCounter();
+
+        @Override
+        void feed(char[] text, int offset, int count) {
+            counter.feed(text, offset, count);
+        }
+
+        @Override
+        void endOfText() {
+            counter.finish();
+        }
+
+        @Override
+        String summarizeText(Reader text) throws IOException {
+            SentenceSelector selector = new SentenceSelector(counter.terms, counter.nonEmptySentences);
+            char[] buffer = new char[READ_BUFFER_CHARS];
+            int read;
+            while ((read = text.read(buffer)) != -1) {
+                selector.feed(buffer, 0, read);
             }
+            selector.finish();
+            return selector.summary();
         }
-        return wordFreq;
     }
 
-    private double calculateSentenceScore(String sentence, Map<String, Integer> wordFreq) {
-        String[] words = sentence.split("\\s+");
+    /**
+     * TextRank summary of a stream. The first pass only checks for text; the second
+     * tokenizes the document, whose cleaned text and word ids the graph needs in memory.
+     */
+    private static final class TextRankSummary extends StreamingSummary {
+
+        private final ForkJoinPool pool;
+
+        TextRankSummary(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        void feed(char[] text, int offset, int count) {
+        }
+
+        @Override
+        void endOfText() {
+        }
+
+        @Override
+        String summarizeText(Reader text) throws IOException {
+            return TextRankSummarizer.summarize(tokenize(text), pool);
+        }
+    }
+
+    static String endWithPeriod(StringBuilder summary) {
+        if (summary.length() == 0 || summary.charAt(summary.length() - 1) != '.') {
+            summary.append('.');
+        }
+        return summary.toString();
+    }
+
+    private double calculateSentenceScore(Tokenized doc, int sentence) {
         double score = 0;
         int validWords = 0;
+        for (int i = doc.wordStart[sentence]; i < doc.wordStart[sentence + 1]; i++) {
+            int frequency = doc.terms.count(doc.words[i]);
+            if (frequency > 0) {
+                score += frequency;
+                validWords++;
+            }
+        }
+        return validWords > 0 ? score / validWords : 0;
+    }
+
+    /**
+     * Keeps the {@code limit} best candidates in a min-heap ordered by score, then by
+     * position, so equal scores resolve to the earlier sentence.
+     */
+    static int[] selectTopSentences(int[] candidates, int candidateCount, double[] scores, int limit) {
+        int[] heap = new int[Math.min(limit, candidateCount)];
+        int size = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int sentence = candidates[i];
+            if (size < heap.length) {
+                heap[size] = sentence;
+                siftUp(heap, size++, scores);
+            } else if (heap.length > 0 && ranksAbove(sentence, heap[0], scores)) {
+                heap[0] = sentence;
+                siftDown(heap, size, scores);
+            }
+        }
+        return heap;
+    }
+
+    private static boolean ranksAbove(int a, int b, double[] scores) {
+        return ranksAbove(scores[a], a, scores[b], b);
+    }
+
+    private static boolean ranksAbove(double scoreA, int a, double scoreB, int b) {
+        int byScore = Double.compare(scoreA, scoreB);
+        return byScore > 0 || (byScore == 0 && a < b);
+    }
+
+    private static void siftUp(int[] heap, int index, double[] scores) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksAbove(heap[parent], heap[index], scores)) {
+                break;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, double[] scores) {
+        int index = 0;
+        while (true) {
+            int weakest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && ranksAbove(heap[weakest], heap[left], scores)) {
+                weakest = left;
+            }
+            if (right < size && ranksAbove(heap[weakest], heap[right], scores)) {
+                weakest = right;
+            }
+            if (weakest == index) {
+                return;
+            }
+            swap(heap, index, weakest);
+            index = weakest;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+
+    /**
+     * Cleans and tokenizes the text in one pass. Two tokenizations run side by side:
+     * whitespace tokens of the whole text feed the frequency counts, while the words of
+     * each sentence (which also end at {@code .!?}) are recorded as term ids for scoring.
+     */
+    private static Tokenized tokenize(String text) {
+        Tokenized doc = new Tokenized(text.length());
+        char[] piece = new char[Math.max(1, Math.min(text.length(), READ_BUFFER_CHARS))];
+        for (int from = 0; from < text.length(); from += piece.length) {
+            int to = Math.min(text.length(), from + piece.length);
+            text.getChars(from, to, piece, 0);
+            doc.feed(piece, 0, to - from);
+        }
+        doc.finish();
+        doc.dropTrailingEmptySentences();
+        return doc;
+    }
+
+    private static Tokenized tokenize(Reader text) throws IOException {
+        Tokenized doc = new Tokenized(READ_BUFFER_CHARS);
+        char[] buffer = new char[READ_BUFFER_CHARS];
+        int read;
+        while ((read = text.read(buffer)) != -1) {
+            doc.feed(buffer, 0, read);
+        }
+        doc.finish();
+        doc.dropTrailingEmptySentences();
+        return doc;
+    }
+
+    /**
+     * Character-level state machine shared by the in-memory and the streaming summarizer.
+     * Text can be fed in any number of pieces. Subclasses receive the whitespace tokens
+     * that are long enough to count, the words of the current sentence, and the trimmed
+     * span of every sentence as offsets into the cleaned text, whose characters are kept
+     * in a buffer until the subclass discards them.
+     */
+    abstract static class SentenceTokenizer {
+        // Lower-casing "I" in these locales yields a dotless i, which the letter filter then drops
+        private final boolean dropCapitalI;
+
+        char[] clean;
+        long cleanBase; // offset of clean[0] in the cleaned text
+        int cleanUsed;
+
+        private boolean pendingSpace;
+        private char[] tokenLetters = new char[32];
+        private int tokenLength;
+        private char[] wordLetters = new char[32];
+        private int wordLength;
+        private boolean inDelimiterRun;
+        private long sentenceStart;
+
+        SentenceTokenizer(int initialCapacity) {
+            String language = Locale.getDefault().getLanguage();
+            dropCapitalI = "tr".equals(language) || "az".equals(language);
+            clean = new char[Math.max(64, initialCapacity)];
+        }
+
+        /** A whitespace separated token of more than two letters. */
+        abstract void token(char[] letters, int length);
+
+        /** A word of more than two letters belonging to the sentence that ends next. */
+        abstract void word(char[] letters, int length);
+
+        /** A sentence spanning {@code [start, end)} of the cleaned text after trimming. */
+        abstract void sentence(long start, long end, boolean empty);
+
+        final void feed(char[] text, int offset, int count) {
+            for (int i = offset; i < offset + count; i++) {
+                char c = text[i];
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+                    pendingSpace = cleanBase + cleanUsed > 0;
+                    continue;
+                }
+                boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+                boolean delimiter = c == '.' || c == '!' || c == '?';
+                if (!letter && !delimiter && !(c >= '0' && c <= '9') && c != ',') {
+                    continue; // Removed by cleaning, does not separate tokens
+                }
+
+                if (pendingSpace) {
+                    pendingSpace = false;
+                    append(' ');
+                    endToken();
+                    endWord();
+                    if (inDelimiterRun) {
+                        inDelimiterRun = false;
+                        sentenceStart = cleanBase + cleanUsed - 1;
+                    }
+                }
+
+                if (delimiter) {
+                    if (!inDelimiterRun) {
+                        endWord();
+                        endSentence(sentenceStart, cleanBase + cleanUsed);
+                        inDelimiterRun = true;
+                    }
+                } else {
+                    if (inDelimiterRun) {
+                        inDelimiterRun = false;
+                        sentenceStart = cleanBase + cleanUsed;
+                    }
+                    if (letter && !(dropCapitalI && c == 'I')) {
+                        char lower = c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+                        if (tokenLength == tokenLetters.length) {
+                            tokenLetters = Arrays.copyOf(tokenLetters, tokenLength * 2);
+                        }
+                        tokenLetters[tokenLength++] = lower;
+                        if (wordLength == wordLetters.length) {
+                            wordLetters = Arrays.copyOf(wordLetters, wordLength * 2);
+                        }
+                        wordLetters[wordLength++] = lower;
+                    }
+                }
+                append(c);
+            }
+        }
+
+        final void finish() {
+            endToken();
+            endWord();
+            long end = cleanBase + cleanUsed;
+            endSentence(inDelimiterRun ? end : sentenceStart, end);
+        }
+
+        /**
+         * Drops buffered cleaned text before {@code offset}; no later sentence starts there.
+         */
+        final void discardBefore(long offset) {
+            int drop = (int) (offset - cleanBase);
+            System.arraycopy(clean, drop, clean, 0, cleanUsed - drop);
+            cleanUsed -= drop;
+            cleanBase = offset;
+        }
+
+        private void append(char c) {
+            if (cleanUsed == clean.length) {
+                clean = Arrays.copyOf(clean, cleanUsed * 2);
+            }
+            clean[cleanUsed++] = c;
+        }
+
+        private void endToken() {
+            if (tokenLength > 2) {
+                token(tokenLetters, tokenLength);
+            }
+            tokenLength = 0;
+        }
+
+        private void endWord() {
+            if (wordLength > 2) {
+                word(wordLetters, wordLength);
+            }
+            wordLength = 0;
+        }
+
+        private void endSentence(long start, long end) {
+            boolean empty = start == end;
+            // Whitespace is already collapsed, so at most one space sits at either end
+            if (start < end && clean[(int) (start - cleanBase)] == ' ') {
+                start++;
+            }
+            if (end > start && clean[(int) (end - 1 - cleanBase)] == ' ') {
+                end--;
+            }
+            sentence(start, end, empty);
+        }
+    }
+
+    /**
+     * Cleaned text, sentence spans and per-sentence word ids of one document.
+     */
+    static final class Tokenized extends SentenceTokenizer {
+        final TermTable terms = new TermTable();
+
+        int sentenceCount;
+        int nonEmptySentences;
+        int[] trimmedStart = new int[64];
+        int[] trimmedEnd = new int[64];
+        // Words of sentence s are words[wordStart[s]] .. words[wordStart[s + 1] - 1]
+        int[] wordStart = new int[65];
+        int[] words = new int[256];
+        int wordCount;
+
+        Tokenized(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        void token(char[] letters, int length) {
+            terms.increment(terms.idOf(letters, length));
+        }
+
+        @Override
+        void word(char[] letters, int length) {
+            if (wordCount == words.length) {
+                words = Arrays.copyOf(words, wordCount * 2);
+            }
+            words[wordCount++] = terms.idOf(letters, length);
+        }
 
-        for (String word : words) {
-            word = word.replaceAll("[^a-zA-Z]", "").toLowerCase();
-            if (word.length() > 2 && wordFreq.containsKey(word)) {
-                score += wordFreq.get(word);
+        @Override
+        void sentence(long start, long end, boolean empty) {
+            if (sentenceCount == trimmedStart.length) {
+                trimmedStart = Arrays.copyOf(trimmedStart, sentenceCount * 2);
+                trimmedEnd = Arrays.copyOf(trimmedEnd, sentenceCount * 2);
+                wordStart = Arrays.copyOf(wordStart, sentenceCount * 2 + 1);
+            }
+            trimmedStart[sentenceCount] = (int) start;
+            trimmedEnd[sentenceCount] = (int) end;
+            sentenceCount++;
+            if (!empty) {
+                nonEmptySentences = sentenceCount;
+            }
+            wordStart[sentenceCount] = wordCount;
+        }
+
+        /**
+         * String.split drops trailing empty pieces; a text ending in {@code .!?} leaves one.
+         */
+        void dropTrailingEmptySentences() {
+            sentenceCount = nonEmptySentences;
+        }
+    }
+
+    /**
+     * First pass of a streaming summary: counts terms and sentences, keeping only the
+     * cleaned text of the sentence in progress.
+     */
+    private static final class TermCounter extends SentenceTokenizer {
+        final TermTable terms = new TermTable();
+        int sentenceCount;
+        int nonEmptySentences;
+
+        TermCounter() {
+            super(0);
+        }
+
+        @Override
+        void token(char[] letters, int length) {
+            terms.increment(terms.idOf(letters, length));
+        }
+
+        @Override
+        void word(char[] letters, int length) {
+            // Words are only scored in the second pass
+        }
+
+        @Override
+        void sentence(long start, long end, boolean empty) {
+            sentenceCount++;
+            if (!empty) {
+                nonEmptySentences = sentenceCount;
+            }
+            discardBefore(end);
+        }
+    }
+
+    /**
+     * Second pass of a streaming summary: scores each sentence as it completes against the
+     * counts of the first pass and offers it to a bounded heap. Only documents of three or
+     * fewer sentences, which are returned whole, keep their cleaned text.
+     */
+    private static final class SentenceSelector extends SentenceTokenizer {
+        private final TermTable terms;
+        private final boolean keepAll;
+        private final TopSentences top;
+        private int sentence;
+        private double score;
+        private int validWords;
+
+        SentenceSelector(TermTable terms, int sentenceCount) {
+            super(0);
+            this.terms = terms;
+            this.keepAll = sentenceCount <= 3;
+            this.top = new TopSentences(keepAll ? 0 : Math.max(2, sentenceCount / 4));
+        }
+
+        @Override
+        void token(char[] letters, int length) {
+            // Counted in the first pass
+        }
+
+        @Override
+        void word(char[] letters, int length) {
+            int id = terms.find(letters, length);
+            int frequency = id >= 0 ? terms.count(id) : 0;
+            if (frequency > 0) {
+                score += frequency;
                 validWords++;
             }
         }
 
-        return validWords > 0 ? score / validWords : 0;
+        @Override
+        void sentence(long start, long end, boolean empty) {
+            if (!keepAll) {
+                if (end - start > 10) { // Ignore very short sentences
+                    double average = validWords > 0 ? score / validWords : 0;
+                    if (top.accepts(sentence, average)) {
+                        top.add(sentence, average, new String(clean, (int) (start - cleanBase), (int) (end - start)));
+                    }
+                }
+                discardBefore(end);
+            }
+            sentence++;
+            score = 0;
+            validWords = 0;
+        }
+
+        String summary() {
+            return keepAll ? new String(clean, 0, cleanUsed) : top.joinInDocumentOrder();
+        }
     }
 
-    private static class ScoredSentence {
-        String sentence;
-        double score;
-        int originalIndex;
+    /**
+     * Min-heap of the best sentences seen so far with their text, ordered like
+     * {@link #selectTopSentences}.
+     */
+    private static final class TopSentences {
+        private final int[] sentences;
+        private final double[] scores;
+        private final String[] texts;
+        private int size;
+
+        TopSentences(int limit) {
+            sentences = new int[limit];
+            scores = new double[limit];
+            texts = new String[limit];
+        }
+
+        boolean accepts(int sentence, double score) {
+            return size < sentences.length
+                    || (size > 0 && ranksAbove(score, sentence, scores[0], sentences[0]));
+        }
+
+        void add(int sentence, double score, String text) {
+            if (size < sentences.length) {
+                set(size, sentence, score, text);
+                siftUp(size++);
+            } else {
+                set(0, sentence, score, text);
+                siftDown();
+            }
+        }
+
+        private void set(int index, int sentence, double score, String text) {
+            sentences[index] = sentence;
+            scores[index] = score;
+            texts[index] = text;
+        }
+
+        String joinInDocumentOrder() {
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = ((long) sentences[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            StringBuilder summary = new StringBuilder();
+            for (long entry : order) {
+                if (summary.length() > 0) {
+                    summary.append(". ");
+                }
+                summary.append(texts[(int) entry]);
+            }
+            return endWithPeriod(summary);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!ranksAbove(scores[parent], sentences[parent], scores[index], sentences[index])) {
+                    break;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown() {
+            int index = 0;
+            while (true) {
+                int weakest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && ranksAbove(scores[weakest], sentences[weakest], scores[left], sentences[left])) {
+                    weakest = left;
+                }
+                if (right < size && ranksAbove(scores[weakest], sentences[weakest], scores[right], sentences[right])) {
+                    weakest = right;
+                }
+                if (weakest == index) {
+                    return;
+                }
+                swap(index, weakest);
+                index = weakest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int sentence = sentences[i];
+            sentences[i] = sentences[j];
+            sentences[j] = sentence;
+            double score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+            String text = texts[i];
+            texts[i] = texts[j];
+            texts[j] = text;
+        }
+    }
+
+    /**
+     * Open-addressing map from lower-case letter sequences to dense int ids, storing the
+     * letters of all terms in one shared char array. Stop words take the first ids and
+     * are never counted.
+     */
+    static final class TermTable {
+        private char[] chars = new char[4096];
+        private int charsUsed;
+        private int[] termOffset = new int[1024];
+        private int[] termLength = new int[1024];
+        private int[] termHash = new int[1024];
+        private int[] counts = new int[1024];
+        private int size;
+        private int[] slots = new int[2048]; // term id + 1, 0 when empty
+        private final int stopWordCount;
+
+        TermTable() {
+            for (String stopWord : STOP_WORDS) {
+                char[] letters = stopWord.toCharArray();
+                idOf(letters, letters.length);
+            }
+            stopWordCount = size;
+        }
+
+        int count(int id) {
+            return counts[id];
+        }
+
+        boolean isStopWord(int id) {
+            return id < stopWordCount;
+        }
+
+        void increment(int id) {
+            if (id >= stopWordCount) {
+                counts[id]++;
+            }
+        }
+
+        int idOf(char[] letters, int length) {
+            int hash = hash(letters, length);
+            int slot = slotOf(letters, length, hash);
+            return slots[slot] != 0 ? slots[slot] - 1 : insert(letters, length, hash, slot);
+        }
+
+        /**
+         * Id of a known term, or -1 without adding it.
+         */
+        int find(char[] letters, int length) {
+            return slots[slotOf(letters, length, hash(letters, length))] - 1;
+        }
+
+        /**
+         * The slot holding the term, or the empty slot where it would be inserted.
+         */
+        private int slotOf(char[] letters, int length, int hash) {
+            int mask = slots.length - 1;
+            int slot = mix(hash) & mask;
+            while (true) {
+                int entry = slots[slot];
+                if (entry == 0 || (termHash[entry - 1] == hash && equalsTerm(entry - 1, letters, length))) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private static int hash(char[] letters, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + letters[i];
+            }
+            return hash;
+        }
+
+        private boolean equalsTerm(int id, char[] letters, int length) {
+            if (termLength[id] != length) {
+                return false;
+            }
+            int offset = termOffset[id];
+            for (int i = 0; i < length; i++) {
+                if (chars[offset + i] != letters[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int insert(char[] letters, int length, int hash, int slot) {
+            if (size == termOffset.length) {
+                int capacity = size * 2;
+                termOffset = Arrays.copyOf(termOffset, capacity);
+                termLength = Arrays.copyOf(termLength, capacity);
+                termHash = Arrays.copyOf(termHash, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            if (charsUsed + length > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsUsed + length));
+            }
+            System.arraycopy(letters, 0, chars, charsUsed, length);
+            int id = size++;
+            termOffset[id] = charsUsed;
+            termLength[id] = length;
+            termHash[id] = hash;
+            charsUsed += length;
+            slots[slot] = id + 1;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = mix(termHash[id]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
 
-        ScoredSentence(String sentence, double score, int originalIndex) {
-            this.sentence = sentence;
-            this.score = score;
-            this.originalIndex = originalIndex;
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
         }
     }
 }
@@ -1,12 +1,33 @@
 package com.example.pdfaudio.service;
 
+import com.example.pdfaudio.audio.AudioOutputFormat;
+import com.example.pdfaudio.audio.AudioPostProcessor;
+import com.example.pdfaudio.audio.WavConcatenator;
+import com.example.pdfaudio.audio.WavHeader;
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -18,36 +39,424 @@ public class TextToSpeechService {
     @Value("${tts.voice.volume:100}")
     private int volume;
 
-    public String convertTextToWav(String text, String fileName) throws IOException {
-        return convertTextToWav(text, fileName, "default");
+    @Value("${tts.chunk.max.chars:400}")
+    private int chunkMaxChars;
+
+    @Value("${tts.max.concurrent:4}")
+    private int maxConcurrentSyntheses;
+
+    @Value("${audio.output.format:wav}")
+    private String outputFormat;
+
+    @Value("${audio.output.mono:false}")
+    private boolean outputMono;
+
+    @Value("${audio.output.max.sample.rate:0}")
+    private int outputMaxSampleRate;
+
+    @Value("${audio.silence.trim:false}")
+    private boolean trimSilence;
+
+    @Value("${audio.silence.threshold.db:-50}")
+    private double silenceThresholdDb;
+
+    @Value("${audio.silence.max.pause.ms:400}")
+    private int maxPauseMillis;
+
+    private volatile String[] availableVoices;
+
+    @Autowired
+    private SpeechEngine speechEngine;
+
+    @Autowired
+    @Qualifier("ttsChunkExecutor")
+    private TaskExecutor ttsChunkExecutor;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private SpeechFragmentCache fragmentCache;
+
+    // Caps engine processes across all jobs, whichever path starts them
+    private Semaphore synthesisPermits;
+
+    private AudioPostProcessor postProcessor;
+
+    // Format the engine last spoke each voice in, which cached fragments must match
+    private final Map<String, WavHeader> engineFormats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        postProcessor = new AudioPostProcessor(AudioOutputFormat.fromProperty(outputFormat), outputMono,
+                outputMaxSampleRate, trimSilence, silenceThresholdDb, maxPauseMillis);
+        synthesisPermits = new Semaphore(Math.max(1, maxConcurrentSyntheses), true);
+        pipelineMetrics.gauge("pdfaudio.tts.waiting", "Chunks waiting for a synthesis slot",
+                synthesisPermits::getQueueLength);
+    }
+
+    /**
+     * The configured rate and volume ({@code tts.voice.*}) with the given voice type.
+     */
+    public VoiceSettings voiceSettings(String voiceType) {
+        return new VoiceSettings(voiceType, speechRate, volume);
+    }
+
+    /**
+     * Format and processing of the output files, for cache keys.
+     */
+    public String getOutputSettings() {
+        return postProcessor.describe();
+    }
+
+    public String convertTextToAudio(String text, String fileName) throws IOException {
+        return convertTextToAudio(text, fileName, "default");
+    }
+
+    /**
+     * Synthesizes {@code text} into the stored audio file {@code <fileName>.<ext>}. Text longer than
+     * {@code tts.chunk.max.chars} is split at sentence boundaries and the chunks are
+     * synthesized concurrently, then their PCM data is joined into the final file, so the
+     * total time tracks the slowest chunk instead of the whole text.
+     * <p>
+     * The joined PCM goes to a temporary master that streams read from. It is then trimmed,
+     * downsampled and encoded into the output file as configured under {@code audio.*}, or
+     * linked there as is for plain WAV output, so the output only ever appears complete.
+     * <p>
+     * With the {@link SpeechFragmentCache} enabled, sentences it holds are copied from it
+     * instead of synthesized, and sentences that keep recurring are synthesized on their own
+     * so that they can be added to it.
+     */
+    public String convertTextToAudio(String text, String fileName, String voiceType) throws IOException {
+        return convertTextToAudio(text, fileName, voiceType, new SynthesisProgress());
+    }
+
+    /**
+     * Same as {@link #convertTextToAudio(String, String, String)}, publishing each chunk to
+     * {@code progress} as it is produced so the audio can be streamed while synthesis runs.
+     */
+    public String convertTextToAudio(String text, String fileName, String voiceType, SynthesisProgress progress)
+            throws IOException {
+        return convertTextToAudio(text, fileName, voiceSettings(voiceType), progress, null);
     }
 
-    public String convertTextToWav(String text, String fileName, String voiceType) throws IOException {
+    /**
+     * Same as {@link #convertTextToAudio(String, String, String, SynthesisProgress)} with an
+     * explicit rate and volume, keeping the sentence chunks in {@code chunkDirectory} if it
+     * is not {@code null}. Chunks already there from an earlier attempt at the same text are
+     * reused rather than synthesized again, and the directory is left in place for the
+     * caller to delete.
+     */
+    public String convertTextToAudio(String text, String fileName, VoiceSettings voice, SynthesisProgress progress,
+                                   Path chunkDirectory) throws IOException {
+        Path masterPath = null;
+        Path encodedPath = null;
         try {
-            // Try Windows SAPI first (best quality on Windows)
-            if (System.getProperty("os.name").toLowerCase().contains("windows")) {
-                return generateWindowsSAPIAudio(text, fileName, voiceType);
+            Path outputPath = fileStorageService.audioPath(fileName + "." + postProcessor.getFormat().getExtension());
+            masterPath = fileStorageService.newTempFile(outputPath);
+
+            List<Chunk> chunks = planChunks(text, voice);
+            if (chunks.size() <= 1 && (chunks.isEmpty() || chunks.get(0).cachedKeys == null)) {
+                CompletableFuture<Path> onlyChunk = progress.start(1).get(0);
+                synthesizeChunk(text, masterPath, voice, chunks.isEmpty() ? null : chunks.get(0).storeKey);
+                onlyChunk.complete(masterPath);
             } else {
-                // Fallback to other methods for non-Windows systems
-                return generateLinuxTTSAudio(text, fileName);
+                synthesizeChunks(chunks, masterPath, voice, progress, chunkDirectory);
             }
+            progress.complete(masterPath);
+
+            if (postProcessor.isPassThrough()) {
+                fileStorageService.link(masterPath, outputPath);
+            } else {
+                long encodeStart = System.nanoTime();
+                encodedPath = fileStorageService.newTempFile(outputPath);
+                postProcessor.process(masterPath, encodedPath);
+                fileStorageService.commit(encodedPath, outputPath);
+                pipelineMetrics.recordStage(PipelineMetrics.STAGE_ENCODE, System.nanoTime() - encodeStart);
+            }
+            progress.publish(outputPath);
+            return outputPath.toString();
         } catch (Exception e) {
+            progress.fail(e);
+            if (masterPath != null) {
+                FileUtils.deleteQuietly(masterPath.toFile());
+            }
+            if (encodedPath != null) {
+                FileUtils.deleteQuietly(encodedPath.toFile());
+            }
             throw new IOException("Failed to convert text to speech: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Uses Windows Speech API (SAPI) via PowerShell for high-quality human speech
+     * Synthesizes and post-processes one short sentence in {@code directory}, bypassing
+     * storage and the fragment cache, so the first conversion does not pay for starting
+     * the engine and loading the audio code. The files are deleted again.
+     *
+     * @return the engine's output size in bytes
+     */
+    public long synthesizeProbe(String text, Path directory) throws IOException {
+        Path wav = Files.createTempFile(directory, "probe-", ".wav");
+        Path encoded = Files.createTempFile(directory, "probe-", "." + postProcessor.getFormat().getExtension());
+        try {
+            VoiceSettings voice = voiceSettings("default");
+            rememberFormat(synthesizeToFile(text, wav, voice), wav, voice);
+            if (!postProcessor.isPassThrough()) {
+                postProcessor.process(wav, encoded);
+            }
+            return Files.size(wav);
+        } finally {
+            Files.deleteIfExists(wav);
+            Files.deleteIfExists(encoded);
+        }
+    }
+
+    /**
+     * Groups whole sentences into chunks of at most {@code tts.chunk.max.chars} characters.
+     * A single sentence longer than the limit becomes a chunk of its own.
+     * <p>
+     * With the fragment cache enabled, runs of cached sentences become chunks copied from
+     * the cache, and a sentence the cache admits becomes a chunk of its own that is stored
+     * once synthesized; if it occurs again in the same text, that chunk's audio is copied.
+     */
+    List<Chunk> planChunks(String text, VoiceSettings voice) {
+        List<Chunk> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        List<String> cachedKeys = new ArrayList<>();
+        StringBuilder cachedText = new StringBuilder();
+        Map<String, Integer> storedChunks = new HashMap<>();
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.US);
+        sentences.setText(text);
+
+        int start = sentences.first();
+        for (int end = sentences.next(); end != BreakIterator.DONE; start = end, end = sentences.next()) {
+            String sentence = text.substring(start, end).trim();
+            if (sentence.isEmpty()) {
+                continue;
+            }
+            if (fragmentCache.isEnabled()) {
+                String key = fragmentCache.key(sentence, voice);
+                if (fragmentCache.isCached(key)) {
+                    flushSynthesized(chunks, current);
+                    cachedKeys.add(key);
+                    appendSentence(cachedText, sentence);
+                    continue;
+                }
+                flushCached(chunks, cachedKeys, cachedText);
+                Integer storedChunk = storedChunks.get(key);
+                if (storedChunk != null || fragmentCache.admit(key)) {
+                    flushSynthesized(chunks, current);
+                    if (storedChunk != null) {
+                        chunks.add(new Chunk(sentence, null, null, storedChunk));
+                    } else {
+                        storedChunks.put(key, chunks.size());
+                        chunks.add(new Chunk(sentence, null, key, -1));
+                    }
+                    continue;
+                }
+            }
+            if (current.length() > 0 && current.length() + 1 + sentence.length() > chunkMaxChars) {
+                flushSynthesized(chunks, current);
+            }
+            appendSentence(current, sentence);
+        }
+        flushSynthesized(chunks, current);
+        flushCached(chunks, cachedKeys, cachedText);
+        return chunks;
+    }
+
+    private static void appendSentence(StringBuilder text, String sentence) {
+        if (text.length() > 0) {
+            text.append(' ');
+        }
+        text.append(sentence);
+    }
+
+    private static void flushSynthesized(List<Chunk> chunks, StringBuilder current) {
+        if (current.length() > 0) {
+            chunks.add(new Chunk(current.toString(), null, null, -1));
+            current.setLength(0);
+        }
+    }
+
+    private static void flushCached(List<Chunk> chunks, List<String> cachedKeys, StringBuilder cachedText) {
+        if (!cachedKeys.isEmpty()) {
+            chunks.add(new Chunk(cachedText.toString(), new ArrayList<>(cachedKeys), null, -1));
+            cachedKeys.clear();
+            cachedText.setLength(0);
+        }
+    }
+
+    private void synthesizeChunks(List<Chunk> chunks, Path outputPath, VoiceSettings voice, SynthesisProgress progress,
+                                  Path chunkDirectory) throws IOException {
+        Path chunkDir = chunkDirectory != null ? chunkDirectory : Files.createTempDirectory("tts-chunks-");
+        try {
+            List<CompletableFuture<Path>> published = progress.start(chunks.size());
+            List<Path> chunkFiles = new ArrayList<>(chunks.size());
+            List<CompletableFuture<Void>> pending = new ArrayList<>(chunks.size());
+            List<CompletableFuture<Void>> chunkTasks = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                Chunk chunk = chunks.get(i);
+                CompletableFuture<Path> chunkReady = published.get(i);
+                // Named after the text too, so a kept chunk is only reused for the same sentences
+                Path chunkFile = chunkDir.resolve(String.format("chunk-%05d-%08x.wav", i, chunk.text.hashCode()));
+                chunkFiles.add(chunkFile);
+                if (Files.exists(chunkFile)) {
+                    chunkReady.complete(chunkFile);
+                    chunkTasks.add(CompletableFuture.completedFuture(null));
+                    continue;
+                }
+                // A chunk only appears under its name once complete
+                Path partial = chunkDir.resolve(".partial-" + chunkFile.getFileName());
+                CompletableFuture<Void> task;
+                if (chunk.copyOf >= 0) {
+                    Path original = chunkFiles.get(chunk.copyOf);
+                    task = chunkTasks.get(chunk.copyOf).thenRunAsync(() -> {
+                        try {
+                            Files.copy(original, partial, StandardCopyOption.REPLACE_EXISTING);
+                            Files.move(partial, chunkFile, StandardCopyOption.ATOMIC_MOVE);
+                            chunkReady.complete(chunkFile);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, ttsChunkExecutor);
+                } else {
+                    task = CompletableFuture.runAsync(() -> {
+                        if (progress.isCancelled()) {
+                            throw new CancellationException("Synthesis was cancelled");
+                        }
+                        try {
+                            if (chunk.cachedKeys == null || !fragmentCache.write(chunk.cachedKeys, partial,
+                                    engineFormats.get(voice.toString()))) {
+                                synthesizeChunk(chunk.text, partial, voice, chunk.storeKey);
+                            }
+                            Files.move(partial, chunkFile, StandardCopyOption.ATOMIC_MOVE);
+                            chunkReady.complete(chunkFile);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, ttsChunkExecutor);
+                }
+                chunkTasks.add(task);
+                pending.add(task);
+            }
+
+            try {
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                pending.forEach(future -> future.cancel(false));
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new IOException("Chunk synthesis failed: " + cause.getMessage(), cause);
+            }
+
+            long assembleStart = System.nanoTime();
+            WavConcatenator.concatenate(chunkFiles, outputPath);
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_ASSEMBLE, System.nanoTime() - assembleStart);
+            // Streams still reading chunk files switch over to the final file from here on
+            progress.retireChunks();
+        } finally {
+            if (chunkDirectory == null) {
+                FileUtils.deleteQuietly(chunkDir.toFile());
+            }
+        }
+    }
+
+    /**
+     * One unit of synthesis: sentences the engine speaks in one call, a run of sentences
+     * copied from the fragment cache ({@code cachedKeys}), or a copy of an earlier chunk
+     * with the same sentence ({@code copyOf}). A chunk with a {@code storeKey} is a single
+     * sentence that is added to the cache once synthesized.
+     */
+    static final class Chunk {
+        final String text;
+        final List<String> cachedKeys;
+        final String storeKey;
+        final int copyOf;
+
+        Chunk(String text, List<String> cachedKeys, String storeKey, int copyOf) {
+            this.text = text;
+            this.cachedKeys = cachedKeys;
+            this.storeKey = storeKey;
+            this.copyOf = copyOf;
+        }
+    }
+
+    /**
+     * Synthesizes one chunk and, if {@code storeKey} is not {@code null}, adds it to the
+     * fragment cache. Audio from the fallback engine is not cached, as it sounds different
+     * and may not match the format of the audio around it.
+     */
+    private void synthesizeChunk(String text, Path outputPath, VoiceSettings voice, String storeKey)
+            throws IOException {
+        String engine = synthesizeToFile(text, outputPath, voice);
+        if (rememberFormat(engine, outputPath, voice) && storeKey != null) {
+            fragmentCache.store(storeKey, outputPath);
+        }
+    }
+
+    /**
+     * Notes the format of audio the primary engine produced, for checking cached fragments.
+     *
+     * @return whether the audio came from the primary engine
      */
-    private String generateWindowsSAPIAudio(String text, String fileName, String voiceType) throws IOException {
+    private boolean rememberFormat(String engine, Path wavFile, VoiceSettings voice) throws IOException {
+        if (TtsWorkerPool.FALLBACK_RESPONSE.equals(engine)) {
+            return false;
+        }
+        if (fragmentCache.isEnabled()) {
+            engineFormats.put(voice.toString(), WavHeader.read(wavFile));
+        }
+        return true;
+    }
+
+    /**
+     * @return the engine that produced the audio, {@link TtsWorkerPool#FALLBACK_RESPONSE} if
+     *         festival spoke it because espeak failed
+     */
+    private String synthesizeToFile(String text, Path outputPath, VoiceSettings voice) throws IOException {
+        try {
+            synthesisPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a synthesis slot", e);
+        }
+        long start = System.nanoTime();
         try {
-            // Create output directory
-            Path audioDir = Paths.get("audio-files");
-            if (!Files.exists(audioDir)) {
-                Files.createDirectories(audioDir);
+            if (speechEngine.isEnabled()) {
+                return speechEngine.synthesize(text, outputPath, voice);
             }
 
-            String outputPath = audioDir.resolve(fileName + ".wav").toString();
+            // Try Windows SAPI first (best quality on Windows)
+            if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+                generateWindowsSAPIAudio(text, outputPath, voice);
+                return "OK";
+            }
+            // Fallback to other methods for non-Windows systems
+            return generateLinuxTTSAudio(text, outputPath, voice);
+        } finally {
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_TTS_SYNTHESIS, System.nanoTime() - start);
+            synthesisPermits.release();
+        }
+    }
+
+    private Process startProcess(ProcessBuilder processBuilder) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return processBuilder.start();
+        } finally {
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_TTS_SPAWN, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Uses Windows Speech API (SAPI) via PowerShell for high-quality human speech
+     */
+    private String generateWindowsSAPIAudio(String text, Path outputWav, VoiceSettings voice) throws IOException {
+        try {
+            String outputPath = outputWav.toString();
             
             // Clean text for PowerShell (escape special characters)
             String cleanText = text.replace("\"", "'")
@@ -62,6 +471,7 @@ public class TextToSpeechService {
             psScript.append("$synth = New-Object System.Speech.Synthesis.SpeechSynthesizer; ");
             
             // Configure voice based on type
+            String voiceType = voice.getVoiceType();
             if ("female".equalsIgnoreCase(voiceType)) {
                 psScript.append("$synth.SelectVoiceByHints([System.Speech.Synthesis.VoiceGender]::Female); ");
             } else if ("male".equalsIgnoreCase(voiceType)) {
@@ -69,8 +479,8 @@ public class TextToSpeechService {
             }
             
             // Set speech rate and volume
-            psScript.append(String.format("$synth.Rate = %d; ", speechRate));
-            psScript.append(String.format("$synth.Volume = %d; ", volume));
+            psScript.append(String.format("$synth.Rate = %d; ", voice.getRate()));
+            psScript.append(String.format("$synth.Volume = %d; ", voice.getVolume()));
             
             // Set output to WAV file
             psScript.append(String.format("$synth.SetOutputToWaveFile('%s'); ", outputPath.replace("\\", "\\\\")));
@@ -86,13 +496,14 @@ public class TextToSpeechService {
             );
             
             processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
+            Process process = startProcess(processBuilder);
             
             // Wait for completion with timeout
             boolean finished = process.waitFor(30, TimeUnit.SECONDS);
             
             if (!finished) {
                 process.destroyForcibly();
+                pipelineMetrics.ttsTimeout();
                 throw new IOException("TTS process timed out");
             }
             
@@ -123,44 +534,47 @@ public class TextToSpeechService {
 
     /**
      * Fallback TTS for Linux/Mac systems using espeak or festival
+     *
+     * @return {@code OK}, or {@link TtsWorkerPool#FALLBACK_RESPONSE} if festival spoke the text
      */
-    private String generateLinuxTTSAudio(String text, String fileName) throws IOException {
+    private String generateLinuxTTSAudio(String text, Path outputWav, VoiceSettings voice) throws IOException {
         try {
-            // Create output directory
-            Path audioDir = Paths.get("audio-files");
-            if (!Files.exists(audioDir)) {
-                Files.createDirectories(audioDir);
-            }
-
-            String outputPath = audioDir.resolve(fileName + ".wav").toString();
+            String outputPath = outputWav.toString();
             
             // Try espeak first (more common)
             ProcessBuilder processBuilder = new ProcessBuilder(
                 "espeak", 
                 "-w", outputPath,
-                "-s", "150", // Speed (words per minute)
+                "-s", String.valueOf(voice.espeakWordsPerMinute()), // Speed (words per minute)
+                "-a", String.valueOf(voice.espeakAmplitude(volume)), // Amplitude
                 "-p", "50",  // Pitch
                 text
             );
             
             try {
-                Process process = processBuilder.start();
+                Process process = startProcess(processBuilder);
                 boolean finished = process.waitFor(30, TimeUnit.SECONDS);
                 
                 if (finished && process.exitValue() == 0) {
-                    return outputPath;
+                    return "OK";
+                }
+                if (!finished) {
+                    process.destroyForcibly();
+                    pipelineMetrics.ttsTimeout();
                 }
             } catch (Exception e) {
                 // espeak not available, try festival
             }
             
-            // Try festival as fallback
+            // Try festival as fallback, at espeak's rate so it joins chunks espeak spoke
+            pipelineMetrics.ttsFallback();
             processBuilder = new ProcessBuilder(
                 "text2wave", 
+                "-F", String.valueOf(TtsWorkerPool.ESPEAK_SAMPLE_RATE),
                 "-o", outputPath
             );
             
-            Process process = processBuilder.start();
+            Process process = startProcess(processBuilder);
             
             // Send text to festival
             try (OutputStreamWriter writer = new OutputStreamWriter(process.getOutputStream())) {
@@ -174,7 +588,7 @@ public class TextToSpeechService {
                 throw new IOException("TTS generation failed on Linux/Mac system");
             }
             
-            return outputPath;
+            return TtsWorkerPool.FALLBACK_RESPONSE;
             
         } catch (Exception e) {
             throw new IOException("Error generating Linux TTS audio: " + e.getMessage(), e);
@@ -182,9 +596,24 @@ public class TextToSpeechService {
     }
 
     /**
-     * Get available voices for the current system
+     * Get available voices for the current system. Discovered once, since the installed
+     * voices do not change while the application is running.
      */
     public String[] getAvailableVoices() {
+        String[] voices = availableVoices;
+        if (voices == null) {
+            synchronized (this) {
+                voices = availableVoices;
+                if (voices == null) {
+                    voices = discoverVoices();
+                    availableVoices = voices;
+                }
+            }
+        }
+        return voices.clone();
+    }
+
+    private String[] discoverVoices() {
         if (System.getProperty("os.name").toLowerCase().contains("windows")) {
             try {
                 ProcessBuilder processBuilder = new ProcessBuilder(
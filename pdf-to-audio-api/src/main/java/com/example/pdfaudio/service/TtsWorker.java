@@ -0,0 +1,129 @@
+package com.example.pdfaudio.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * One long-running synthesizer process. Requests are written to its stdin as lines and
+ * every request is answered by exactly one line on stdout, read by a daemon thread so
+ * callers can wait with a timeout.
+ */
+class TtsWorker {
+
+    static final String EXITED = "ERR worker exited";
+
+    private final Process process;
+    private final BufferedWriter stdin;
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+    private int completedJobs;
+    private long lastUsedNanos = System.nanoTime();
+
+    private TtsWorker(Process process) {
+        this.process = process;
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        Thread reader = new Thread(this::readResponses, "tts-worker-" + process.pid());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Starts the process and waits for it to print {@code READY}, which it does once the
+     * engine is loaded.
+     */
+    static TtsWorker start(List<String> command, long startupTimeoutSeconds) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        TtsWorker worker = new TtsWorker(processBuilder.start());
+        try {
+            String greeting = worker.awaitResponse(startupTimeoutSeconds);
+            if (!"READY".equals(greeting)) {
+                worker.destroy();
+                throw new IOException("TTS worker failed to start: " + greeting);
+            }
+        } catch (TimeoutException e) {
+            worker.destroy();
+            throw new IOException("TTS worker did not become ready within " + startupTimeoutSeconds + "s");
+        }
+        return worker;
+    }
+
+    /**
+     * Sends one request and returns the worker's one-line answer.
+     */
+    String request(List<String> lines, long timeoutSeconds) throws IOException, TimeoutException {
+        responses.clear();
+        for (String line : lines) {
+            stdin.write(line);
+            stdin.newLine();
+        }
+        stdin.flush();
+        String response = awaitResponse(timeoutSeconds);
+        lastUsedNanos = System.nanoTime();
+        return response;
+    }
+
+    void jobCompleted() {
+        completedJobs++;
+    }
+
+    int getCompletedJobs() {
+        return completedJobs;
+    }
+
+    long getIdleSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lastUsedNanos);
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void destroy() {
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            // Process is going away anyway
+        }
+        // The engine the loop piped into would outlive it and could still write its output file
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private String awaitResponse(long timeoutSeconds) throws IOException, TimeoutException {
+        try {
+            String response = responses.poll(timeoutSeconds, TimeUnit.SECONDS);
+            if (response == null) {
+                throw new TimeoutException("No response from TTS worker within " + timeoutSeconds + "s");
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for TTS worker", e);
+        }
+    }
+
+    private void readResponses() {
+        try (BufferedReader stdout = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                if (!line.isBlank()) {
+                    responses.add(line.trim());
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed because the process was destroyed
+        }
+        responses.add(EXITED);
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.pdfaudio.service;
+
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of warm synthesizer processes, so a request pays for writing one line to a
+ * running engine instead of starting one.
+ * <p>
+ * On Windows each worker is a PowerShell session that loads System.Speech once and then
+ * serves JSON requests read from stdin. On Linux/Mac each worker is a shell loop that
+ * feeds requests to espeak over stdin, falling back to festival's text2wave; espeak has no
+ * server mode, so it still starts per request, but the JVM no longer spawns anything.
+ * <p>
+ * Workers are checked with a ping after sitting idle, replaced when they time out or die,
+ * and recycled after {@code tts.pool.max.jobs.per.worker} requests.
+ */
+@Service
+@ConditionalOnProperty(name = "tts.engine", havingValue = "process", matchIfMissing = true)
+public class TtsWorkerPool implements SpeechEngine {
+
+    private static final Logger logger = Logger.getLogger(TtsWorkerPool.class.getName());
+
+    /**
+     * The rate espeak writes at. festival is pinned to it, so a chunk that falls back can
+     * still be joined with the chunks espeak spoke.
+     */
+    static final int ESPEAK_SAMPLE_RATE = 22050;
+
+    /**
+     * The response for audio spoken by festival because espeak failed.
+     */
+    static final String FALLBACK_RESPONSE = "OK-FESTIVAL";
+
+    private static final String WINDOWS_WORKER_SCRIPT = String.join("\n",
+            "[Console]::InputEncoding = [System.Text.Encoding]::UTF8",
+            "Add-Type -AssemblyName System.Speech",
+            "$synth = New-Object System.Speech.Synthesis.SpeechSynthesizer",
+            "$defaultVoice = $synth.Voice.Name",
+            "[Console]::Out.WriteLine('READY')",
+            "while (($line = [Console]::In.ReadLine()) -ne $null) {",
+            "  try {",
+            "    $req = $line | ConvertFrom-Json",
+            "    if ($req.ping) { [Console]::Out.WriteLine('PONG'); continue }",
+            "    if ($req.voice -eq 'female') { $synth.SelectVoiceByHints([System.Speech.Synthesis.VoiceGender]::Female) }",
+            "    elseif ($req.voice -eq 'male') { $synth.SelectVoiceByHints([System.Speech.Synthesis.VoiceGender]::Male) }",
+            "    else { $synth.SelectVoice($defaultVoice) }",
+            "    $synth.Rate = $req.rate",
+            "    $synth.Volume = $req.volume",
+            "    $synth.SetOutputToWaveFile($req.output)",
+            "    $synth.Speak($req.text)",
+            "    $synth.SetOutputToNull()",
+            "    [Console]::Out.WriteLine('OK')",
+            "  } catch {",
+            "    $synth.SetOutputToNull()",
+            "    [Console]::Out.WriteLine('ERR ' + ($_.Exception.Message -replace '\\s+', ' '))",
+            "  }",
+            "}");
+
+    private static final String UNIX_WORKER_SCRIPT = String.join("\n",
+            "echo READY",
+            "while IFS= read -r settings && IFS= read -r text; do",
+            "  if [ \"$settings\" = PING ]; then echo PONG; continue; fi",
+            "  speed=${settings%% *}; rest=${settings#* }; amplitude=${rest%% *}; out=${rest#* }",
+            "  if printf '%s' \"$text\" | espeak -w \"$out\" -s \"$speed\" -a \"$amplitude\" -p 50 --stdin 2>/dev/null; then echo OK",
+            "  elif printf '%s' \"$text\" | text2wave -F " + ESPEAK_SAMPLE_RATE + " -o \"$out\" 2>/dev/null; then"
+                    + " echo " + FALLBACK_RESPONSE,
+            "  else echo 'ERR espeak and text2wave both failed'; fi",
+            "done");
+
+    @Value("${tts.voice.volume:100}")
+    private int defaultVolume;
+
+    @Value("${tts.pool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tts.pool.size:4}")
+    private int poolSize;
+
+    @Value("${tts.pool.max.jobs.per.worker:200}")
+    private int maxJobsPerWorker;
+
+    @Value("${tts.pool.job.timeout.seconds:30}")
+    private long jobTimeoutSeconds;
+
+    @Value("${tts.pool.startup.timeout.seconds:20}")
+    private long startupTimeoutSeconds;
+
+    @Value("${tts.pool.health.check.idle.seconds:60}")
+    private long healthCheckIdleSeconds;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    private final ObjectMapper requestMapper = JsonMapper.builder()
+            .enable(JsonWriteFeature.ESCAPE_NON_ASCII)
+            .build();
+    private final BlockingDeque<TtsWorker> idleWorkers = new LinkedBlockingDeque<>();
+    private final boolean windows = System.getProperty("os.name").toLowerCase().contains("windows");
+    private Semaphore permits;
+    private volatile boolean shuttingDown;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, poolSize), true);
+        if (!enabled) {
+            return;
+        }
+        pipelineMetrics.gauge("pdfaudio.tts.pool.idle", "Warm TTS workers waiting for a request", idleWorkers::size);
+        pipelineMetrics.gauge("pdfaudio.tts.pool.waiting", "Requests waiting for a free TTS worker",
+                permits::getQueueLength);
+        // Start the workers in the background so the first requests find them warm
+        Thread prewarm = new Thread(() -> {
+            for (int i = 0; i < poolSize && !shuttingDown; i++) {
+                try {
+                    idleWorkers.offerLast(startWorker());
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not prewarm TTS worker: " + e.getMessage());
+                    return;
+                }
+            }
+            logger.info("Prewarmed " + idleWorkers.size() + " TTS workers");
+        }, "tts-pool-prewarm");
+        prewarm.setDaemon(true);
+        prewarm.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        TtsWorker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            worker.destroy();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Synthesizes {@code text} into {@code outputPath} on a pooled worker, waiting for a
+     * free worker if all of them are busy.
+     *
+     * @return the engine that produced the audio, {@code OK} or {@link #FALLBACK_RESPONSE}
+     */
+    @Override
+    public String synthesize(String text, Path outputPath, VoiceSettings voice) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a TTS worker", e);
+        }
+
+        TtsWorker worker = null;
+        try {
+            worker = obtainWorker();
+            String response = worker.request(buildRequest(text, outputPath, voice), jobTimeoutSeconds);
+            if (!response.startsWith("OK")) {
+                if (!worker.isAlive()) {
+                    worker.destroy();
+                    worker = null;
+                }
+                throw new IOException("TTS worker failed: " + response);
+            }
+            worker.jobCompleted();
+            if (FALLBACK_RESPONSE.equals(response)) {
+                pipelineMetrics.ttsFallback();
+            }
+            return response;
+        } catch (TimeoutException e) {
+            pipelineMetrics.ttsTimeout();
+            worker.destroy();
+            worker = null;
+            throw new IOException("TTS process timed out", e);
+        } finally {
+            release(worker);
+            permits.release();
+        }
+    }
+
+    private TtsWorker obtainWorker() throws IOException {
+        TtsWorker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            if (worker.isAlive() && (worker.getIdleSeconds() < healthCheckIdleSeconds || ping(worker))) {
+                return worker;
+            }
+            logger.info("Replacing unhealthy TTS worker");
+            worker.destroy();
+        }
+        return startWorker();
+    }
+
+    private boolean ping(TtsWorker worker) {
+        try {
+            List<String> request = windows ? List.of("{\"ping\":true}") : List.of("PING", "");
+            return "PONG".equals(worker.request(request, startupTimeoutSeconds));
+        } catch (IOException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private void release(TtsWorker worker) {
+        if (worker == null) {
+            return;
+        }
+        if (shuttingDown || !worker.isAlive() || worker.getCompletedJobs() >= maxJobsPerWorker) {
+            worker.destroy();
+            return;
+        }
+        // Most recently used first, so surplus workers age out through the idle health check
+        idleWorkers.offerFirst(worker);
+    }
+
+    private TtsWorker startWorker() throws IOException {
+        List<String> command = new ArrayList<>();
+        if (windows) {
+            String encoded = Base64.getEncoder().encodeToString(WINDOWS_WORKER_SCRIPT.getBytes(StandardCharsets.UTF_16LE));
+            command.addAll(List.of("powershell.exe", "-NoProfile", "-NonInteractive", "-EncodedCommand", encoded));
+        } else {
+            command.addAll(List.of("sh", "-c", UNIX_WORKER_SCRIPT));
+        }
+        long start = System.nanoTime();
+        try {
+            return TtsWorker.start(command, startupTimeoutSeconds);
+        } finally {
+            pipelineMetrics.recordStage(PipelineMetrics.STAGE_TTS_SPAWN, System.nanoTime() - start);
+        }
+    }
+
+    private List<String> buildRequest(String text, Path outputPath, VoiceSettings voice) throws IOException {
+        // Requests are line based, so the text must stay on one line
+        String singleLine = text.replaceAll("[\\r\\n]+", " ").trim();
+        String output = outputPath.toAbsolutePath().toString();
+        if (!windows) {
+            return List.of(voice.espeakWordsPerMinute() + " " + voice.espeakAmplitude(defaultVolume) + " " + output,
+                    singleLine);
+        }
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("output", output);
+        request.put("text", singleLine);
+        request.put("voice", voice.getVoiceType().toLowerCase());
+        request.put("rate", voice.getRate());
+        request.put("volume", voice.getVolume());
+        try {
+            return List.of(requestMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new IOException("Could not encode TTS request", e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.pdfaudio.service;
+
+/**
+ * How a text is spoken: the voice type plus the rate and volume given to the engine.
+ * Rate and volume use the SAPI scales, -10 (slow) to 10 (fast) and 0 to 100; other
+ * engines map them onto their own.
+ */
+public final class VoiceSettings {
+
+    public static final int MIN_RATE = -10;
+    public static final int MAX_RATE = 10;
+    public static final int MAX_VOLUME = 100;
+
+    private final String voiceType;
+    private final int rate;
+    private final int volume;
+
+    public VoiceSettings(String voiceType, int rate, int volume) {
+        if (rate < MIN_RATE || rate > MAX_RATE) {
+            throw new IllegalArgumentException("Rate must be between " + MIN_RATE + " and " + MAX_RATE);
+        }
+        if (volume < 0 || volume > MAX_VOLUME) {
+            throw new IllegalArgumentException("Volume must be between 0 and " + MAX_VOLUME);
+        }
+        this.voiceType = voiceType == null ? "default" : voiceType;
+        this.rate = rate;
+        this.volume = volume;
+    }
+
+    public String getVoiceType() {
+        return voiceType;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getVolume() {
+        return volume;
+    }
+
+    /**
+     * The same settings with another voice type.
+     */
+    public VoiceSettings withVoiceType(String voiceType) {
+        return new VoiceSettings(voiceType, rate, volume);
+    }
+
+    /**
+     * espeak's words per minute for the rate: 150 at 0, doubling or halving over the
+     * SAPI range.
+     */
+    public int espeakWordsPerMinute() {
+        return (int) Math.round(150 * Math.pow(2, rate / (double) MAX_RATE));
+    }
+
+    /**
+     * espeak's amplitude for the volume. espeak runs 0 to 200 with 100 as its normal
+     * loudness, so the configured {@code defaultVolume} maps to 100 and other volumes
+     * scale from there, up to 200.
+     */
+    public int espeakAmplitude(int defaultVolume) {
+        return (int) Math.min(200, Math.round(100.0 * volume / Math.max(1, defaultVolume)));
+    }
+
+    @Override
+    public String toString() {
+        return voiceType.toLowerCase() + ":" + rate + ":" + volume;
+    }
+}
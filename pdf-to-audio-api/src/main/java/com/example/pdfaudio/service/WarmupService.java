@@ -0,0 +1,192 @@
+package com.example.pdfaudio.service;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.FontMappers;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a synthetic document through the pipeline before the application takes traffic,
+ * so the first real upload after a deploy does not pay for PDFBox building its font
+ * cache, a cold JIT and the first engine process starting.
+ * <p>
+ * It runs as an application runner: Spring Boot only reports readiness
+ * ({@code /actuator/health/readiness}) once all runners have finished, and the API's own
+ * {@code /health} follows that state. Pre-flight, extraction and both summarizers run
+ * {@code warmup.iterations} times on a {@code warmup.pages} page PDF, then one sentence
+ * is synthesized and encoded. Failures are logged and never keep the application from
+ * starting, and after {@code warmup.timeout.seconds} it starts without waiting further.
+ * <p>
+ * With {@code warmup.exit=true} the application exits once warmed up; that is the
+ * training run for the class data sharing archive of the {@code cds} build profile.
+ */
+@Service
+public class WarmupService implements ApplicationRunner {
+
+    private static final Logger logger = Logger.getLogger(WarmupService.class.getName());
+
+    private static final String[] SENTENCES = {
+            "The quarterly report summarizes revenue, operating costs and the outlook for the coming year.",
+            "Customers in the northern region renewed their contracts at a higher rate than last year.",
+            "Shipping delays were caused by a shortage of containers at the main port.",
+            "The board approved a new budget for research into battery storage.",
+            "Employees may work remotely up to three days a week after their probation period.",
+            "All invoices must be paid within thirty days of the date of issue.",
+            "The warranty does not cover damage caused by misuse or unauthorized repairs.",
+            "Questions about this policy should be sent to the compliance office."
+    };
+
+    private static final String PROBE_SENTENCE = "The service is warming up.";
+
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${warmup.pages:40}")
+    private int pages;
+
+    @Value("${warmup.iterations:3}")
+    private int iterations;
+
+    @Value("${warmup.tts.probe:true}")
+    private boolean ttsProbe;
+
+    @Value("${warmup.timeout.seconds:120}")
+    private long timeoutSeconds;
+
+    @Value("${warmup.exit:false}")
+    private boolean exitWhenDone;
+
+    @Autowired
+    private PdfPreflightService pdfPreflightService;
+
+    @Autowired
+    private PdfTextExtractionService pdfTextExtractionService;
+
+    @Autowired
+    private TextSummarizationService textSummarizationService;
+
+    @Autowired
+    private TextToSpeechService textToSpeechService;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            CompletableFuture<Void> warmup = CompletableFuture.runAsync(this::warmUp,
+                    runnable -> new Thread(runnable, "warmup").start());
+            try {
+                warmup.get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                logger.warning("Warm-up still running after " + timeoutSeconds + " s, accepting traffic anyway");
+            } catch (ExecutionException e) {
+                logger.log(Level.WARNING, "Warm-up failed: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (exitWhenDone) {
+            logger.info("Warm-up finished, exiting as requested by warmup.exit");
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("warmup-");
+
+            long fontStart = System.nanoTime();
+            // Scans the system fonts into PDFBox's font cache, or loads the cache file
+            FontMappers.instance().getFontBoxFont("Helvetica", null);
+            logger.info("PDFBox font cache ready in " + millisSince(fontStart) + " ms");
+
+            Path pdf = writeSyntheticPdf(directory.resolve("warmup.pdf"));
+            for (int i = 0; i < iterations; i++) {
+                long iterationStart = System.nanoTime();
+                pdfPreflightService.inspect(pdf.toString());
+                String text = pdfTextExtractionService.extractTextFromPdf(pdf.toString());
+                for (TextSummarizationService.Engine engine : TextSummarizationService.Engine.values()) {
+                    TextSummarizationService.StreamingSummary summary =
+                            textSummarizationService.startStreamingSummary(engine);
+                    summary.write(text);
+                    summary.summarize(new StringReader(text));
+                }
+                logger.info("Warm-up pass " + (i + 1) + " of " + iterations + " took "
+                        + millisSince(iterationStart) + " ms");
+            }
+
+            if (ttsProbe) {
+                long probeStart = System.nanoTime();
+                try {
+                    long bytes = textToSpeechService.synthesizeProbe(PROBE_SENTENCE, directory);
+                    logger.info("TTS probe wrote " + bytes + " bytes in " + millisSince(probeStart) + " ms");
+                } catch (IOException e) {
+                    logger.warning("TTS probe failed, the first conversion will start the engine: " + e.getMessage());
+                }
+            }
+            logger.info("Warm-up finished in " + millisSince(start) + " ms");
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Warm-up failed: " + e.getMessage(), e);
+        } finally {
+            if (directory != null) {
+                FileUtils.deleteQuietly(directory.toFile());
+            }
+        }
+    }
+
+    /**
+     * A text-only PDF in a standard 14 font, with the sentences repeated in a different
+     * order on every page so the summarizers have something to rank.
+     */
+    private Path writeSyntheticPdf(Path output) throws IOException {
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 0; page < pages; page++) {
+                PDPage pdPage = new PDPage(PDRectangle.A4);
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(font, 11);
+                    content.setLeading(14);
+                    content.newLineAtOffset(56, 780);
+                    for (int line = 0; line < 40; line++) {
+                        content.showText(SENTENCES[(page * 3 + line * 5) % SENTENCES.length]);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(output.toFile());
+        }
+        return output;
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.pdfaudio.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversionWorkerTest {
+
+    @Test
+    void leaderThatLostItsLeaseStopsOnceItsLastFollowerIsCancelled() throws Exception {
+        EmbeddedJobQueue queue = spy(new EmbeddedJobQueue());
+        ReflectionTestUtils.setField(queue, "leaseSeconds", 1L);
+        ReflectionTestUtils.setField(queue, "maxAttempts", 2);
+        ReflectionTestUtils.setField(queue, "retentionMinutes", 60L);
+        // Another worker took the job over; every renewal is refused
+        doReturn(false).when(queue).renew(anyString(), anyString(), anyString());
+        QueuedJob queued = new QueuedJob();
+        queued.jobId = "leader";
+        queued.pdfKey = QueuedConversionService.PDF_PREFIX + "leader.pdf";
+        queued.originalFileName = "document.pdf";
+        queued.uniqueFileName = "document_leader";
+        queued.voiceType = "default";
+        queued.summarizer = TextSummarizationService.Engine.FREQUENCY;
+        queued.createdAt = Instant.now();
+        queue.enqueue(queued);
+
+        // The local conversion never finishes on its own, and an upload has joined it
+        ConversionJob leader = new ConversionJob("leader", "document.pdf", "document_leader", "default");
+        ConversionJob follower = new ConversionJob("follower", "document.pdf", "document_follower", "default");
+        assertTrue(leader.addFollower());
+        follower.setLeader(leader);
+
+        ConversionJobService conversionJobService = spy(new ConversionJobService());
+        doReturn(leader).when(conversionJobService).submitQueued(any(), any());
+        FileStorageService fileStorageService = mock(FileStorageService.class);
+        when(fileStorageService.resolvePdfFile(anyString())).thenReturn(Paths.get("leader.pdf"));
+
+        ConversionWorker worker = new ConversionWorker();
+        ReflectionTestUtils.setField(worker, "jobQueue", queue);
+        ReflectionTestUtils.setField(worker, "artifactStore", mock(ArtifactStore.class));
+        ReflectionTestUtils.setField(worker, "conversionJobService", conversionJobService);
+        ReflectionTestUtils.setField(worker, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(worker, "role", "worker");
+        ReflectionTestUtils.setField(worker, "threads", 1);
+        ReflectionTestUtils.setField(worker, "workerIdPrefix", "test");
+        ReflectionTestUtils.setField(worker, "leaseSeconds", 1L);
+        worker.start();
+        try {
+            verify(conversionJobService, timeout(5000)).cancel(same(leader), anyString());
+        } finally {
+            worker.stop();
+        }
+        assertFalse(leader.isCancelled(), "the follower still wants the result");
+
+        conversionJobService.cancel(follower, "Client went away");
+        assertTrue(follower.isFinished());
+        assertTrue(leader.isCancelled());
+        assertTrue(leader.getSynthesis().isCancelled());
+    }
+}
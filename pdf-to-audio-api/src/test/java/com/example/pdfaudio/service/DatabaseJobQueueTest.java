@@ -0,0 +1,38 @@
+package com.example.pdfaudio.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+/**
+ * Runs against a private in-memory H2 database per test.
+ */
+class DatabaseJobQueueTest extends JobQueueTest {
+
+    private DatabaseJobQueue queue;
+
+    @Override
+    JobQueue createQueue(long leaseSeconds, int maxAttempts) throws Exception {
+        queue = new DatabaseJobQueue();
+        ReflectionTestUtils.setField(queue, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(queue, "jdbcUrl", "jdbc:h2:mem:queue-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        ReflectionTestUtils.setField(queue, "jdbcUser", "sa");
+        ReflectionTestUtils.setField(queue, "jdbcPassword", "");
+        ReflectionTestUtils.setField(queue, "poolSize", 4);
+        ReflectionTestUtils.setField(queue, "pollMillis", 10L);
+        ReflectionTestUtils.setField(queue, "leaseSeconds", leaseSeconds);
+        ReflectionTestUtils.setField(queue, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(queue, "retentionMinutes", 60L);
+        queue.init();
+        return queue;
+    }
+
+    @AfterEach
+    void close() {
+        if (queue != null) {
+            queue.close();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.pdfaudio.service;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+class EmbeddedJobQueueTest extends JobQueueTest {
+
+    @Override
+    JobQueue createQueue(long leaseSeconds, int maxAttempts) {
+        EmbeddedJobQueue queue = new EmbeddedJobQueue();
+        ReflectionTestUtils.setField(queue, "leaseSeconds", leaseSeconds);
+        ReflectionTestUtils.setField(queue, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(queue, "retentionMinutes", 60L);
+        return queue;
+    }
+}
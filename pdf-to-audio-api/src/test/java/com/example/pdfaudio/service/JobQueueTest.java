@@ -0,0 +1,190 @@
+package com.example.pdfaudio.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The lease rules every {@link JobQueue} has to follow; subclasses supply the queue.
+ */
+abstract class JobQueueTest {
+
+    private static final long LEASE_SECONDS = 1;
+    private static final int MAX_ATTEMPTS = 2;
+
+    /**
+     * @return a new, empty queue with the given lease and attempt limit
+     */
+    abstract JobQueue createQueue(long leaseSeconds, int maxAttempts) throws Exception;
+
+    @Test
+    void concurrentClaimsNeverHandOutAJobTwice() throws Exception {
+        JobQueue queue = createQueue(60, MAX_ATTEMPTS);
+        Set<String> enqueued = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            enqueued.add(enqueue(queue));
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> claims = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                String workerId = "worker-" + w;
+                claims.add(workers.submit((Callable<List<String>>) () -> {
+                    List<String> claimed = new ArrayList<>();
+                    QueuedJob job;
+                    while ((job = queue.claim(workerId, 0)) != null) {
+                        assertEquals(workerId, job.workerId);
+                        claimed.add(job.jobId);
+                    }
+                    return claimed;
+                }));
+            }
+
+            List<String> claimed = new ArrayList<>();
+            for (Future<List<String>> future : claims) {
+                claimed.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+            assertEquals(enqueued.size(), claimed.size());
+            assertEquals(enqueued, new HashSet<>(claimed));
+            assertEquals(0, queue.depth());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredLeaseIsClaimedByAnotherWorker() throws Exception {
+        JobQueue queue = createQueue(LEASE_SECONDS, MAX_ATTEMPTS);
+        String jobId = enqueue(queue);
+
+        assertEquals(jobId, queue.claim("first", 0).jobId);
+        assertNull(queue.claim("second", 0), "a held lease is not claimable");
+
+        awaitLeaseExpiry();
+        QueuedJob reclaimed = queue.claim("second", 0);
+        assertNotNull(reclaimed);
+        assertEquals(jobId, reclaimed.jobId);
+        assertEquals("second", reclaimed.workerId);
+        assertEquals(2, reclaimed.attempts);
+        assertFalse(queue.renew(jobId, "first", "SYNTHESIZING"));
+        assertTrue(queue.renew(jobId, "second", "SYNTHESIZING"));
+    }
+
+    @Test
+    void renewedLeaseIsNotClaimed() throws Exception {
+        JobQueue queue = createQueue(LEASE_SECONDS, MAX_ATTEMPTS);
+        String jobId = enqueue(queue);
+        queue.claim("first", 0);
+
+        TimeUnit.MILLISECONDS.sleep(600);
+        assertTrue(queue.renew(jobId, "first", "EXTRACTING"));
+        TimeUnit.MILLISECONDS.sleep(600);
+        assertNull(queue.claim("second", 0));
+        assertEquals("EXTRACTING", queue.get(jobId).stage);
+    }
+
+    @Test
+    void failedJobIsRetriedUntilMaxAttempts() throws Exception {
+        JobQueue queue = createQueue(LEASE_SECONDS, MAX_ATTEMPTS);
+        String jobId = enqueue(queue);
+
+        queue.claim("first", 0);
+        queue.fail(jobId, "first", "engine crashed");
+        assertEquals(QueuedJob.State.QUEUED, queue.get(jobId).state);
+
+        queue.claim("second", 0);
+        queue.fail(jobId, "second", "engine crashed again");
+        QueuedJob failed = queue.get(jobId);
+        assertEquals(QueuedJob.State.FAILED, failed.state);
+        assertEquals("engine crashed again", failed.error);
+        assertNotNull(failed.finishedAt);
+        assertNull(queue.claim("third", 0));
+    }
+
+    @Test
+    void jobWhoseLeaseKeepsExpiringIsFailedAfterMaxAttempts() throws Exception {
+        JobQueue queue = createQueue(LEASE_SECONDS, MAX_ATTEMPTS);
+        String jobId = enqueue(queue);
+
+        queue.claim("first", 0);
+        awaitLeaseExpiry();
+        queue.claim("second", 0);
+        awaitLeaseExpiry();
+
+        assertNull(queue.claim("third", 0));
+        QueuedJob failed = queue.get(jobId);
+        assertEquals(QueuedJob.State.FAILED, failed.state);
+        assertEquals(MAX_ATTEMPTS, failed.attempts);
+        assertTrue(failed.error.contains("second"), failed.error);
+    }
+
+    @Test
+    void releasedJobDoesNotUseAnAttempt() throws Exception {
+        JobQueue queue = createQueue(LEASE_SECONDS, MAX_ATTEMPTS);
+        String jobId = enqueue(queue);
+
+        queue.claim("first", 0);
+        queue.release(jobId, "first");
+        assertEquals(1, queue.depth());
+        assertEquals(1, queue.claim("second", 0).attempts);
+    }
+
+    @Test
+    void completeIsRefusedAfterTheLeaseIsLost() throws Exception {
+        JobQueue queue = createQueue(LEASE_SECONDS, MAX_ATTEMPTS);
+        String jobId = enqueue(queue);
+
+        queue.claim("first", 0);
+        awaitLeaseExpiry();
+        queue.claim("second", 0);
+
+        assertFalse(queue.complete(jobId, "first", Map.of("audioFileName", "first.wav")));
+        assertEquals(QueuedJob.State.RUNNING, queue.get(jobId).state);
+
+        assertTrue(queue.complete(jobId, "second", Map.of("audioFileName", "second.wav")));
+        QueuedJob completed = queue.get(jobId);
+        assertEquals(QueuedJob.State.COMPLETED, completed.state);
+        assertEquals("second", completed.workerId);
+        assertEquals("second.wav", completed.result.get("audioFileName"));
+
+        queue.fail(jobId, "first", "too late");
+        assertEquals(QueuedJob.State.COMPLETED, queue.get(jobId).state);
+    }
+
+    private static String enqueue(JobQueue queue) throws Exception {
+        QueuedJob job = new QueuedJob();
+        job.jobId = UUID.randomUUID().toString();
+        job.pdfKey = QueuedConversionService.PDF_PREFIX + job.jobId + ".pdf";
+        job.originalFileName = "document.pdf";
+        job.uniqueFileName = "document_" + job.jobId;
+        job.voiceType = "default";
+        job.summarizer = TextSummarizationService.Engine.FREQUENCY;
+        job.createdAt = Instant.now();
+        queue.enqueue(job);
+        // Distinct creation times keep the claim order well defined
+        TimeUnit.MILLISECONDS.sleep(2);
+        return job.jobId;
+    }
+
+    private static void awaitLeaseExpiry() throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(TimeUnit.SECONDS.toMillis(LEASE_SECONDS) + 100);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.pdfaudio.benchmark;
+
+import com.example.pdfaudio.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds small Spring contexts holding just the services under test, so {@code @Value}
+ * defaults and lifecycle callbacks apply exactly as in the application. Pipeline metrics
+ * are recorded into an in-memory registry, as they would be in production.
+ */
+final class BenchmarkContexts {
+
+    private BenchmarkContexts() {
+    }
+
+    static AnnotationConfigApplicationContext create(Map<String, Object> properties, Class<?>... components) {
+        quietApplicationLogging();
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(PipelineMetrics.class);
+        context.register(components);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * The services log every document at INFO, which would flood the benchmark output.
+     */
+    static void quietApplicationLogging() {
+        Logger.getLogger("com.example.pdfaudio").setLevel(Level.WARNING);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.pdfaudio.benchmark;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and status codes of one endpoint during a load test. Every sample is kept,
+ * so the percentiles are exact; a run of a few minutes records well under a million.
+ */
+final class LatencyRecorder {
+
+    private final String endpoint;
+    private final Map<Integer, Integer> statusCounts = new TreeMap<>();
+    private long[] latenciesNanos = new long[1024];
+    private int count;
+    private int errors;
+
+    LatencyRecorder(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @param status HTTP status, or 0 if the request failed without a response
+     * @param error  whether the call counts as failed
+     */
+    synchronized void record(long latencyNanos, int status, boolean error) {
+        if (count == latenciesNanos.length) {
+            latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+        }
+        latenciesNanos[count++] = latencyNanos;
+        statusCounts.merge(status, 1, Integer::sum);
+        if (error) {
+            errors++;
+        }
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    synchronized double errorRate() {
+        return count == 0 ? 0 : (double) errors / count;
+    }
+
+    synchronized Map<String, Object> summary(double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(latenciesNanos, count);
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("endpoint", endpoint);
+        summary.put("requests", count);
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", elapsedSeconds > 0 ? count / elapsedSeconds : 0);
+        summary.put("p50Millis", percentile(sorted, 50));
+        summary.put("p95Millis", percentile(sorted, 95));
+        summary.put("p99Millis", percentile(sorted, 99));
+        summary.put("maxMillis", count == 0 ? 0 : sorted[count - 1] / 1e6);
+        Map<String, Integer> statuses = new LinkedHashMap<>();
+        statusCounts.forEach((status, n) -> statuses.put(status == 0 ? "none" : status.toString(), n));
+        summary.put("statusCodes", statuses);
+        return summary;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
@@ -0,0 +1,449 @@
+package com.example.pdfaudio.benchmark;
+
+import com.example.pdfaudio.PdfToAudioApiApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.commons.io.FileUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the API with a mix of PDF sizes and reports throughput and p50/p95/p99 latency
+ * per endpoint, to catch scaling regressions that a single-request benchmark misses.
+ * <p>
+ * Without {@code --url} the application is started in this JVM with the stub speech
+ * engine and the result and fragment caches off, so every upload runs the whole pipeline
+ * and no synthesizer has to be installed. Arrivals are either open loop ({@code --rate}
+ * requests per second, exponentially spaced) or closed loop ({@code --concurrency}
+ * clients that send the next request when the last one finished). In open loop the
+ * latency is measured from the moment a request was due, not from when a thread got to
+ * send it, so a server that falls behind shows up in the percentiles instead of slowing
+ * the load down.
+ * <p>
+ * Uploads are spread over {@code --clients} ids sent as {@code X-Client-Id}. The API only
+ * takes that header from an address in {@code admission.client.trusted.proxies}, so against
+ * {@code --url} the target has to list this generator there, or every request counts as
+ * one client. The application started here trusts the loopback addresses.
+ * <p>
+ * {@code java -cp target/benchmarks.jar com.example.pdfaudio.benchmark.LoadTest --rate=5 --duration=60}
+ * <p>
+ * Exits with status 1 if {@code --fail.p99.ms} or {@code --fail.error.rate} is exceeded
+ * by any endpoint, so it can gate a build.
+ */
+public final class LoadTest {
+
+    private static final String API = "/api/pdf-to-audio";
+    private static final String UPLOAD = "POST /upload";
+    private static final String UPLOAD_ASYNC = "POST /upload-async";
+    private static final String JOB_STATUS = "GET /jobs/{id}";
+    private static final String JOB_COMPLETION = "async job (upload to completed)";
+    private static final String DOWNLOAD = "GET /download";
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("url", "");
+        DEFAULTS.put("pages", "5:6,20:3,100:1");
+        DEFAULTS.put("variants", "4");
+        DEFAULTS.put("mix", "upload:1,async:1");
+        DEFAULTS.put("rate", "0");
+        DEFAULTS.put("concurrency", "4");
+        DEFAULTS.put("max.in.flight", "64");
+        DEFAULTS.put("duration", "60");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("poll.ms", "200");
+        DEFAULTS.put("job.timeout", "600");
+        DEFAULTS.put("clients", "16");
+        DEFAULTS.put("seed", "1");
+        DEFAULTS.put("report", "");
+        DEFAULTS.put("fail.p99.ms", "0");
+        DEFAULTS.put("fail.error.rate", "0");
+    }
+
+    private final Map<String, String> options;
+    private final Map<String, String> applicationArgs;
+    private final Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong clientSequence = new AtomicLong();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private String baseUrl;
+    private List<Workload> workloads;
+    private long measureFromNanos;
+    private long measureUntilNanos;
+
+    private LoadTest(Map<String, String> options, Map<String, String> applicationArgs) {
+        this.options = options;
+        this.applicationArgs = applicationArgs;
+        for (String endpoint : List.of(UPLOAD, UPLOAD_ASYNC, JOB_STATUS, JOB_COMPLETION, DOWNLOAD)) {
+            recorders.put(endpoint, new LatencyRecorder(endpoint));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        Map<String, String> applicationArgs = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            String key = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            if (key.startsWith("app.")) {
+                applicationArgs.put(key.substring(4), value);
+            } else if (DEFAULTS.containsKey(key)) {
+                options.put(key, value);
+            } else {
+                throw new IllegalArgumentException("Unknown option --" + key + ", expected one of "
+                        + DEFAULTS.keySet() + " or --app.<property>");
+            }
+        }
+        System.exit(new LoadTest(options, applicationArgs).run());
+    }
+
+    private int run() throws Exception {
+        Path corpusDir = Files.createTempDirectory("load-corpus-");
+        ConfigurableApplicationContext application = null;
+        try {
+            workloads = buildWorkloads(corpusDir);
+            String url = options.get("url");
+            if (url.isEmpty()) {
+                application = startApplication(corpusDir);
+                url = "http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort();
+            } else {
+                System.err.println("Note: " + url + " only sees " + options.get("clients") + " clients if it lists"
+                        + " this host in admission.client.trusted.proxies; otherwise all requests are one client");
+            }
+            baseUrl = url.replaceAll("/+$", "") + API;
+
+            long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup")));
+            long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration")));
+            measureFromNanos = System.nanoTime() + warmupNanos;
+            measureUntilNanos = measureFromNanos + durationNanos;
+            double rate = Double.parseDouble(options.get("rate"));
+            System.out.printf("Load test against %s: %s, %d s warm-up, %d s measured%n", baseUrl,
+                    rate > 0 ? "open loop at " + rate + " requests/s" : "closed loop with "
+                            + options.get("concurrency") + " clients",
+                    TimeUnit.NANOSECONDS.toSeconds(warmupNanos), TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+            if (rate > 0) {
+                runOpenLoop(rate);
+            } else {
+                runClosedLoop(Integer.parseInt(options.get("concurrency")));
+            }
+            return report(TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            FileUtils.deleteQuietly(corpusDir.toFile());
+        }
+    }
+
+    /**
+     * One PDF per page count and variant. Variants differ in seed, so concurrent uploads
+     * of the same size are different documents and are not coalesced into one job.
+     */
+    private List<Workload> buildWorkloads(Path corpusDir) throws IOException {
+        int variants = Integer.parseInt(options.get("variants"));
+        Map<String, Integer> mix = parseWeights(options.get("mix"));
+        for (String kind : mix.keySet()) {
+            if (!kind.equals("upload") && !kind.equals("async")) {
+                throw new IllegalArgumentException("Unknown request kind in --mix: " + kind + " (use upload, async)");
+            }
+        }
+        List<Workload> result = new ArrayList<>();
+        for (Map.Entry<String, Integer> size : parseWeights(options.get("pages")).entrySet()) {
+            int pages = Integer.parseInt(size.getKey());
+            List<MultipartBody> bodies = new ArrayList<>();
+            for (int v = 0; v < variants; v++) {
+                Path pdf = PdfCorpusGenerator.generate(corpusDir.resolve("corpus-" + pages + "-" + v + ".pdf"),
+                        pages, PdfCorpusGenerator.DEFAULT_SEED + v);
+                bodies.add(MultipartBody.ofPdf(pdf, "default"));
+            }
+            for (Map.Entry<String, Integer> kind : mix.entrySet()) {
+                result.add(new Workload(kind.getKey().equals("async"), bodies,
+                        size.getValue() * kind.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private ConfigurableApplicationContext startApplication(Path corpusDir) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("tts.engine", "stub");
+        properties.put("cache.result.enabled", "false");
+        properties.put("tts.fragment.cache.enabled", "false");
+        // Even when turned on with --app.tts.fragment.cache.enabled=true, it starts empty each run
+        properties.put("tts.fragment.cache.directory", corpusDir.resolve("fragment-cache").toString());
+        // One load generator stands in for many clients; the global admission limit still applies
+        properties.put("admission.client.rate.per.minute", "0");
+        // So --clients takes effect when a per-client rate is set with --app.
+        properties.put("admission.client.trusted.proxies", "127.0.0.1,0:0:0:0:0:0:0:1");
+        properties.put("logging.level.com.example.pdfaudio", "WARN");
+        properties.putAll(applicationArgs);
+        List<String> args = new ArrayList<>();
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+
+        BenchmarkContexts.quietApplicationLogging();
+        return new SpringApplicationBuilder(PdfToAudioApiApplication.class).run(args.toArray(new String[0]));
+    }
+
+    /**
+     * A scheduler thread draws exponential gaps between arrivals and hands each request,
+     * stamped with the time it was due, to a pool of {@code max.in.flight} threads. When
+     * all of them are busy, requests wait in the pool's queue and the wait counts.
+     */
+    private void runOpenLoop(double rate) throws InterruptedException {
+        ExecutorService senders = Executors.newFixedThreadPool(Integer.parseInt(options.get("max.in.flight")));
+        Random random = new Random(Long.parseLong(options.get("seed")));
+        long meanGapNanos = (long) (1e9 / rate);
+        long dueNanos = System.nanoTime();
+        while (dueNanos < measureUntilNanos) {
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            Workload workload = pick(random);
+            MultipartBody body = workload.bodies.get(random.nextInt(workload.bodies.size()));
+            long startNanos = dueNanos;
+            senders.execute(() -> send(workload, body, startNanos));
+            dueNanos += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+        }
+        senders.shutdown();
+        awaitDrain(senders);
+    }
+
+    private void runClosedLoop(int concurrency) throws InterruptedException {
+        ExecutorService senders = Executors.newFixedThreadPool(concurrency);
+        long seed = Long.parseLong(options.get("seed"));
+        for (int i = 0; i < concurrency; i++) {
+            Random random = new Random(seed + i);
+            senders.execute(() -> {
+                while (System.nanoTime() < measureUntilNanos) {
+                    Workload workload = pick(random);
+                    send(workload, workload.bodies.get(random.nextInt(workload.bodies.size())), System.nanoTime());
+                }
+            });
+        }
+        senders.shutdown();
+        awaitDrain(senders);
+    }
+
+    private void awaitDrain(ExecutorService senders) throws InterruptedException {
+        long jobTimeoutSeconds = Long.parseLong(options.get("job.timeout"));
+        if (!senders.awaitTermination(jobTimeoutSeconds + 60, TimeUnit.SECONDS)) {
+            System.out.println("Requests still running at the end were abandoned");
+            senders.shutdownNow();
+        }
+    }
+
+    private Workload pick(Random random) {
+        int total = workloads.stream().mapToInt(w -> w.weight).sum();
+        int ticket = random.nextInt(total);
+        for (Workload workload : workloads) {
+            ticket -= workload.weight;
+            if (ticket < 0) {
+                return workload;
+            }
+        }
+        return workloads.get(workloads.size() - 1);
+    }
+
+    private void send(Workload workload, MultipartBody body, long startNanos) {
+        String clientId = "load-" + clientSequence.getAndIncrement() % Integer.parseInt(options.get("clients"));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + (workload.async ? "/upload-async" : "/upload")))
+                .header("Content-Type", body.contentType())
+                .header("X-Client-Id", clientId)
+                .POST(body.publisher())
+                .build();
+        Response upload = call(workload.async ? UPLOAD_ASYNC : UPLOAD, request, startNanos,
+                workload.async ? 202 : 200);
+        if (upload.json == null) {
+            return;
+        }
+        if (!workload.async) {
+            download(upload.json.path("audioFileName").asText(), startNanos);
+            return;
+        }
+
+        String jobId = upload.json.path("jobId").asText();
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("job.timeout")));
+        long pollMillis = Long.parseLong(options.get("poll.ms"));
+        while (true) {
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long pollStartNanos = System.nanoTime();
+            Response status = call(JOB_STATUS, HttpRequest.newBuilder(URI.create(baseUrl + "/jobs/" + jobId)).build(),
+                    pollStartNanos, 200);
+            String state = status.json == null ? "" : status.json.path("status").asText();
+            if (state.equals("COMPLETED") || state.equals("FAILED")) {
+                record(JOB_COMPLETION, startNanos, System.nanoTime(), status.statusCode, state.equals("FAILED"));
+                if (state.equals("COMPLETED")) {
+                    Response result = call(null, HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/jobs/" + jobId + "/result")).build(), pollStartNanos, 200);
+                    if (result.json != null) {
+                        download(result.json.path("audioFileName").asText(), startNanos);
+                    }
+                }
+                return;
+            }
+            if (System.nanoTime() > deadlineNanos) {
+                record(JOB_COMPLETION, startNanos, System.nanoTime(), 0, true);
+                return;
+            }
+        }
+    }
+
+    private void download(String audioFileName, long startNanos) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/download/" + audioFileName)).build();
+        long downloadStartNanos = System.nanoTime();
+        int statusCode = 0;
+        try {
+            statusCode = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            // Counted as an error below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The download belongs to the same request, so it is measured only when the upload was
+        if (startNanos >= measureFromNanos) {
+            record(DOWNLOAD, downloadStartNanos, System.nanoTime(), statusCode, statusCode != 200);
+        }
+    }
+
+    /**
+     * Sends a request whose response is JSON and records it under {@code endpoint}, unless
+     * that is null. The JSON is only returned for the expected status.
+     */
+    private Response call(String endpoint, HttpRequest request, long startNanos, int expectedStatus) {
+        int statusCode = 0;
+        JsonNode json = null;
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            statusCode = response.statusCode();
+            if (statusCode == expectedStatus) {
+                json = objectMapper.readTree(response.body());
+            }
+        } catch (IOException e) {
+            // Counted as an error below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (endpoint != null) {
+            record(endpoint, startNanos, System.nanoTime(), statusCode, json == null);
+        }
+        return new Response(statusCode, json);
+    }
+
+    private void record(String endpoint, long startNanos, long endNanos, int statusCode, boolean error) {
+        if (startNanos >= measureFromNanos) {
+            recorders.get(endpoint).record(endNanos - startNanos, statusCode, error);
+        }
+    }
+
+    private int report(double elapsedSeconds) throws IOException {
+        double failP99Millis = Double.parseDouble(options.get("fail.p99.ms"));
+        double failErrorRate = Double.parseDouble(options.get("fail.error.rate"));
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+
+        System.out.printf("%n%-32s %9s %7s %9s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (String endpoint : List.of(UPLOAD, UPLOAD_ASYNC, JOB_COMPLETION, JOB_STATUS, DOWNLOAD)) {
+            LatencyRecorder recorder = recorders.get(endpoint);
+            if (recorder.count() == 0) {
+                continue;
+            }
+            Map<String, Object> summary = recorder.summary(elapsedSeconds);
+            endpoints.add(summary);
+            System.out.printf("%-32s %9d %7d %9.2f %10.1f %10.1f %10.1f %10.1f   %s%n", endpoint,
+                    summary.get("requests"), summary.get("errors"), summary.get("throughputPerSecond"),
+                    summary.get("p50Millis"), summary.get("p95Millis"), summary.get("p99Millis"),
+                    summary.get("maxMillis"), summary.get("statusCodes"));
+
+            if (failP99Millis > 0 && (double) summary.get("p99Millis") > failP99Millis) {
+                failures.add(endpoint + " p99 " + summary.get("p99Millis") + " ms > " + failP99Millis + " ms");
+            }
+            if (failErrorRate > 0 && recorder.errorRate() > failErrorRate) {
+                failures.add(endpoint + " error rate " + recorder.errorRate() + " > " + failErrorRate);
+            }
+        }
+
+        String reportPath = options.get("report");
+        if (!reportPath.isEmpty()) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("options", options);
+            report.put("applicationProperties", applicationArgs);
+            report.put("endpoints", endpoints);
+            report.put("failures", failures);
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(Paths.get(reportPath).toFile(), report);
+        }
+        failures.forEach(failure -> System.out.println("FAILED: " + failure));
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * {@code 5:6,20:3} as an ordered map of key to weight; a missing weight is 1.
+     */
+    private static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(parts[0], parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+        }
+        return weights;
+    }
+
+    private static final class Workload {
+        final boolean async;
+        final List<MultipartBody> bodies;
+        final int weight;
+
+        Workload(boolean async, List<MultipartBody> bodies, int weight) {
+            this.async = async;
+            this.bodies = bodies;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Response {
+        final int statusCode;
+        final JsonNode json;
+
+        Response(int statusCode, JsonNode json) {
+            this.statusCode = statusCode;
+            this.json = json;
+        }
+    }
+}
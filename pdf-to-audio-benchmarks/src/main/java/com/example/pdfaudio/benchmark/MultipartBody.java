@@ -0,0 +1,50 @@
+package com.example.pdfaudio.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The {@code multipart/form-data} body of an upload: the PDF as the {@code file} part
+ * and the voice as {@code voiceType}, built once so that sending it costs no encoding.
+ */
+public final class MultipartBody {
+
+    private static final String BOUNDARY = "----pdf-to-audio-benchmark";
+
+    private final byte[] bytes;
+
+    private MultipartBody(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public static MultipartBody ofPdf(Path pdf, String voiceType) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String head = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + pdf.getFileName() + "\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n";
+        body.write(head.getBytes(StandardCharsets.US_ASCII));
+        body.write(Files.readAllBytes(pdf));
+        String voice = "\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"voiceType\"\r\n\r\n"
+                + voiceType + "\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        body.write(voice.getBytes(StandardCharsets.US_ASCII));
+        return new MultipartBody(body.toByteArray());
+    }
+
+    public String contentType() {
+        return "multipart/form-data; boundary=" + BOUNDARY;
+    }
+
+    public HttpRequest.BodyPublisher publisher() {
+        return HttpRequest.BodyPublishers.ofByteArray(bytes);
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+}
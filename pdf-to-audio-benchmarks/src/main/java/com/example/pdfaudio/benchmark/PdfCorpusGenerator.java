@@ -0,0 +1,90 @@
+package com.example.pdfaudio.benchmark;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Writes text-only PDFs of a given page count whose bytes depend only on the page count
+ * and seed: the prose comes from {@link SyntheticText}, the font is a standard 14 font
+ * that is never embedded, and the document ID that PDFBox would otherwise derive from
+ * the clock is fixed.
+ * <p>
+ * Run {@code main} to write a corpus to disk, e.g. to try it against a running server:
+ * {@code java -cp target/benchmarks.jar com.example.pdfaudio.benchmark.PdfCorpusGenerator corpus 5 50 500}
+ */
+public final class PdfCorpusGenerator {
+
+    public static final long DEFAULT_SEED = 20240101L;
+
+    private static final float FONT_SIZE = 11;
+    private static final float LEADING = 14;
+    private static final float MARGIN = 56;
+    private static final int LINE_WIDTH_CHARS = 90;
+
+    private PdfCorpusGenerator() {
+    }
+
+    public static Path generate(Path output, int pages, long seed) throws IOException {
+        PDRectangle pageSize = PDRectangle.A4;
+        int linesPerPage = (int) ((pageSize.getHeight() - 2 * MARGIN) / LEADING);
+        SyntheticText text = new SyntheticText(seed);
+        List<String> lines = text.lines(pages * linesPerPage * LINE_WIDTH_CHARS, LINE_WIDTH_CHARS);
+
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            int line = 0;
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(pageSize);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, FONT_SIZE);
+                    content.setLeading(LEADING);
+                    content.newLineAtOffset(MARGIN, pageSize.getHeight() - MARGIN);
+                    for (int l = 0; l < linesPerPage && line < lines.size(); l++, line++) {
+                        content.showText(lines.get(line));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+
+            COSArray id = new COSArray();
+            byte[] idBytes = ("corpus-" + pages + "-" + seed).getBytes(StandardCharsets.US_ASCII);
+            id.add(new COSString(idBytes));
+            id.add(new COSString(idBytes));
+            document.getDocument().getTrailer().setItem(COSName.ID, id);
+
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            document.save(output.toFile());
+        }
+        return output;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PdfCorpusGenerator <output-dir> <pages>...");
+            System.exit(1);
+        }
+        Path dir = Paths.get(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            int pages = Integer.parseInt(args[i]);
+            Path pdf = generate(dir.resolve("corpus-" + pages + ".pdf"), pages, DEFAULT_SEED);
+            System.out.println(pdf + " (" + Files.size(pdf) + " bytes)");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.pdfaudio.benchmark;
+
+import com.example.pdfaudio.service.PdfTextExtractionService;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text extraction from saved PDFs of 5, 50 and 500 pages, sequential and fork-join.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class PdfExtractionBenchmark {
+
+    @Param({"5", "50", "500"})
+    private int pages;
+
+    @Param({"true", "false"})
+    private boolean parallel;
+
+    private Path corpusDir;
+    private String pdfPath;
+    private AnnotationConfigApplicationContext context;
+    private PdfTextExtractionService extractionService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpusDir = Files.createTempDirectory("pdf-corpus-");
+        pdfPath = PdfCorpusGenerator.generate(corpusDir.resolve("corpus-" + pages + ".pdf"), pages,
+                PdfCorpusGenerator.DEFAULT_SEED).toString();
+        context = BenchmarkContexts.create(Map.of("pdf.extraction.parallel.enabled", parallel),
+                PdfTextExtractionService.class);
+        extractionService = context.getBean(PdfTextExtractionService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        FileUtils.deleteQuietly(corpusDir.toFile());
+    }
+
+    @Benchmark
+    public String extract() throws IOException {
+        return extractionService.extractTextFromPdf(pdfPath);
+    }
+}
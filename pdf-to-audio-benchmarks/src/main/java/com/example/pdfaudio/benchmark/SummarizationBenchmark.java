@@ -0,0 +1,71 @@
+package com.example.pdfaudio.benchmark;
+
+import com.example.pdfaudio.service.TextSummarizationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summarization of extracted text from 10 KB to 1 MB, in memory and as a two-pass stream,
+ * with each summarizer engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SummarizationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int chars;
+
+    @Param({"frequency", "textrank"})
+    private String engine;
+
+    private String text;
+    private AnnotationConfigApplicationContext context;
+    private TextSummarizationService summarizationService;
+    private TextSummarizationService.Engine summarizer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = new SyntheticText(PdfCorpusGenerator.DEFAULT_SEED).text(chars);
+        context = BenchmarkContexts.create(Map.of(), TextSummarizationService.class);
+        summarizationService = context.getBean(TextSummarizationService.class);
+        summarizer = summarizationService.engine(engine);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String summarize() {
+        return summarizationService.generateSummary(text, summarizer);
+    }
+
+    @Benchmark
+    public String summarizeStreaming() throws IOException {
+        TextSummarizationService.StreamingSummary summary = summarizationService.startStreamingSummary(summarizer);
+        summary.write(text);
+        return summary.summarize(new StringReader(text));
+    }
+}
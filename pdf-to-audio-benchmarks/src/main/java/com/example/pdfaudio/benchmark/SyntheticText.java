@@ -0,0 +1,108 @@
+package com.example.pdfaudio.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic English-like prose for benchmarks. The same seed always produces the same
+ * text, so runs on different machines and commits measure identical input.
+ * <p>
+ * Words are drawn with a skewed distribution from a fixed vocabulary mixed with common
+ * stop words, which gives the summarizer realistic term frequencies to rank.
+ */
+public final class SyntheticText {
+
+    private static final String[] STOP_WORDS = {
+            "the", "and", "of", "to", "in", "is", "that", "for", "with", "as", "on", "by",
+            "this", "are", "be", "from", "at", "or", "an", "it", "which", "was", "were", "has"
+    };
+
+    private static final String[] SYLLABLES = {
+            "ar", "ben", "cor", "dal", "en", "fir", "gan", "hol", "is", "jun", "kel", "lor",
+            "man", "nor", "ol", "per", "quin", "ros", "sal", "tem", "ul", "ver", "wen", "zan"
+    };
+
+    private static final int VOCABULARY_SIZE = 2000;
+
+    private final Random random;
+    private final String[] vocabulary;
+
+    public SyntheticText(long seed) {
+        this.random = new Random(seed);
+        // The vocabulary depends only on the class constants, never on the seed
+        Random vocabularyRandom = new Random(42);
+        this.vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + vocabularyRandom.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[vocabularyRandom.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+    }
+
+    /**
+     * Returns whole sentences totalling at least {@code minChars} characters.
+     */
+    public String text(int minChars) {
+        StringBuilder text = new StringBuilder(minChars + 256);
+        int sentencesInParagraph = 0;
+        while (text.length() < minChars) {
+            if (text.length() > 0) {
+                text.append(++sentencesInParagraph % 6 == 0 ? "\n\n" : " ");
+            }
+            text.append(sentence());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Wraps {@code minChars} characters of text into lines of at most {@code lineWidth}
+     * characters, breaking at spaces.
+     */
+    public List<String> lines(int minChars, int lineWidth) {
+        List<String> lines = new ArrayList<>();
+        for (String paragraph : text(minChars).split("\n\n")) {
+            StringBuilder line = new StringBuilder();
+            for (String word : paragraph.split(" ")) {
+                if (line.length() > 0 && line.length() + 1 + word.length() > lineWidth) {
+                    lines.add(line.toString());
+                    line.setLength(0);
+                }
+                if (line.length() > 0) {
+                    line.append(' ');
+                }
+                line.append(word);
+            }
+            lines.add(line.toString());
+            lines.add("");
+        }
+        return lines;
+    }
+
+    public String sentence() {
+        int words = 8 + random.nextInt(17);
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = random.nextInt(3) == 0
+                    ? STOP_WORDS[random.nextInt(STOP_WORDS.length)]
+                    : vocabulary[skewedIndex()];
+            if (i == 0) {
+                sentence.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                sentence.append(' ').append(word);
+            }
+        }
+        return sentence.append('.').toString();
+    }
+
+    /**
+     * Low indexes are much more likely than high ones, roughly like word frequencies.
+     */
+    private int skewedIndex() {
+        double u = random.nextDouble();
+        return (int) (VOCABULARY_SIZE * u * u * u);
+    }
+}
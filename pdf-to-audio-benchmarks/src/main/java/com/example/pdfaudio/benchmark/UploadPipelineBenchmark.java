@@ -0,0 +1,103 @@
+package com.example.pdfaudio.benchmark;
+
+import com.example.pdfaudio.PdfToAudioApiApplication;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@code POST /api/pdf-to-audio/upload} against the running application with the stub speech
+ * engine, so the numbers cover HTTP, spooling, extraction, summarization, chunked
+ * synthesis and WAV assembly but not the cost of a real engine.
+ * <p>
+ * The application writes to {@code pdf/} and {@code audio-files/} under the working
+ * directory, as it does in production; its janitor evicts the oldest of them once they
+ * exceed the {@code storage.*} byte quotas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class UploadPipelineBenchmark {
+
+    @Param({"5", "50"})
+    private int pages;
+
+    /**
+     * With the result cache on, every upload after the first is a cache hit.
+     */
+    @Param({"false", "true"})
+    private boolean resultCache;
+
+    private Path corpusDir;
+    private ConfigurableApplicationContext application;
+    private HttpClient client;
+    private HttpRequest uploadRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        corpusDir = Files.createTempDirectory("upload-corpus-");
+        Path pdf = PdfCorpusGenerator.generate(corpusDir.resolve("corpus-" + pages + ".pdf"), pages,
+                PdfCorpusGenerator.DEFAULT_SEED);
+
+        BenchmarkContexts.quietApplicationLogging();
+        application = new SpringApplicationBuilder(PdfToAudioApiApplication.class)
+                .run("--server.port=0",
+                        "--tts.engine=stub",
+                        "--cache.result.enabled=" + resultCache,
+                        // Repeated uploads would otherwise be served from cached sentences
+                        "--tts.fragment.cache.enabled=false",
+                        "--tts.fragment.cache.directory=" + corpusDir.resolve("fragment-cache"),
+                        // Every upload comes from this one client; measure the pipeline, not its rate limit
+                        "--admission.client.rate.per.minute=0",
+                        "--logging.level.com.example.pdfaudio=WARN");
+        int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+
+        client = HttpClient.newHttpClient();
+        MultipartBody body = MultipartBody.ofPdf(pdf, "default");
+        uploadRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/pdf-to-audio/upload"))
+                .header("Content-Type", body.contentType())
+                .POST(body.publisher())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+        FileUtils.deleteQuietly(corpusDir.toFile());
+    }
+
+    @Benchmark
+    public String upload() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(uploadRequest, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Upload failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+}
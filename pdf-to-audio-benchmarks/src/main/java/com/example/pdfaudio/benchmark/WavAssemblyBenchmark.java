@@ -0,0 +1,100 @@
+package com.example.pdfaudio.benchmark;
+
+import com.example.pdfaudio.audio.WavConcatenator;
+import com.example.pdfaudio.audio.WavHeader;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Joining sentence-chunk WAVs into the final file, as done after parallel synthesis.
+ * Chunks are 22.05 kHz mono 16-bit, the format SAPI and espeak produce.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class WavAssemblyBenchmark {
+
+    private static final int SAMPLE_RATE = 22050;
+
+    @Param({"4", "32"})
+    private int chunks;
+
+    @Param({"5"})
+    private int secondsPerChunk;
+
+    private Path workDir;
+    private List<Path> chunkFiles;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("wav-assembly-");
+        chunkFiles = new ArrayList<>(chunks);
+        Random random = new Random(PdfCorpusGenerator.DEFAULT_SEED);
+        for (int i = 0; i < chunks; i++) {
+            chunkFiles.add(writeChunk(workDir.resolve("chunk-" + i + ".wav"), random));
+        }
+        output = workDir.resolve("joined.wav");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(workDir.toFile());
+    }
+
+    @Benchmark
+    public WavHeader concatenate() throws IOException {
+        return WavConcatenator.concatenate(chunkFiles, output);
+    }
+
+    /**
+     * Writes random PCM with a slightly uneven length, so block alignment trimming is exercised.
+     */
+    private Path writeChunk(Path file, Random random) throws IOException {
+        int samples = SAMPLE_RATE * secondsPerChunk + random.nextInt(SAMPLE_RATE / 10);
+        WavHeader format = new WavHeader(WavHeader.FORMAT_PCM, 1, SAMPLE_RATE, 16,
+                WavHeader.CANONICAL_HEADER_SIZE, samples * 2L);
+        ByteBuffer pcm = ByteBuffer.allocate(samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+        while (pcm.hasRemaining()) {
+            pcm.putShort((short) random.nextInt(8000));
+        }
+        pcm.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer header = format.toBytes(samples * 2L);
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            while (pcm.hasRemaining()) {
+                out.write(pcm);
+            }
+        }
+        return file;
+    }
+}